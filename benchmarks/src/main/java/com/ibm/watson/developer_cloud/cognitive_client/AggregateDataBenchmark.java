@@ -0,0 +1,126 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.ArrayList;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.watson.developer_cloud.cognitive_client.AggregateData.Data;
+import com.ibm.watson.developer_cloud.cognitive_client.AggregateData.DataType;
+
+/**
+ * @author ArunIyengar
+ *
+ * Measures adding, combining, and sorting aggregated data. numEntries is the number of distinct keywords:
+ * the vocabulary from which added keys are drawn, and the size of each aggregate which is combined or
+ * sorted. Adding is not measured for 10000000 entries, since the sampled keys for a vocabulary that large
+ * would not fit in a default-sized heap. Run with "-prof gc" to also measure allocation rates.
+ *
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregateDataBenchmark {
+
+    private static final int MIN_SAMPLES = 1 << 20;
+    private static final int SAMPLES_PER_ENTRY = 4;
+    private static final int TOP_K = 100;
+
+    @State(Scope.Thread)
+    public static class AddState {
+        @Param({"1000", "100000", "1000000"})
+        public int numEntries;
+
+        @Param({"hashmap", "compact", "dictionary"})
+        public String storage;
+
+        String[] keys;
+        int mask;
+        int next;
+        AggregateData data;
+
+        // Enough samples, a power of 2, that the keys cycled through reach most of the vocabulary
+        @Setup(Level.Trial)
+        public void createKeys() {
+            int numSamples = Math.max(MIN_SAMPLES, Integer.highestOneBit(SAMPLES_PER_ENTRY * numEntries - 1) << 1);
+            keys = BenchmarkData.sampleKeys(numEntries, numSamples, BenchmarkData.SEED);
+            mask = numSamples - 1;
+        }
+
+        // Each iteration starts with an empty aggregate, which grows as keys are added
+        @Setup(Level.Iteration)
+        public void createAggregate() {
+            data = BenchmarkData.newAggregate("add", BenchmarkData.Storage.valueOf(storage.toUpperCase()),
+                    new TermDictionary());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class AggregateState {
+        @Param({"1000", "100000", "1000000", "10000000"})
+        public int numEntries;
+
+        @Param({"hashmap", "compact", "dictionary"})
+        public String storage;
+
+        BenchmarkData.Storage storageType;
+        TermDictionary dictionary;
+        AggregateData first;
+        AggregateData second;
+
+        // The aggregates share half of their keys
+        @Setup(Level.Trial)
+        public void createAggregates() {
+            storageType = BenchmarkData.Storage.valueOf(storage.toUpperCase());
+            dictionary = new TermDictionary();
+            first = BenchmarkData.createAggregate(numEntries, 1, storageType, dictionary);
+            second = BenchmarkData.createAggregate(numEntries, numEntries / 2 + 1, storageType, dictionary);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public AggregateData addData(AddState state) {
+        String key = state.keys[state.next++ & state.mask];
+        state.data.addData(key, 1, 0.5, 0.25, AggregateData.Type.KEYWORD);
+        return state.data;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public AggregateData combineData(AggregateState state) {
+        AggregateData data = BenchmarkData.newAggregate("combined", state.storageType, state.dictionary);
+        data.combineData(state.first, false);
+        data.combineData(state.second, false);
+        return data;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ArrayList<Entry<String,Data>> getSortedValues(AggregateState state) {
+        return state.first.getSortedValues(AggregateData.Type.KEYWORD, DataType.COUNT);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ArrayList<Entry<String,Data>> topK(AggregateState state) {
+        return state.first.topK(AggregateData.Type.KEYWORD, DataType.COUNT, TOP_K);
+    }
+
+}
@@ -0,0 +1,61 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.watson.developer_cloud.alchemy.v1.model.CombinedResults;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+/**
+ * @author ArunIyengar
+ *
+ * Measures converting AlchemyLanguage combined results to aggregated data, from the JSON string and from
+ * the typed model. Both include parsing the JSON text returned by the service. numItems is the number of
+ * keywords, concepts, and entities in the results. Run with "-prof gc" to also measure allocation rates.
+ *
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlchemyParseBenchmark {
+
+    @Param({"10", "50", "250"})
+    public int numItems;
+
+    private String json;
+
+    @Setup(Level.Trial)
+    public void createResults() {
+        json = BenchmarkData.createAlchemyResults(numItems, BenchmarkData.SEED);
+    }
+
+    @Benchmark
+    public AggregateData analyzeString() {
+        return AlchemyClient.analyzeData(json, "benchmark");
+    }
+
+    @Benchmark
+    public AggregateData analyzeTyped() {
+        CombinedResults results = GsonSingleton.getGson().fromJson(json, CombinedResults.class);
+        return AlchemyClient.analyzeData(results, "benchmark");
+    }
+
+}
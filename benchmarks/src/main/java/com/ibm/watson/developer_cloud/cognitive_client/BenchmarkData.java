@@ -0,0 +1,131 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+/**
+ * @author ArunIyengar
+ *
+ * Synthetic data for the benchmarks. Keys are drawn from a Zipf distribution with exponent ZIPF_EXPONENT,
+ * and generated from fixed seeds so that every run of a benchmark uses the same data.
+ *
+ */
+final class BenchmarkData {
+
+    static final double ZIPF_EXPONENT = 1.0;
+    static final long SEED = 42;
+
+    // Number of times the most frequent key occurs in a generated aggregate
+    private static final int MAX_COUNT = 100000;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Storage used by the AggregateData objects being measured
+     */
+    enum Storage {
+        HASHMAP,
+        COMPACT,
+        DICTIONARY
+    }
+
+    static String key(int rank) {
+        return "keyword" + rank;
+    }
+
+    static AggregateData newAggregate(String description, Storage storage, TermDictionary dictionary) {
+        switch (storage) {
+        case COMPACT:
+            return new AggregateData(description, true);
+        case DICTIONARY:
+            return new AggregateData(description, dictionary);
+        default:
+            return new AggregateData(description);
+        }
+    }
+
+    /**
+     * Return keys drawn from a Zipf distribution over a vocabulary, as they would be added by a stream of
+     * analysis results. The strings are created in advance so that benchmarks do not measure string
+     * concatenation.
+     */
+    static String[] sampleKeys(int vocabularySize, int numSamples, long seed) {
+        String[] vocabulary = new String[vocabularySize + 1];
+        for (int rank = 1; rank <= vocabularySize; rank++) {
+            vocabulary[rank] = key(rank);
+        }
+        ZipfianGenerator generator = new ZipfianGenerator(vocabularySize, ZIPF_EXPONENT, seed);
+        String[] keys = new String[numSamples];
+        for (int i = 0; i < numSamples; i++) {
+            keys[i] = vocabulary[generator.next()];
+        }
+        return keys;
+    }
+
+    /**
+     * Return an aggregate with numEntries keywords, for ranks firstRank to firstRank + numEntries - 1,
+     * whose counts follow a Zipf distribution. Each key's relevance and score are derived from its rank.
+     * A few taxonomies are added so that every section of a stored file is exercised.
+     */
+    static AggregateData createAggregate(int numEntries, int firstRank, Storage storage, TermDictionary dictionary) {
+        AggregateData data = newAggregate("benchmark", storage, dictionary);
+        ZipfianGenerator generator = new ZipfianGenerator(numEntries, ZIPF_EXPONENT, SEED);
+        for (int i = 0; i < numEntries; i++) {
+            int rank = firstRank + i;
+            int count = generator.expectedCount(i + 1, MAX_COUNT);
+            data.addData(key(rank), count, count * 0.5, ((rank % 200) - 100) / 100.0, AggregateData.Type.KEYWORD);
+        }
+        for (int i = 0; i < 10; i++) {
+            data.addData("/category" + i, i + 1, 0.0, 0.5, AggregateData.Type.TAXONOMY);
+        }
+        return data;
+    }
+
+    /**
+     * Return a combined results string from the AlchemyLanguage service with numItems keywords, concepts,
+     * and entities, drawn from a Zipf distribution
+     */
+    static String createAlchemyResults(int numItems, long seed) {
+        ZipfianGenerator generator = new ZipfianGenerator(100 * numItems, ZIPF_EXPONENT, seed);
+        StringBuilder sb = new StringBuilder("{\"status\": \"OK\", \"language\": \"english\", \"keywords\": [");
+        for (int i = 0; i < numItems; i++) {
+            appendSeparator(sb, i);
+            sb.append("{\"text\": \"").append(key(generator.next())).append("\", \"relevance\": \"")
+                .append(relevance(i, numItems)).append("\", \"sentiment\": {\"type\": \"positive\", \"score\": \"0.")
+                .append(i % 10).append("\"}}");
+        }
+        sb.append("], \"concepts\": [");
+        for (int i = 0; i < numItems; i++) {
+            appendSeparator(sb, i);
+            sb.append("{\"text\": \"Concept ").append(generator.next()).append("\", \"relevance\": \"")
+                .append(relevance(i, numItems)).append("\", \"dbpedia\": \"http://dbpedia.org/resource/Concept_")
+                .append(i).append("\"}");
+        }
+        sb.append("], \"taxonomy\": [{\"label\": \"/technology and computing\", \"score\": \"0.75\"},"
+                + " {\"label\": \"/business and industrial\", \"score\": \"0.5\"}], \"entities\": [");
+        for (int i = 0; i < numItems; i++) {
+            appendSeparator(sb, i);
+            int rank = generator.next();
+            sb.append("{\"type\": \"Company\", \"text\": \"Entity ").append(rank).append("\", \"relevance\": \"")
+                .append(relevance(i, numItems)).append("\", \"count\": \"").append(1 + i % 5)
+                .append("\", \"sentiment\": {\"type\": \"negative\", \"score\": \"-0.25\"}");
+            if (i % 2 == 0) {
+                sb.append(", \"disambiguated\": {\"name\": \"Entity ").append(rank).append("\"}");
+            }
+            sb.append("}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static void appendSeparator(StringBuilder sb, int index) {
+        if (index > 0) {
+            sb.append(", ");
+        }
+    }
+
+    private static String relevance(int index, int numItems) {
+        return Double.toString(1.0 - (double) index / numItems);
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author ArunIyengar
+ *
+ * Measures storing and reading aggregated data. The file benchmarks include the cost of the file system;
+ * serialize and deserialize measure the compact format in memory. Data stored with the dictionary storage
+ * type is written with term IDs in place of strings. Run with "-prof gc" to also measure allocation rates.
+ *
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int numEntries;
+
+    @Param({"hashmap", "compact", "dictionary"})
+    public String storage;
+
+    private BenchmarkData.Storage storageType;
+    private TermDictionary dictionary;
+    private AggregateData data;
+    private byte[] bytes;
+    private String readFile;
+    private String writeFile;
+
+    @Setup(Level.Trial)
+    public void createData() throws IOException {
+        storageType = BenchmarkData.Storage.valueOf(storage.toUpperCase());
+        dictionary = (storageType == BenchmarkData.Storage.DICTIONARY) ? new TermDictionary() : null;
+        data = BenchmarkData.createAggregate(numEntries, 1, storageType, dictionary);
+        bytes = serialize();
+        readFile = File.createTempFile("benchmark", ".ana").toString();
+        writeFile = File.createTempFile("benchmark", ".ana").toString();
+        Util.byteArrayToFile(bytes, readFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() {
+        new File(readFile).delete();
+        new File(writeFile).delete();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        if (dictionary != null) {
+            return CompactSerializer.serializeToByteArray(data, dictionary);
+        }
+        return CompactSerializer.serializeToByteArray(data);
+    }
+
+    @Benchmark
+    public AggregateData deserialize() {
+        if (dictionary != null) {
+            return CompactSerializer.deserializeFromByteArray(bytes, dictionary);
+        }
+        return CompactSerializer.deserializeFromByteArray(bytes);
+    }
+
+    @Benchmark
+    public void writeToFile() {
+        if (dictionary != null) {
+            data.writeToFile(writeFile, dictionary);
+        }
+        else {
+            data.writeToFile(writeFile);
+        }
+    }
+
+    @Benchmark
+    public AggregateData readFromFile() {
+        if (dictionary != null) {
+            return AggregateData.readFromFile(readFile, dictionary);
+        }
+        return AggregateData.readFromFile(readFile);
+    }
+
+    @Benchmark
+    public AggregateData combineFromFile() {
+        AggregateData combined = BenchmarkData.newAggregate("combined", storageType, dictionary);
+        combined.combineFromFile(readFile, false);
+        return combined;
+    }
+
+}
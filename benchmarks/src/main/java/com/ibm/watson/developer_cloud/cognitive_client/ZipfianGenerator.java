@@ -0,0 +1,120 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.SplittableRandom;
+
+/**
+ * @author ArunIyengar
+ *
+ * Generates ranks between 1 and n whose frequencies follow a Zipf distribution: rank k is drawn with
+ * probability proportional to 1 / k^exponent. Word frequencies in natural language text roughly follow a
+ * Zipf distribution with an exponent close to 1, so a few keywords and entities occur very often and most
+ * occur rarely. Ranks are drawn by rejection-inversion sampling (Hormann and Derflinger, "Rejection-
+ * inversion to generate variates from monotone discrete distributions"), which takes constant time and
+ * memory for any n. A generator must not be used by more than one thread at a time.
+ *
+ */
+public class ZipfianGenerator {
+
+    private final int n;
+    private final double exponent;
+    private final SplittableRandom random;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double s;
+
+    /**
+     * Constructor
+     *
+     * @param numElements
+     *      largest rank generated
+     * @param zipfExponent
+     *      exponent of the distribution, must be positive
+     * @param seed
+     *      seed for the random number generator, so that the same ranks are generated on every run
+     */
+    public ZipfianGenerator(int numElements, double zipfExponent, long seed) {
+        if ((numElements < 1) || !(zipfExponent > 0.0)) {
+            throw new IllegalArgumentException("numElements and zipfExponent must be positive");
+        }
+        n = numElements;
+        exponent = zipfExponent;
+        random = new SplittableRandom(seed);
+        hIntegralX1 = hIntegral(1.5) - 1.0;
+        hIntegralN = hIntegral(n + 0.5);
+        s = 2.0 - hIntegralInverse(hIntegral(2.5) - h(2.0));
+    }
+
+    /**
+     * Return the next rank
+     *
+     * @return rank between 1 and numElements
+     */
+    public int next() {
+        while (true) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            }
+            else if (k > n) {
+                k = n;
+            }
+            if ((k - x <= s) || (u >= hIntegral(k + 0.5) - h(k))) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * Return the expected number of occurrences of a rank in a sample in which rank 1 occurs maxCount times
+     *
+     * @param rank
+     *      rank
+     * @param maxCount
+     *      number of occurrences of rank 1
+     * @return number of occurrences, at least 1
+     */
+    public int expectedCount(int rank, int maxCount) {
+        return Math.max(1, (int) (maxCount * h(rank)));
+    }
+
+    // 1 / x^exponent
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    // Integral of h, (x^(1 - exponent) - 1) / (1 - exponent), computed accurately for exponent close to 1
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1.0 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = x * (1.0 - exponent);
+        if (t < -1.0) {
+            t = -1.0;  // limit rounding errors
+        }
+        return Math.exp(helper1(t) * x);
+    }
+
+    // log(1 + x) / x
+    private static double helper1(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+    }
+
+    // (exp(x) - 1) / x
+    private static double helper2(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1.0 + x * 0.5 * (1.0 + x * 1.0 / 3.0 * (1.0 + 0.25 * x));
+    }
+
+}
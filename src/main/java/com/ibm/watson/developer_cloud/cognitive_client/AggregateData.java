@@ -3,14 +3,27 @@
  */
 package com.ibm.watson.developer_cloud.cognitive_client;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * @author ArunIyengar
@@ -108,9 +121,13 @@ public class AggregateData implements Serializable {
         }
         
         private void addData(Data data) {
-            score = ((count*score)+(data.count*data.score))/(count+data.count);
-            count += data.count;
-            relevance += data.relevance;
+            addData(data.count, data.relevance, data.score);
+        }
+        
+        private void addData(int countAdd, double relevanceAdd, double scoreAdd) {
+            score = ((count*score)+(countAdd*scoreAdd))/(count+countAdd);
+            count += countAdd;
+            relevance += relevanceAdd;
         }
         
         @Override
@@ -149,6 +166,7 @@ public class AggregateData implements Serializable {
     
     private String description;
     private String analysisResults;  // used for storing results from a natural language service 
+    private transient Object analysisSource;  // if not null, analysisResults is its string representation
     
     private ArrayList<String> documents = new ArrayList<String>(); // Can be used to store all documents analyzed
     private ArrayList<String> rawData = new ArrayList<String>(); // Can be used to store all serialized raw data from analysis services
@@ -158,6 +176,8 @@ public class AggregateData implements Serializable {
     private HashMap<String,Data> entitiesAmbiguous = new HashMap<String,Data>(); // contains nondisambiguated entities
     private HashMap<String,Data> keywords = new HashMap<String,Data>();
     private HashMap<String,Data> taxonomies = new HashMap<String,Data>();
+    
+    private FeatureTable[] featureTables;  // indexed by Type ordinal if compact storage is used, otherwise null
 
     
     /**
@@ -171,6 +191,42 @@ public class AggregateData implements Serializable {
         description = describe;
     }
 
+    /**
+     * Constructor.
+     * 
+     * @param describe
+     *            description of the aggregate data set
+     * @param compactStorage
+     *            true to store concepts, entities, keywords, and taxonomies in compact tables of primitive
+     *            values rather than in HashMaps. Compact storage uses considerably less memory when there
+     *            are many distinct keys, and adding data for an existing key does not allocate memory.
+     *            However, methods such as getConcepts and getKeywords must then create a new HashMap on
+     *            each call; getData and getFeatures read the data without copying it
+     *            
+     */
+    public AggregateData(String describe, boolean compactStorage) {
+        description = describe;
+        if (compactStorage) {
+            createTables(null);
+        }
+    }
+
+    /**
+     * Constructor. Compact storage is used, with keys stored in a term dictionary which can be shared with
+     * other AggregateData objects. Combining data from objects sharing a dictionary compares term IDs
+     * rather than strings, and each distinct key is stored only once across all of the objects.
+     * 
+     * @param describe
+     *            description of the aggregate data set
+     * @param dictionary
+     *            term dictionary for concepts, entities, keywords, and taxonomies
+     *            
+     */
+    public AggregateData(String describe, TermDictionary dictionary) {
+        description = describe;
+        createTables(dictionary);
+    }
+
     /**
      * Constructor.
      * 
@@ -188,12 +244,56 @@ public class AggregateData implements Serializable {
         rawData.add(analysisData);
     }
     
+    /**
+     * Returns whether concepts, entities, keywords, and taxonomies are stored in compact tables
+     * 
+     * @return true if compact storage is used, false if HashMaps are used
+     * 
+     */
+    public boolean isCompactStorage() {
+        return featureTables != null;
+    }
+    
+    /**
+     * Returns the term dictionary used to store keys
+     * 
+     * @return term dictionary, null if keys are not stored in a term dictionary
+     * 
+     */
+    public TermDictionary getTermDictionary() {
+        return (featureTables == null) ? null : featureTables[0].getDictionary();
+    }
+    
+    private void createTables(TermDictionary dictionary) {
+        featureTables = new FeatureTable[Type.values().length];
+        for (int i = 0; i < featureTables.length; i++) {
+            featureTables[i] = new FeatureTable(dictionary);
+        }
+    }
+    
     String getAnalysisResults() {
+        if (analysisSource != null) {
+            analysisResults = analysisSource.toString();
+            analysisSource = null;
+        }
         return analysisResults;
     }
     
     public void setAnalysisResults(String results) {
         analysisResults = results;
+        analysisSource = null;
+    }
+    
+    /**
+     * Set the object from which results from a natural language service are obtained when needed, by
+     * calling its toString method. This avoids creating a string which is often never used.
+     * 
+     * @param source
+     *      object whose string representation is the results from a natural language service
+     */
+    void setAnalysisSource(Object source) {
+        analysisResults = null;
+        analysisSource = source;
     }
 
     /**
@@ -222,75 +322,134 @@ public class AggregateData implements Serializable {
      * Returns concepts
      * 
      * @return
-     *      concepts
+     *      concepts; a read-only copy if compact storage is used
      *      
      */
     public HashMap<String,Data> getConcepts() {
-        return concepts;
+        return selectHashMap(Type.CONCEPT);
     }
 
     void setConcepts(HashMap<String,Data> newConcepts) {
-        concepts = newConcepts;
+        if (featureTables != null) {
+            setTable(Type.CONCEPT, newConcepts);
+        }
+        else {
+            concepts = newConcepts;
+        }
     }
 
     /**
      * Return disambiguated entities
      * 
      * @return
-     *      disambiguated entities
+     *      disambiguated entities; a read-only copy if compact storage is used
      *      
      */
     public HashMap<String,Data> getDisambiguatedEntities() {
-        return disambiguatedEntities;
+        return selectHashMap(Type.DISAMBIGUATEDENTITY);
     }
 
     void setDisambiguatedEntities(HashMap<String,Data> newEntities) {
-        disambiguatedEntities = newEntities;
+        if (featureTables != null) {
+            setTable(Type.DISAMBIGUATEDENTITY, newEntities);
+        }
+        else {
+            disambiguatedEntities = newEntities;
+        }
     }
 
     /**
      * Return entities which have not been disambiguated
      * 
      * @return
-     *      entities which have not been disambiguated
+     *      entities which have not been disambiguated; a read-only copy if compact storage is used
      *      
      */
     public HashMap<String,Data> getEntitiesAmbiguous() {
-        return entitiesAmbiguous;
+        return selectHashMap(Type.ENTITYAMBIGUOUS);
     }
 
     void setEntitiesAmbiguous(HashMap<String,Data> newEntities) {
-        entitiesAmbiguous = newEntities;
+        if (featureTables != null) {
+            setTable(Type.ENTITYAMBIGUOUS, newEntities);
+        }
+        else {
+            entitiesAmbiguous = newEntities;
+        }
     }
 
     /**
      * Return keywords
      * 
      * @return
-     *      keywords
+     *      keywords; a read-only copy if compact storage is used
      *      
      */
     public HashMap<String,Data> getKeywords() {
-        return keywords;
+        return selectHashMap(Type.KEYWORD);
     }
 
     void setKeywords(HashMap<String,Data> newKeywords) {
-        keywords = newKeywords;
+        if (featureTables != null) {
+            setTable(Type.KEYWORD, newKeywords);
+        }
+        else {
+            keywords = newKeywords;
+        }
     }
   
     /**
      * Get taxonomies
      * 
      * @return
-     *      taxonomies
+     *      taxonomies; a read-only copy if compact storage is used
      *      
      */
     public HashMap<String,Data> getTaxonomies() {
-        return taxonomies;
+        return selectHashMap(Type.TAXONOMY);
     }
 
     void setTaxonomies(HashMap<String,Data> newTaxonomies) {
-        taxonomies = newTaxonomies;
+        if (featureTables != null) {
+            setTable(Type.TAXONOMY, newTaxonomies);
+        }
+        else {
+            taxonomies = newTaxonomies;
+        }
+    }
+    
+    /**
+     * Return the data for a key without copying other data when compact storage is used
+     * 
+     * @param key
+     *      concept, entity, keyword, or taxonomy
+     * @param type
+     *      type
+     * @return data for the key, null if there is none. If compact storage is used, the data does not
+     *      change when data is added to this
+     *      
+     */
+    public Data getData(String key, Type type) {
+        if (featureTables != null) {
+            FeatureTable table = selectTable(type);
+            int index = table.find(key);
+            return (index < 0) ? null : new Data(table.count(index), table.relevance(index), table.score(index));
+        }
+        return selectHashMap(type).get(key);
+    }
+    
+    /**
+     * Return a read-only view of the data for a type. Unlike getKeywords and the other getters, this
+     * does not copy the data when compact storage is used; looking up a key takes constant time, and
+     * changes to this are visible in the view. This must not be modified while the view is being iterated.
+     * 
+     * @param type
+     *      type
+     * @return read-only map from keys to data
+     *      
+     */
+    public Map<String,Data> getFeatures(Type type) {
+        return Collections.unmodifiableMap(features(type));
     }
     
     /**
@@ -331,7 +490,7 @@ public class AggregateData implements Serializable {
      * 
      */
     public void addRawData() {
-        rawData.add(analysisResults);
+        rawData.add(getAnalysisResults());
     }
     
     /**
@@ -343,26 +502,75 @@ public class AggregateData implements Serializable {
      *      Indicates whether documents and rawData from "data" should be added to this
      */
     public void combineData(AggregateData data, boolean addRawData) {
-        combineHashMaps(concepts, data.concepts);
-        combineHashMaps(disambiguatedEntities, data.disambiguatedEntities);
-        combineHashMaps(entitiesAmbiguous, data.entitiesAmbiguous);
-        combineHashMaps(keywords, data.keywords);
-        combineHashMaps(taxonomies, data.taxonomies);
+        for (Type type : Type.values()) {
+            if ((featureTables == null) && (data.featureTables == null)) {
+                combineHashMaps(selectHashMap(type), data.selectHashMap(type));
+            }
+            else if (data.featureTables != null) {
+                FeatureTable table = data.selectTable(type);
+                if (featureTables != null) {
+                    selectTable(type).addAll(table);
+                }
+                else {
+                    for (int i = 0; i < table.size(); i++) {
+                        addData(table.key(i), table.count(i), table.relevance(i), table.score(i), type);
+                    }
+                }
+            }
+            else {
+                FeatureTable table = selectTable(type);
+                for (Map.Entry<String, Data> entry : data.selectHashMap(type).entrySet()) {
+                    Data val = entry.getValue();
+                    table.add(entry.getKey(), val.count, val.relevance, val.score);
+                }
+            }
+        }
         if (addRawData) {
             documents.addAll(data.documents);
             rawData.addAll(data.rawData);
         }
     }
 
+    /**
+     * Return a copy of this which does not share any mutable state with this
+     * 
+     * @return copy of this
+     */
+    AggregateData copy() {
+        AggregateData data = new AggregateData(description);
+        data.analysisResults = analysisResults;
+        data.analysisSource = analysisSource;
+        data.documents.addAll(documents);
+        data.rawData.addAll(rawData);
+        if (featureTables != null) {
+            data.featureTables = new FeatureTable[featureTables.length];
+            for (int i = 0; i < featureTables.length; i++) {
+                data.featureTables[i] = new FeatureTable(featureTables[i]);
+            }
+            return data;
+        }
+        copyHashMap(data.concepts, concepts);
+        copyHashMap(data.disambiguatedEntities, disambiguatedEntities);
+        copyHashMap(data.entitiesAmbiguous, entitiesAmbiguous);
+        copyHashMap(data.keywords, keywords);
+        copyHashMap(data.taxonomies, taxonomies);
+        return data;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getAnalysisResults();
+        out.defaultWriteObject();
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(1000);
         sb.append("Description: " + description + "\n");
-        sb.append("Concepts: " + concepts + "\n");
-        sb.append("Disambiguated Entities: " + disambiguatedEntities + "\n");
-        sb.append("Ambiguous Entities: " + entitiesAmbiguous + "\n");
-        sb.append("Keywords: " + keywords + "\n");
-        sb.append("Categories/Taxonomies: " + taxonomies + "\n");
+        sb.append("Concepts: " + features(Type.CONCEPT) + "\n");
+        sb.append("Disambiguated Entities: " + features(Type.DISAMBIGUATEDENTITY) + "\n");
+        sb.append("Ambiguous Entities: " + features(Type.ENTITYAMBIGUOUS) + "\n");
+        sb.append("Keywords: " + features(Type.KEYWORD) + "\n");
+        sb.append("Categories/Taxonomies: " + features(Type.TAXONOMY) + "\n");
         sb.append("Documents Analyzed: " + documents + "\n");
         sb.append("Raw data from text analysis services: " + rawData + "\n");
         return sb.toString();
@@ -383,7 +591,18 @@ public class AggregateData implements Serializable {
         }
     }
     
-    private HashMap<String,Data> selectHashMap(Type type) {
+    private static void copyHashMap(HashMap<String,Data> target, HashMap<String,Data> source) {
+        for (Map.Entry<String, Data> entry : source.entrySet()) {
+            Data val = entry.getValue();
+            target.put(entry.getKey(), new Data(val.count, val.relevance, val.score));
+        }
+    }
+    
+    // Returns a read-only copy of the data for a type if compact storage is used
+    HashMap<String,Data> selectHashMap(Type type) {
+        if (featureTables != null) {
+            return new ReadOnlyHashMap(new TableView(selectTable(type)));
+        }
         switch(type) {
             case CONCEPT:
                 return concepts;
@@ -414,35 +633,278 @@ public class AggregateData implements Serializable {
      *      
      */
     public void addData(String key, int countAdd, double relAdd, double scoreAdd, Type type) {
+        if (featureTables != null) {
+            selectTable(type).add(key, countAdd, relAdd, scoreAdd);
+            return;
+        }
         HashMap<String,Data> hashMap = selectHashMap(type);
-        Data newData = new Data(countAdd, relAdd, scoreAdd);
         Data prevData = hashMap.get(key);
         if (prevData == null) {
-            hashMap.put(key, newData);
+            hashMap.put(key, new Data(countAdd, relAdd, scoreAdd));
         }
         else {
-            prevData.addData(newData);
-            hashMap.put(key, prevData);
+            prevData.addData(countAdd, relAdd, scoreAdd);
         }
     }
     
+    // Returns the data for a type without copying it; the map must not be modified if compact storage is used
+    private Map<String,Data> features(Type type) {
+        return (featureTables == null) ? selectHashMap(type) : new TableView(selectTable(type));
+    }
+    
     /**
-     * Write this to a file
+     * Map backed by the FeatureTable for a type. Data objects are created as they are accessed.
+     */
+    private static final class TableView extends AbstractMap<String,Data> {
+        
+        private final FeatureTable table;
+        
+        private TableView(FeatureTable featureTable) {
+            table = featureTable;
+        }
+        
+        @Override
+        public int size() {
+            return table.size();
+        }
+        
+        @Override
+        public boolean containsKey(Object key) {
+            return ((key == null) || (key instanceof String)) && (table.find((String) key) >= 0);
+        }
+        
+        @Override
+        public Data get(Object key) {
+            if ((key != null) && !(key instanceof String)) {
+                return null;
+            }
+            int index = table.find((String) key);
+            return (index < 0) ? null : new Data(table.count(index), table.relevance(index), table.score(index));
+        }
+        
+        @Override
+        public Set<Entry<String,Data>> entrySet() {
+            return new AbstractSet<Entry<String,Data>>() {
+                @Override
+                public int size() {
+                    return table.size();
+                }
+                
+                @Override
+                public Iterator<Entry<String,Data>> iterator() {
+                    return new Iterator<Entry<String,Data>>() {
+                        private int index;
+                        
+                        @Override
+                        public boolean hasNext() {
+                            return index < table.size();
+                        }
+                        
+                        @Override
+                        public Entry<String,Data> next() {
+                            if (index >= table.size()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String,Data> entry = new AbstractMap.SimpleImmutableEntry<String,Data>(
+                                    table.key(index), new Data(table.count(index), table.relevance(index),
+                                    table.score(index)));
+                            index++;
+                            return entry;
+                        }
+                    };
+                }
+            };
+        }
+    }
+    
+    /**
+     * Copy of the data for a type which cannot be modified, so that callers which modify the maps returned
+     * by getters when compact storage is used fail rather than silently losing their changes
+     */
+    private static final class ReadOnlyHashMap extends HashMap<String,Data> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private ReadOnlyHashMap(Map<String,Data> map) {
+            super(map);
+        }
+        
+        @Override
+        public Data put(String key, Data value) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public void putAll(Map<? extends String, ? extends Data> map) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Data remove(Object key) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public boolean remove(Object key, Object value) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Data putIfAbsent(String key, Data value) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Data replace(String key, Data value) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public boolean replace(String key, Data oldValue, Data newValue) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public void replaceAll(BiFunction<? super String, ? super Data, ? extends Data> function) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Data computeIfAbsent(String key, Function<? super String, ? extends Data> function) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Data computeIfPresent(String key,
+                BiFunction<? super String, ? super Data, ? extends Data> function) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Data compute(String key, BiFunction<? super String, ? super Data, ? extends Data> function) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Data merge(String key, Data value,
+                BiFunction<? super Data, ? super Data, ? extends Data> function) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Set<String> keySet() {
+            return Collections.unmodifiableSet(super.keySet());
+        }
+        
+        @Override
+        public Collection<Data> values() {
+            return Collections.unmodifiableCollection(super.values());
+        }
+        
+        @Override
+        public Set<Entry<String,Data>> entrySet() {
+            return Collections.unmodifiableSet(super.entrySet());
+        }
+    }
+    
+    // Add data for a key given by its term ID in the dictionary returned by getTermDictionary
+    void addTermData(int termId, int countAdd, double relAdd, double scoreAdd, Type type) {
+        selectTable(type).addTerm(termId, countAdd, relAdd, scoreAdd);
+    }
+    
+    /**
+     * Receives the data for each key of a type
+     */
+    interface EntryVisitor {
+        void visit(String key, int count, double relevance, double score);
+    }
+    
+    /**
+     * Pass the data for each key of a type to a visitor, without creating a copy of the data when compact
+     * storage is used
+     * 
+     * @param type
+     *      type
+     * @param visitor
+     *      visitor
+     */
+    void forEachEntry(Type type, EntryVisitor visitor) {
+        if (featureTables != null) {
+            FeatureTable table = selectTable(type);
+            for (int i = 0; i < table.size(); i++) {
+                visitor.visit(table.key(i), table.count(i), table.relevance(i), table.score(i));
+            }
+            return;
+        }
+        for (Map.Entry<String, Data> entry : selectHashMap(type).entrySet()) {
+            Data val = entry.getValue();
+            visitor.visit(entry.getKey(), val.count, val.relevance, val.score);
+        }
+    }
+    
+    /**
+     * Return number of distinct keys of a type
+     * 
+     * @param type
+     *      type
+     * @return number of distinct keys
+     */
+    public int numEntries(Type type) {
+        if (featureTables != null) {
+            return selectTable(type).size();
+        }
+        return selectHashMap(type).size();
+    }
+    
+    private FeatureTable selectTable(Type type) {
+        return featureTables[type.ordinal()];
+    }
+    
+    private void setTable(Type type, HashMap<String,Data> hashMap) {
+        FeatureTable table = selectTable(type);
+        table.clear();
+        for (Map.Entry<String, Data> entry : hashMap.entrySet()) {
+            Data val = entry.getValue();
+            table.add(entry.getKey(), val.count, val.relevance, val.score);
+        }
+    }
+    
+    /**
+     * Write this to a file in a compact binary format
      * 
      * @param filename
      *      file name
      *      
      */
     public void writeToFile(String filename) {
-        String results = analysisResults;
-        analysisResults = null;
-        byte[] bytes = Serializer.serializeToByteArray(this);
-        analysisResults = results;
+        byte[] bytes = CompactSerializer.serializeToByteArray(this);
         Util.byteArrayToFile(bytes, filename);
     }
     
     /**
-     * Read Aggregate data from a file
+     * Write this to a file in a compact binary format, storing keys as term IDs from a dictionary rather
+     * than as strings. The file can only be read using the same dictionary, or a copy of it written after
+     * this file was written.
+     * 
+     * @param filename
+     *      file name
+     * @param dictionary
+     *      term dictionary
+     *      
+     */
+    public void writeToFile(String filename, TermDictionary dictionary) {
+        byte[] bytes = CompactSerializer.serializeToByteArray(this, dictionary);
+        Util.byteArrayToFile(bytes, filename);
+    }
+    
+    /**
+     * Read Aggregate data from a file. Files written by earlier versions using Java serialization can also
+     * be read.
      * 
      * @param filename
      *      file name
@@ -451,9 +913,66 @@ public class AggregateData implements Serializable {
      */
     public static AggregateData readFromFile(String filename) {
         byte[] bytes = Util.fileToByteArray(filename);
+        if (CompactSerializer.isCompactFormat(bytes)) {
+            return CompactSerializer.deserializeFromByteArray(bytes);
+        }
         return Serializer.deserializeFromByteArray(bytes);
     }
     
+    /**
+     * Read Aggregate data from a file into an object whose keys are stored in a term dictionary. Files
+     * containing strings are also read, in which case their keys are added to the dictionary.
+     * 
+     * @param filename
+     *      file name
+     * @param dictionary
+     *      term dictionary
+     * @return aggregate data read from file
+     * 
+     */
+    public static AggregateData readFromFile(String filename, TermDictionary dictionary) {
+        byte[] bytes = Util.fileToByteArray(filename);
+        if (CompactSerializer.isCompactFormat(bytes)) {
+            return CompactSerializer.deserializeFromByteArray(bytes, dictionary);
+        }
+        AggregateData storedData = Serializer.deserializeFromByteArray(bytes);
+        if (storedData == null) {
+            return null;
+        }
+        AggregateData data = new AggregateData(storedData.getDescription(), dictionary);
+        data.combineData(storedData, true);
+        return data;
+    }
+    
+    /**
+     * Add data stored in a file to this. Data in the compact binary format is added as it is read, so
+     * the contents of the file are never all in memory at once. Files storing keys as term IDs can only
+     * be read if this uses the term dictionary they were written with.
+     * 
+     * @param filename
+     *      file name
+     * @param addRawData
+     *      Indicates whether documents and rawData stored in the file should be added to this
+     * @return true if data from the file was added to this, false if the file could not be read
+     * 
+     */
+    public boolean combineFromFile(String filename, boolean addRawData) {
+        try (InputStream in = Files.newInputStream(Paths.get(filename))) {
+            if (CompactSerializer.readInto(in, this, addRawData)) {
+                return true;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        AggregateData storedData = readFromFile(filename);
+        if (storedData == null) {
+            return false;
+        }
+        combineData(storedData, addRawData);
+        return true;
+    }
+    
     /**
      * Get sorted values for a feature
      * 
@@ -465,33 +984,80 @@ public class AggregateData implements Serializable {
      * 
      */
     public ArrayList<Entry<String,Data>> getSortedValues(Type feature, DataType parameter) {
-        HashMap<String,Data> hashMap = selectHashMap(feature);
-        Set<Entry<String,Data>> dataSet = hashMap.entrySet();
+        Set<Entry<String,Data>> dataSet = features(feature).entrySet();
         ArrayList<Entry<String,Data>> sortedList = new ArrayList<Entry<String,Data>>(dataSet);
+        Collections.sort(sortedList, Collections.reverseOrder(comparator(parameter)));
+        return sortedList;
+    }
+    
+    /**
+     * Get the k values for a feature with the largest values of a field, without sorting all values. This
+     * takes O(n log k) time for n values, compared with O(n log n) for getSortedValues, and only the
+     * values returned are copied when compact storage is used.
+     * 
+     * @param feature
+     *      feature
+     * @param parameter
+     *      field to sort values for
+     * @param k
+     *      maximum number of values to return
+     * @return ArrayList of the k key, data pairs with the largest values of "parameter", in decreasing order
+     * 
+     */
+    public ArrayList<Entry<String,Data>> topK(Type feature, DataType parameter, int k) {
+        if (featureTables != null) {
+            FeatureTable table = selectTable(feature);
+            int[] indexes = table.top(k, parameter);
+            ArrayList<Entry<String,Data>> topList = new ArrayList<Entry<String,Data>>(indexes.length);
+            for (int index : indexes) {
+                topList.add(new AbstractMap.SimpleEntry<String,Data>(table.key(index),
+                        new Data(table.count(index), table.relevance(index), table.score(index))));
+            }
+            return topList;
+        }
+        if (k <= 0) {
+            return new ArrayList<Entry<String,Data>>();
+        }
+        
+        // min-heap holding the largest values seen so far
+        Comparator<Entry<String,Data>> comparator = comparator(parameter);
+        PriorityQueue<Entry<String,Data>> heap = new PriorityQueue<Entry<String,Data>>(k, comparator);
+        for (Entry<String,Data> entry : selectHashMap(feature).entrySet()) {
+            if (heap.size() < k) {
+                heap.add(entry);
+            }
+            else if (comparator.compare(entry, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        ArrayList<Entry<String,Data>> topList = new ArrayList<Entry<String,Data>>(heap);
+        Collections.sort(topList, Collections.reverseOrder(comparator));
+        return topList;
+    }
+    
+    // Orders entries by increasing value of a field
+    private static Comparator<Entry<String,Data>> comparator(DataType parameter) {
         switch(parameter) {
-        case COUNT:        
-            Collections.sort(sortedList, new Comparator<Map.Entry<String,Data>>() {
+        case COUNT:
+            return new Comparator<Map.Entry<String,Data>>() {
                 public int compare(Map.Entry<String, Data> o1,
                                    Map.Entry<String, Data> o2) {
-                    return ((Integer) o2.getValue().getCount()).compareTo(o1.getValue().getCount());
-                }});
-            break;
+                    return Integer.compare(o1.getValue().getCount(), o2.getValue().getCount());
+                }};
         case RELEVANCE:
-            Collections.sort(sortedList, new Comparator<Map.Entry<String,Data>>() {
+            return new Comparator<Map.Entry<String,Data>>() {
                 public int compare(Map.Entry<String, Data> o1,
                                    Map.Entry<String, Data> o2) {
-                    return ((Double) o2.getValue().getRelevance()).compareTo(o1.getValue().getRelevance());
-                }});
-            break;
+                    return Double.compare(o1.getValue().getRelevance(), o2.getValue().getRelevance());
+                }};
         default:
-            Collections.sort(sortedList, new Comparator<Map.Entry<String,Data>>() {
+            return new Comparator<Map.Entry<String,Data>>() {
                 public int compare(Map.Entry<String, Data> o1,
                                    Map.Entry<String, Data> o2) {
-                    return ((Double) o2.getValue().getScore()).compareTo(o1.getValue().getScore());
-                }});
-            break;
+                    return Double.compare(o1.getValue().getScore(), o2.getValue().getScore());
+                }};
         }
-        return sortedList;
     }
     
 }
@@ -5,6 +5,7 @@ package com.ibm.watson.developer_cloud.cognitive_client;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -12,8 +13,17 @@ import org.json.JSONObject;
 
 import com.ibm.watson.developer_cloud.alchemy.v1.AlchemyLanguage;
 import com.ibm.watson.developer_cloud.alchemy.v1.model.CombinedResults;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Concept;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.DisambiguatedLinks;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Entity;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Keyword;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Sentiment;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Taxonomy;
 import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
 import com.ibm.watson.developer_cloud.cognitive_client.Util.NaturalLanguageService;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+
+import okhttp3.OkHttpClient;
 
 /**
  * @author ArunIyengar
@@ -34,7 +44,8 @@ public class AlchemyClient implements NaturalLanguageClient {
     private static final String TAX = "taxonomy";
     private static final String TEXT = "text";
     
-    private AlchemyLanguage service = new AlchemyLanguage();
+    private final TrafficCounter traffic = new TrafficCounter();
+    private AlchemyLanguage service = newService(traffic);
 
     /**
      * Constructor
@@ -45,6 +56,34 @@ public class AlchemyClient implements NaturalLanguageClient {
         service.setApiKey(apiKey);
     }
 
+    // Service whose HTTP client counts the bytes sent and received
+    private static AlchemyLanguage newService(final TrafficCounter counter) {
+        return new AlchemyLanguage() {
+            @Override
+            protected OkHttpClient configureHttpClient() {
+                return super.configureHttpClient().newBuilder().addNetworkInterceptor(counter).build();
+            }
+        };
+    }
+
+    /**
+     * Return the number of bytes sent to the service in request bodies
+     * 
+     * @return bytes sent
+     */
+    public long getBytesSent() {
+        return traffic.getBytesSent();
+    }
+
+    /**
+     * Return the number of bytes received from the service in response bodies
+     * 
+     * @return bytes received
+     */
+    public long getBytesReceived() {
+        return traffic.getBytesReceived();
+    }
+
     /**
      * Return identity of natural language service
      * 
@@ -71,7 +110,7 @@ public class AlchemyClient implements NaturalLanguageClient {
      */
     @Override
     public AggregateData analyzeData(String text, DataType type, String description) {
-        String results = getCombinedResultsString(text, type);
+        CombinedResults results = getCombinedResults(text, type);
         if (results == null) {
             return null;
         }
@@ -80,6 +119,50 @@ public class AlchemyClient implements NaturalLanguageClient {
         }
     }
     
+    /**
+     * Analyze and aggregate data from the text analysis service without blocking the calling thread. The
+     * request is queued by the underlying HTTP client, so no thread is tied up while waiting for the
+     * response.
+     * 
+     * @param text
+     *      data itself, or URL containing data to be analyzed
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @return future which completes with the analyzed and aggregated results from the text analysis
+     *      service, or completes exceptionally if the text analysis service failed to produce valid results
+     *      
+     */
+    @Override
+    public CompletableFuture<AggregateData> analyzeDataAsync(String text, DataType type,
+            final String description) {
+        final CompletableFuture<AggregateData> future = new CompletableFuture<AggregateData>();
+        try {
+            service.getCombinedResults(createParameters(text, type)).enqueue(new ServiceCallback<CombinedResults>() {
+                @Override
+                public void onResponse(CombinedResults combinedResults) {
+                    // an exception thrown here would be lost on the callback thread, leaving the future incomplete
+                    try {
+                        future.complete(analyzeData(combinedResults, description));
+                    }
+                    catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+    
+                @Override
+                public void onFailure(Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+        catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    
     /**
      * Calls the text analysis services to analyze textual data
      * 
@@ -91,6 +174,24 @@ public class AlchemyClient implements NaturalLanguageClient {
      *      
      */
     String getCombinedResultsString(String text, DataType type) {
+        CombinedResults combinedResults = getCombinedResults(text, type);
+        if (combinedResults == null) {
+            return null;
+        }
+        return combinedResults.toString();
+    }
+    
+    private CombinedResults getCombinedResults(String text, DataType type) {
+        try {
+            return service.getCombinedResults(createParameters(text, type)).execute();
+        }
+        catch (com.ibm.watson.developer_cloud.service.exception.BadRequestException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    private static Map<String,Object> createParameters(String text, DataType type) {
         Map<String,Object> params = new HashMap<String, Object>();
         switch(type) {
             case HTML:
@@ -104,16 +205,87 @@ public class AlchemyClient implements NaturalLanguageClient {
                 break;
         }
         params.put(AlchemyLanguage.SENTIMENT, 1);
-        CombinedResults combinedResults = null;
+        return params;
+    }
+    
+    /**
+     * Analyze and aggregate data from the text analysis services. Data is read directly from the objects
+     * produced by the service's response, without converting the results to a string and parsing it again.
+     * The results are only converted to a string if getAnalysisResults or addRawData is called on the
+     * returned object. Items without a name, a relevance (or, for taxonomy, a score), or, for entities, a
+     * positive count are skipped rather than averaged in as 0. Missing sentiment scores are treated as
+     * neutral (0), as by analyzeData(String, String).
+     * 
+     * @param results
+     *      data from the text analysis services
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @return analyzed and aggregated results from text analysis
+     * 
+     */
+    static AggregateData analyzeData(CombinedResults results, String description) {
+        AggregateData data = new AggregateData(description);
+        if (results.getKeywords() != null) {
+            for (Keyword keyword : results.getKeywords()) {
+                if ((keyword.getText() != null) && (keyword.getRelevance() != null)) {
+                    data.addData(keyword.getText(), 1, keyword.getRelevance(), sentimentScore(keyword.getSentiment()),
+                            AggregateData.Type.KEYWORD);
+                }
+            }
+        }
+        
+        if (results.getConcepts() != null) {
+            for (Concept concept : results.getConcepts()) {
+                if ((concept.getText() != null) && (concept.getRelevance() != null)) {
+                    data.addData(concept.getText(), 1, concept.getRelevance(), 0.0, AggregateData.Type.CONCEPT);
+                }
+            }
+        }
+        
+        if (results.getTaxonomy() != null) {
+            for (Taxonomy taxonomy : results.getTaxonomy()) {
+                if ((taxonomy.getLabel() != null) && (taxonomy.getScore() != null)) {
+                    data.addData(taxonomy.getLabel(), 1, 0.0, taxonomy.getScore(), AggregateData.Type.TAXONOMY);
+                }
+            }
+        }
+        
+        if (results.getEntities() != null) {
+            for (Entity entity : results.getEntities()) {
+                int count = entityCount(entity);
+                if ((entity.getRelevance() == null) || (count <= 0)) {
+                    continue;
+                }
+                double rel = entity.getRelevance();
+                double score = sentimentScore(entity.getSentiment());
+                DisambiguatedLinks disambiguated = entity.getDisambiguated();
+                if ((disambiguated != null) && (disambiguated.getName() != null)) {
+                    data.addData(disambiguated.getName(), count, rel, score,
+                            AggregateData.Type.DISAMBIGUATEDENTITY);
+                }
+                else {
+                    data.addData(entity.getText(), count, rel, score, AggregateData.Type.ENTITYAMBIGUOUS);
+                }
+            }
+        }
+        data.setAnalysisSource(results);
+        return data;
+    }
+    
+    // Entity.getCount unboxes the count, so a missing count throws NullPointerException
+    private static int entityCount(Entity entity) {
         try {
-            combinedResults = service.getCombinedResults(params).execute();
+            return entity.getCount();
+        } catch (NullPointerException e) {
+            return 0;
         }
-        catch (com.ibm.watson.developer_cloud.service.exception.BadRequestException e) {
-            e.printStackTrace();
-            return null;
+    }
+    
+    private static double sentimentScore(Sentiment sentiment) {
+        if (sentiment == null) {
+            return 0.0;
         }
-        String resultsString = combinedResults.toString();
-        return resultsString;
+        return Util.unboxDouble(sentiment.getScore());
     }
     
     /**
@@ -0,0 +1,200 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * @author ArunIyengar
+ *
+ * Manifest of input files whose analysis results have been stored in an output directory. Each line
+ * records the size, modification time, optionally a SHA-256 hash of an input file, and whether the stored
+ * results include the document and raw data. A line is appended, and flushed, only after the results for
+ * a file have been written, so a manifest which was cut short by a crash only lists files whose results
+ * are complete. An incomplete last line is ignored when the manifest is read. If a file appears more than
+ * once, the last line for it is used. When the checkpoint is closed, the manifest is rewritten with one line
+ * per file, so that it does not grow with every run. The new manifest is written to a temporary file which
+ * then replaces the old one, so a crash while rewriting leaves the old manifest intact.
+ *
+ */
+class AnalysisCheckpoint implements Closeable {
+
+    /**
+     * Name of the manifest file in the output directory
+     */
+    static final String MANIFEST_NAME = "checkpoint.manifest";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final String SEPARATOR = "\t";
+    private static final String NO_HASH = "-";
+    private static final int NUM_FIELDS = 5;
+
+    private static class Entry {
+        final long size;
+        final long lastModified;
+        final boolean rawData;
+        final String hash;
+
+        Entry(long fileSize, long modified, boolean raw, String contentHash) {
+            size = fileSize;
+            lastModified = modified;
+            rawData = raw;
+            hash = contentHash;
+        }
+    }
+
+    private final HashMap<String,Entry> entries = new HashMap<String,Entry>();
+    private final LinkedHashMap<String,String> lines = new LinkedHashMap<String,String>();  // last line per file
+    private final boolean useContentHash;
+    private final Path manifest;
+    private final BufferedWriter writer;
+    private boolean compact = true;  // true if the manifest has one complete line per file
+
+    /**
+     * Read the manifest in a directory, if there is one, and open it for appending
+     *
+     * @param directory
+     *      directory storing analysis results
+     * @param contentHash
+     *      true to compare SHA-256 hashes of file contents rather than modification times
+     * @throws IOException
+     *      if the manifest could not be read or opened
+     */
+    AnalysisCheckpoint(String directory, boolean contentHash) throws IOException {
+        useContentHash = contentHash;
+        manifest = Paths.get(directory, MANIFEST_NAME);
+        if (Files.exists(manifest)) {
+            List<String> manifestLines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+            for (String line : manifestLines) {
+                String[] fields = line.split(SEPARATOR, NUM_FIELDS);
+                if (fields.length < NUM_FIELDS) {
+                    continue;
+                }
+                try {
+                    entries.put(fields[4], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                            "1".equals(fields[2]), fields[3]));
+                    lines.put(fields[4], line);
+                } catch (NumberFormatException e) {
+                    // partially written line
+                }
+            }
+            compact = (lines.size() == manifestLines.size());
+        }
+        writer = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Return the number of files listed in the manifest when it was read
+     *
+     * @return number of files
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Determine whether the stored results for a file are current. Results are current if the file has
+     * the size and modification time, or content hash, which were recorded for it, and if the results
+     * contain the document and raw data when these are needed.
+     *
+     * @param file
+     *      input file
+     * @param needRawData
+     *      true if the results must include the document and raw data
+     * @return true if the stored results can be used in place of analyzing the file again
+     */
+    boolean isCurrent(File file, boolean needRawData) {
+        Entry entry = entries.get(file.getName());
+        if ((entry == null) || (needRawData && !entry.rawData) || (file.length() != entry.size)) {
+            return false;
+        }
+        if (useContentHash) {
+            String contentHash = hash(file);
+            return !NO_HASH.equals(contentHash) && entry.hash.equals(contentHash);
+        }
+        return file.lastModified() == entry.lastModified;
+    }
+
+    /**
+     * Create the manifest entry for a file. This should be called before the file is read for analysis,
+     * so that changes made to the file while it is being analyzed are detected on the next run.
+     *
+     * @param file
+     *      input file
+     * @param rawData
+     *      true if the stored results will include the document and raw data
+     * @return manifest line for the file
+     */
+    String entryFor(File file, boolean rawData) {
+        String contentHash = useContentHash ? hash(file) : NO_HASH;
+        return file.length() + SEPARATOR + file.lastModified() + SEPARATOR + (rawData ? "1" : "0")
+                + SEPARATOR + contentHash + SEPARATOR + file.getName();
+    }
+
+    /**
+     * Append an entry to the manifest once the results for its file have been stored
+     *
+     * @param entry
+     *      manifest line created by entryFor
+     */
+    synchronized void record(String entry) {
+        String[] fields = entry.split(SEPARATOR, NUM_FIELDS);
+        if (fields.length == NUM_FIELDS) {
+            lines.put(fields[4], entry);
+        }
+        compact = false;
+        try {
+            writer.write(entry);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Close the manifest, rewriting it with only the last line recorded for each file if it has any other
+     * lines
+     *
+     * @throws IOException
+     *      if the manifest could not be closed or rewritten
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+        if (compact) {
+            return;
+        }
+        Path temp = manifest.resolveSibling(MANIFEST_NAME + TEMP_SUFFIX);
+        Files.write(temp, lines.values(), StandardCharsets.UTF_8);
+        Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        compact = true;
+    }
+
+    // SHA-256 hash of a file's contents as a hexadecimal string, or NO_HASH if the file cannot be read
+    static String hash(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return Util.sha256(in);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return NO_HASH;
+        }
+    }
+
+}
@@ -0,0 +1,277 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
+import com.ibm.watson.developer_cloud.cognitive_client.Util.NaturalLanguageService;
+
+/**
+ * @author ArunIyengar
+ *
+ * Caches results from another natural language client so that analyzing the same data more than once
+ * only calls the text analysis service once. Results are cached in memory, with the least recently used
+ * results evicted once the cache is full, and optionally on disk so that they survive restarts. Cached
+ * results are keyed on a hash of the data analyzed, how the data should be treated, the natural language
+ * service, and the features and maximum number of responses requested.
+ *
+ */
+public class CachingClient implements NaturalLanguageClient {
+
+    private static final String FILESUFFIX = ".ana";
+
+    private final NaturalLanguageClient client;
+    private final String cacheDirectory;  // null if results are only cached in memory
+    private final LinkedHashMap<String,AggregateData> memoryCache;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor for a cache which only stores results in memory.
+     *
+     * @param naturalLanguageClient
+     *      client to call on a cache miss
+     * @param maxEntries
+     *      maximum number of results cached in memory
+     */
+    public CachingClient(NaturalLanguageClient naturalLanguageClient, int maxEntries) {
+        this(naturalLanguageClient, maxEntries, null);
+    }
+
+    /**
+     * Constructor for a cache which stores results in memory and on disk.
+     *
+     * @param naturalLanguageClient
+     *      client to call on a cache miss
+     * @param maxEntries
+     *      maximum number of results cached in memory
+     * @param directory
+     *      directory for storing cached results on disk, null to only cache results in memory. If the
+     *      directory does not exist, an attempt is made to create it
+     */
+    public CachingClient(NaturalLanguageClient naturalLanguageClient, final int maxEntries, String directory) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        client = naturalLanguageClient;
+        cacheDirectory = directory;
+        memoryCache = new LinkedHashMap<String,AggregateData>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,AggregateData> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        Util.createDirectory(cacheDirectory);
+    }
+
+    /**
+     * Return identity of natural language service
+     *
+     * @return identity of natural language service
+     *
+     * */
+    @Override
+    public NaturalLanguageService serviceType() {
+        return client.serviceType();
+    }
+
+    /**
+     * Return the settings of the wrapped client which affect results
+     *
+     * @return the wrapped client's cache key parameters
+     *
+     * */
+    @Override
+    public String cacheKeyParameters() {
+        return client.cacheKeyParameters();
+    }
+
+    /**
+     * Analyze and aggregate data, calling the text analysis service only if the results are not cached
+     *
+     * @param text
+     *      data itself, or URL containing data to be analyzed
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @return analyzed and aggregated results from text analysis service, null if the text analysis
+     *      service failed to produce valid results
+     *
+     */
+    @Override
+    public AggregateData analyzeData(String text, DataType type, String description) {
+        String key = cacheKey(text, type);
+        AggregateData cached = lookup(key, description);
+        if (cached != null) {
+            return cached;
+        }
+        AggregateData data = client.analyzeData(text, type, description);
+        if (data != null) {
+            store(key, data);
+        }
+        return data;
+    }
+
+    /**
+     * Analyze and aggregate data without blocking the calling thread, calling the text analysis service
+     * only if the results are not cached
+     *
+     * @param text
+     *      data itself, or URL containing data to be analyzed
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @return future which completes with the analyzed and aggregated results from the text analysis
+     *      service, or completes exceptionally if the text analysis service failed to produce valid results
+     *
+     */
+    @Override
+    public CompletableFuture<AggregateData> analyzeDataAsync(String text, DataType type, String description) {
+        final String key = cacheKey(text, type);
+        AggregateData cached = lookup(key, description);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return client.analyzeDataAsync(text, type, description).thenApply(data -> {
+            if (data != null) {
+                store(key, data);
+            }
+            return data;
+        });
+    }
+
+    /**
+     * Return number of requests satisfied from memory
+     *
+     * @return number of requests satisfied from memory
+     */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    /**
+     * Return number of requests satisfied from disk
+     *
+     * @return number of requests satisfied from disk
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Return number of requests which had to call the text analysis service
+     *
+     * @return number of requests which had to call the text analysis service
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Return number of results cached in memory
+     *
+     * @return number of results cached in memory
+     */
+    public int size() {
+        synchronized (memoryCache) {
+            return memoryCache.size();
+        }
+    }
+
+    /**
+     * Remove all results cached in memory. Results cached on disk are not affected.
+     */
+    public void clear() {
+        synchronized (memoryCache) {
+            memoryCache.clear();
+        }
+    }
+
+    String cacheKey(String text, DataType type) {
+        String key = client.serviceType() + "\n" + type + "\n" + client.cacheKeyParameters() + "\n" + text;
+        return Util.sha256(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Return a copy of cached results, null if the results are not cached
+    private AggregateData lookup(String key, String description) {
+        AggregateData cached;
+        synchronized (memoryCache) {
+            cached = memoryCache.get(key);
+        }
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+        }
+        else {
+            cached = readFromDisk(key);
+            if (cached == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            diskHits.incrementAndGet();
+            synchronized (memoryCache) {
+                memoryCache.put(key, cached);
+            }
+        }
+        AggregateData data = cached.copy();
+        data.setDescription(description);
+        return data;
+    }
+
+    private void store(String key, AggregateData data) {
+        AggregateData cached = data.copy();
+        writeToDisk(key, cached);
+        synchronized (memoryCache) {
+            memoryCache.put(key, cached);
+        }
+    }
+
+    // Raw results from the text analysis service are not normally written to disk, so they are stored
+    // as the only raw data
+    private void writeToDisk(String key, AggregateData cached) {
+        if (cacheDirectory == null) {
+            return;
+        }
+        AggregateData stored = new AggregateData(cached.getDescription());
+        stored.combineData(cached.copy(), false);
+        stored.setAnalysisResults(cached.getAnalysisResults());
+        stored.addRawData();
+        stored.writeToFile(cacheFile(key).toString());
+    }
+
+    private AggregateData readFromDisk(String key) {
+        if (cacheDirectory == null) {
+            return null;
+        }
+        File file = cacheFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        AggregateData stored = AggregateData.readFromFile(file.toString());
+        if (stored == null) {
+            return null;
+        }
+        if (!stored.getRawData().isEmpty()) {
+            stored.setAnalysisResults(stored.getRawData().get(0));
+            stored.getRawData().clear();
+        }
+        return stored;
+    }
+
+    private File cacheFile(String key) {
+        return new File(cacheDirectory, key + FILESUFFIX);
+    }
+
+}
@@ -0,0 +1,623 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @author ArunIyengar
+ * Serializes AggregateData objects in a compact binary format which is considerably smaller and faster
+ * to read and write than Java serialization.
+ *
+ * The format consists of:
+ * <ul>
+ * <li>the magic number "CCAD" and a format version byte</li>
+ * <li>the description</li>
+ * <li>the list of documents and the list of raw data</li>
+ * <li>a table of all of the distinct keys of concepts, entities, keywords, and taxonomies</li>
+ * <li>for each AggregateData.Type in declaration order, the number of entries followed by each entry's
+ * index in the key table, count, relevance, and score</li>
+ * </ul>
+ * Counts and lengths are stored as variable length integers, relevance and score values as 8 byte doubles.
+ * Each count also records which of relevance and score are non-zero, and zero values are omitted.
+ * Strings are stored in UTF-8 preceded by their length plus one, with a length of 0 denoting null.
+ *
+ * Version 2 of the format has no key table. Each entry instead stores the term ID of its key in a
+ * TermDictionary, which must be supplied to read the data. In place of the key table, the number of
+ * strings in the dictionary when the data was written and the dictionary's checksum of those strings are
+ * stored, and the data is only read if the dictionary supplied has the same checksum, so that term IDs
+ * are never mapped to the wrong keys.
+ *
+ */
+public class CompactSerializer {
+
+    static final byte[] MAGIC = {'C', 'C', 'A', 'D'};
+    static final int VERSION = 1;
+    static final int DICTIONARY_VERSION = 2;  // keys are stored as term IDs
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final long RELEVANCE_PRESENT = 1;
+    private static final long SCORE_PRESENT = 2;
+
+    /**
+     * Determine if a byte array was produced by this class
+     *
+     * @param bytes
+     *            serialized data
+     * @return true if the data is in the compact format, false if it is in another format such as Java
+     *            serialization
+     *
+     * */
+    static boolean isCompactFormat(byte[] bytes) {
+        if ((bytes == null) || (bytes.length < MAGIC.length)) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serialize an AggregateData object to a byte array
+     *
+     * @param data
+     *            object to serialize
+     * @return serialized object
+     *
+     * */
+    static byte[] serializeToByteArray(AggregateData data) {
+        return serializeToByteArray(data, null);
+    }
+
+    /**
+     * Serialize an AggregateData object to a byte array
+     *
+     * @param data
+     *            object to serialize
+     * @param dictionary
+     *            term dictionary used to store keys, null to store keys as strings
+     * @return serialized object
+     *
+     * */
+    static byte[] serializeToByteArray(AggregateData data, TermDictionary dictionary) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(BUFFER_SIZE);
+        try {
+            write(data, bos, dictionary);
+        } catch (IOException ex) {
+            System.out.println("Exception in CompactSerializer.serializeToByteArray  " + ",  " + ex.getMessage());
+            return null;
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Deserialize an AggregateData object from a byte array
+     *
+     * @param bytes
+     *            bytes to deserialize
+     * @return deserialized object, null if the bytes do not contain a valid serialized object
+     *
+     * */
+    static AggregateData deserializeFromByteArray(byte[] bytes) {
+        return deserializeFromByteArray(bytes, null);
+    }
+
+    /**
+     * Deserialize an AggregateData object from a byte array
+     *
+     * @param bytes
+     *            bytes to deserialize
+     * @param dictionary
+     *            term dictionary for the keys of the object. If null, the object does not use a dictionary
+     *            and the data must not store keys as term IDs
+     * @return deserialized object, null if the bytes do not contain a valid serialized object
+     *
+     * */
+    static AggregateData deserializeFromByteArray(byte[] bytes, TermDictionary dictionary) {
+        if (!isCompactFormat(bytes)) {
+            return null;
+        }
+        try {
+            return read(new Input(bytes), dictionary);
+        } catch (IOException i) {
+            System.out.println("Exception in CompactSerializer.deserializeFromByteArray  " + ",  " + i.getMessage());
+            i.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Write an AggregateData object in the compact format
+     *
+     * @param data
+     *            object to write
+     * @param outputStream
+     *            destination
+     * @throws IOException
+     *            if the data cannot be written
+     *
+     * */
+    static void write(AggregateData data, OutputStream outputStream) throws IOException {
+        write(data, outputStream, null);
+    }
+
+    /**
+     * Write an AggregateData object in the compact format
+     *
+     * @param data
+     *            object to write
+     * @param outputStream
+     *            destination
+     * @param dictionary
+     *            term dictionary used to store keys, null to store keys as strings. Keys which are not
+     *            in the dictionary are added to it
+     * @throws IOException
+     *            if the data cannot be written
+     *
+     * */
+    static void write(AggregateData data, OutputStream outputStream, final TermDictionary dictionary)
+            throws IOException {
+        final Output out = new Output(outputStream);
+        out.writeBytes(MAGIC, MAGIC.length);
+        out.writeByte((dictionary == null) ? VERSION : DICTIONARY_VERSION);
+        out.writeString(data.getDescription());
+        out.writeStrings(data.getDocuments());
+        out.writeStrings(data.getRawData());
+
+        final HashMap<String,Integer> keyIndexes = new HashMap<String,Integer>();
+        if (dictionary == null) {
+            final ArrayList<String> keys = new ArrayList<String>();
+            for (AggregateData.Type type : AggregateData.Type.values()) {
+                data.forEachEntry(type, (key, count, relevance, score) -> {
+                    if (!keyIndexes.containsKey(key)) {
+                        keyIndexes.put(key, keys.size());
+                        keys.add(key);
+                    }
+                });
+            }
+            out.writeStrings(keys);
+        }
+        else {
+            // every key must have a term ID before the size of the dictionary is recorded
+            if (data.getTermDictionary() != dictionary) {
+                for (AggregateData.Type type : AggregateData.Type.values()) {
+                    data.forEachEntry(type, (key, count, relevance, score) -> dictionary.getId(key));
+                }
+            }
+            int numTerms = dictionary.size();
+            out.writeVarInt(numTerms);
+            out.writeVarLong(dictionary.checksum(numTerms));
+        }
+        try {
+            for (AggregateData.Type type : AggregateData.Type.values()) {
+                out.writeVarInt(data.numEntries(type));
+                data.forEachEntry(type, (key, count, relevance, score) -> {
+                    try {
+                        int keyIndex = (dictionary == null) ? keyIndexes.get(key) : dictionary.getId(key);
+                        writeEntry(out, keyIndex, count, relevance, score);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    /**
+     * Read an AggregateData object in the compact format
+     *
+     * @param inputStream
+     *            source
+     * @return object read
+     * @throws IOException
+     *            if the data cannot be read or is not in the compact format
+     *
+     * */
+    static AggregateData read(InputStream inputStream) throws IOException {
+        return read(new Input(inputStream), null);
+    }
+
+    private static AggregateData read(Input in, TermDictionary dictionary) throws IOException {
+        int version = readHeader(in);
+        String description = in.readString();
+        AggregateData data = (dictionary == null) ? new AggregateData(description)
+                : new AggregateData(description, dictionary);
+        in.readStrings(data.getDocuments());
+        in.readStrings(data.getRawData());
+        readEntries(in, data, version);
+        return data;
+    }
+
+    /**
+     * Read an AggregateData object in the compact format and add its contents to another AggregateData
+     * object. Documents and raw data are skipped unless they are requested. Entries are read into a
+     * separate object, using the term dictionary of "data" if it has one, and only added to "data" once
+     * all of the source has been read, so a truncated or corrupt source leaves "data" unchanged.
+     *
+     * @param inputStream
+     *            source
+     * @param data
+     *            object to add contents to
+     * @param addRawData
+     *            Indicates whether documents and raw data should be added to "data"
+     * @return true if the contents were added, false if the source is not in the compact format. Nothing
+     *            is added to "data" if false is returned
+     * @throws IOException
+     *            if the data cannot be read, is truncated or corrupt, has an unsupported version, or stores
+     *            keys as term IDs and "data" does not use the term dictionary they were stored with.
+     *            Nothing is added to "data" if an exception is thrown
+     *
+     * */
+    static boolean readInto(InputStream inputStream, AggregateData data, boolean addRawData) throws IOException {
+        Input in = new Input(inputStream);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (in.readByte() != MAGIC[i]) {
+                return false;
+            }
+        }
+        int version = readVersion(in);
+        in.skipString();  // description
+        TermDictionary dictionary = data.getTermDictionary();
+        AggregateData stored = (dictionary == null) ? new AggregateData(null)
+                : new AggregateData(null, dictionary);
+        if (addRawData) {
+            in.readStrings(stored.getDocuments());
+            in.readStrings(stored.getRawData());
+        }
+        else {
+            in.skipStrings();
+            in.skipStrings();
+        }
+        readEntries(in, stored, version);
+        data.combineData(stored, addRawData);
+        return true;
+    }
+
+    private static int readHeader(Input in) throws IOException {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (in.readByte() != MAGIC[i]) {
+                throw new IOException("data is not in the compact AggregateData format");
+            }
+        }
+        return readVersion(in);
+    }
+
+    private static int readVersion(Input in) throws IOException {
+        int version = in.readByte() & 0xff;
+        if ((version != VERSION) && (version != DICTIONARY_VERSION)) {
+            throw new IOException("unsupported compact AggregateData format version " + version);
+        }
+        return version;
+    }
+
+    // Keys read as strings are interned in the dictionary of "data", if any, so that data sharing the
+    // dictionary holds a single instance of each key
+    private static void readEntries(Input in, AggregateData data, int version) throws IOException {
+        TermDictionary dictionary = data.getTermDictionary();
+        String[] keys = null;
+        int numTerms = 0;
+        if (version == VERSION) {
+            ArrayList<String> keyList = new ArrayList<String>();
+            in.readStrings(keyList);
+            keys = keyList.toArray(new String[keyList.size()]);
+            if (dictionary != null) {
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = dictionary.intern(keys[i]);
+                }
+            }
+        }
+        else if (dictionary == null) {
+            throw new IOException("a term dictionary is required to read data stored using term IDs");
+        }
+        else {
+            int numStored = in.readVarInt();
+            long checksum = in.readVarLong();
+            if ((numStored < 0) || (numStored > dictionary.size()) || (dictionary.checksum(numStored) != checksum)) {
+                throw new IOException("data was stored using a different term dictionary");
+            }
+            numTerms = numStored + 1;
+        }
+        for (AggregateData.Type type : AggregateData.Type.values()) {
+            int numEntries = in.readVarInt();
+            for (int i = 0; i < numEntries; i++) {
+                int keyIndex = in.readVarInt();
+                long header = in.readVarLong();
+                int count = unZigZag((int) (header >>> 2));
+                double relevance = ((header & RELEVANCE_PRESENT) != 0) ? in.readDouble() : 0.0;
+                double score = ((header & SCORE_PRESENT) != 0) ? in.readDouble() : 0.0;
+                if (keys != null) {
+                    if ((keyIndex < 0) || (keyIndex >= keys.length)) {
+                        throw new IOException("key index " + keyIndex + " is not in the key table");
+                    }
+                    data.addData(keys[keyIndex], count, relevance, score, type);
+                }
+                else if ((keyIndex >= 0) && (keyIndex < numTerms)) {
+                    data.addTermData(keyIndex, count, relevance, score, type);
+                }
+                else {
+                    throw new IOException("term ID " + keyIndex + " is not in the term dictionary");
+                }
+            }
+        }
+    }
+
+    // The count is combined with flags indicating which of relevance and score are non-zero; zero values
+    // are common (e.g. concepts have no score) and are not written
+    private static void writeEntry(Output out, int keyIndex, int count, double relevance, double score)
+            throws IOException {
+        long header = (zigZag(count) & 0xffffffffL) << 2;
+        boolean hasRelevance = Double.doubleToRawLongBits(relevance) != 0L;
+        boolean hasScore = Double.doubleToRawLongBits(score) != 0L;
+        if (hasRelevance) {
+            header |= RELEVANCE_PRESENT;
+        }
+        if (hasScore) {
+            header |= SCORE_PRESENT;
+        }
+        out.writeVarInt(keyIndex);
+        out.writeVarLong(header);
+        if (hasRelevance) {
+            out.writeDouble(relevance);
+        }
+        if (hasScore) {
+            out.writeDouble(score);
+        }
+    }
+
+    // Map signed ints to unsigned ints so that values of small magnitude have short encodings
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Buffered output. Unlike DataOutputStream over a BufferedOutputStream, writing a value does not
+     * involve a synchronized method call for each byte.
+     */
+    static final class Output {
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+
+        Output(OutputStream outputStream) {
+            out = outputStream;
+        }
+
+        void writeByte(int value) throws IOException {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes, int length) throws IOException {
+            if (length > buffer.length - position) {
+                flushBuffer();
+                if (length > buffer.length) {
+                    out.write(bytes, 0, length);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, position, length);
+            position += length;
+        }
+
+        // Write a non-negative int using 7 bits per byte, with the high bit set on all but the last byte
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7f) != 0) {
+                writeByte((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7fL) != 0) {
+                writeByte((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeDouble(double value) throws IOException {
+            if (buffer.length - position < 8) {
+                flushBuffer();
+            }
+            long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (bits >>> shift);
+            }
+        }
+
+        void writeString(String string) throws IOException {
+            if (string == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            writeBytes(bytes, bytes.length);
+        }
+
+        void writeStrings(List<String> strings) throws IOException {
+            writeVarInt(strings.size());
+            for (String string : strings) {
+                writeString(string);
+            }
+        }
+
+        void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Buffered input from either a byte array or an input stream
+     */
+    static final class Input {
+
+        private final InputStream in;  // null if all data is in the buffer
+        private byte[] buffer;
+        private int position;
+        private int limit;
+
+        Input(byte[] bytes) {
+            in = null;
+            buffer = bytes;
+            limit = bytes.length;
+        }
+
+        Input(InputStream inputStream) {
+            in = inputStream;
+            buffer = new byte[BUFFER_SIZE];
+        }
+
+        byte readByte() throws IOException {
+            if (position == limit) {
+                fill(1);
+            }
+            return buffer[position++];
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = readByte();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("malformed variable length integer");
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("malformed variable length integer");
+        }
+
+        double readDouble() throws IOException {
+            if (limit - position < 8) {
+                fill(8);
+            }
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (buffer[position++] & 0xff);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        String readString() throws IOException {
+            int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (limit - position < length) {
+                fill(length);
+            }
+            String string = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return string;
+        }
+
+        void readStrings(List<String> strings) throws IOException {
+            int size = readVarInt();
+            for (int i = 0; i < size; i++) {
+                strings.add(readString());
+            }
+        }
+
+        void skipString() throws IOException {
+            skip(readVarInt() - 1);
+        }
+
+        void skipStrings() throws IOException {
+            int size = readVarInt();
+            for (int i = 0; i < size; i++) {
+                skipString();
+            }
+        }
+
+        // Skip "length" bytes without buffering them
+        private void skip(int length) throws IOException {
+            if (length <= 0) {
+                return;
+            }
+            int buffered = Math.min(length, limit - position);
+            position += buffered;
+            long remaining = length - buffered;
+            while (remaining > 0) {
+                if (in == null) {
+                    throw new EOFException();
+                }
+                long numSkipped = in.skip(remaining);
+                if (numSkipped <= 0) {
+                    if (in.read() < 0) {
+                        throw new EOFException();
+                    }
+                    numSkipped = 1;
+                }
+                remaining -= numSkipped;
+            }
+        }
+
+        // Ensure that at least "needed" unread bytes are in the buffer, growing it if necessary
+        private void fill(int needed) throws IOException {
+            if (in == null) {
+                throw new EOFException();
+            }
+            int remaining = limit - position;
+            if (needed > buffer.length) {
+                byte[] newBuffer = new byte[Math.max(needed, 2 * buffer.length)];
+                System.arraycopy(buffer, position, newBuffer, 0, remaining);
+                buffer = newBuffer;
+            }
+            else {
+                System.arraycopy(buffer, position, buffer, 0, remaining);
+            }
+            position = 0;
+            limit = remaining;
+            while (limit < needed) {
+                int numRead = in.read(buffer, limit, buffer.length - limit);
+                if (numRead < 0) {
+                    throw new EOFException();
+                }
+                limit += numRead;
+            }
+        }
+    }
+
+}
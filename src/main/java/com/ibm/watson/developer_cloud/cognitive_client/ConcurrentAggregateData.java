@@ -0,0 +1,273 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * @author ArunIyengar
+ *
+ * Thread-safe version of AggregateData which many threads can add data to at once. Data for each type is
+ * stored in a ConcurrentHashMap; updates to different keys proceed in parallel, and updates to the same key
+ * are serialized by locking only the data for that key.
+ *
+ * snapshot returns a consistent copy of the data as an AggregateData object: each update made while a
+ * snapshot is being taken is either entirely reflected in the snapshot or not at all. Updates to
+ * different keys only wait for snapshots, not for each other. To exclude updates during a snapshot,
+ * each update holds a read lock; the read locks are striped by thread, so that threads updating at the
+ * same time do not all modify the same lock, and a snapshot holds the write locks of all stripes.
+ *
+ */
+public class ConcurrentAggregateData {
+
+    // ConcurrentHashMap does not allow null keys, which AggregateData allows
+    private static final Object NULL_KEY = new Object();
+    private static final int NUM_STRIPES = numStripes(4 * Runtime.getRuntime().availableProcessors());
+
+    private static final Function<Object,Cell> NEW_CELL = new Function<Object,Cell>() {
+        public Cell apply(Object key) {
+            return new Cell();
+        }
+    };
+
+    /**
+     * Data for a particular entity, keyword, concept, taxonomy, etc. Guarded by its own monitor.
+     */
+    private static class Cell {
+        private int count;
+        private double relevance;
+        private double score;
+
+        private void addData(int countAdd, double relevanceAdd, double scoreAdd) {
+            if (count == 0) {
+                score = scoreAdd;  // same result as for a new AggregateData.Data object
+            }
+            else {
+                score = ((count*score)+(countAdd*scoreAdd))/(count+countAdd);
+            }
+            count += countAdd;
+            relevance += relevanceAdd;
+        }
+    }
+
+    private volatile String description;
+    private final List<String> documents = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> rawData = Collections.synchronizedList(new ArrayList<String>());
+    private final ConcurrentHashMap<Object,Cell>[] maps;  // indexed by AggregateData.Type ordinal
+
+    // Updates hold the read lock of their thread's stripe; snapshots hold the write locks of all stripes
+    private final StampedLock[] locks = new StampedLock[NUM_STRIPES];
+
+    /**
+     * Constructor.
+     *
+     * @param describe
+     *            description of the aggregate data set
+     *
+     */
+    public ConcurrentAggregateData(String describe) {
+        description = describe;
+        maps = Util.uncheckedCast(new ConcurrentHashMap<?,?>[AggregateData.Type.values().length]);
+        for (int i = 0; i < maps.length; i++) {
+            maps[i] = new ConcurrentHashMap<Object,Cell>();
+        }
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new StampedLock();
+        }
+    }
+
+    /**
+     * Returns description
+     *
+     * @return
+     *      description
+     *
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Updates description
+     *
+     * @param describe
+     *      new value for description
+     *
+     */
+    public void setDescription(String describe) {
+        description = describe;
+    }
+
+    /**
+     * Add new data corresponding to analyzed text
+     *
+     * @param key
+     *      corresponds to an entity, keyword, etc.
+     * @param countAdd
+     *      number of times it appeared
+     * @param relAdd
+     *      relevance
+     * @param scoreAdd
+     *      score (e.g. sentiment analysis score)
+     * @param type
+     *      type
+     *
+     */
+    public void addData(String key, int countAdd, double relAdd, double scoreAdd, AggregateData.Type type) {
+        StampedLock lock = stripeLock();
+        long stamp = lock.readLock();
+        try {
+            add(key, countAdd, relAdd, scoreAdd, type);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Add a document
+     *
+     * @param document
+     *      document to add
+     *
+     */
+    public void addDocument(String document) {
+        StampedLock lock = stripeLock();
+        long stamp = lock.readLock();
+        try {
+            documents.add(document);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Add raw data from an analysis service
+     *
+     * @param data
+     *      raw data to add
+     *
+     */
+    public void addRawData(String data) {
+        StampedLock lock = stripeLock();
+        long stamp = lock.readLock();
+        try {
+            rawData.add(data);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Add data from an AggregateData object to this. The AggregateData object must not be modified
+     * during this call. All of its data appears in snapshots together.
+     *
+     * @param data
+     *      AggregateData object to add to this
+     * @param addRawData
+     *      Indicates whether documents and rawData from "data" should be added to this
+     */
+    public void combineData(AggregateData data, boolean addRawData) {
+        StampedLock lock = stripeLock();
+        long stamp = lock.readLock();
+        try {
+            for (final AggregateData.Type type : AggregateData.Type.values()) {
+                data.forEachEntry(type, (key, count, relevance, score) -> add(key, count, relevance, score, type));
+            }
+            if (addRawData) {
+                documents.addAll(data.getDocuments());
+                rawData.addAll(data.getRawData());
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Return number of distinct keys of a type
+     *
+     * @param type
+     *      type
+     * @return number of distinct keys
+     */
+    public int numEntries(AggregateData.Type type) {
+        return maps[type.ordinal()].size();
+    }
+
+    /**
+     * Return a consistent copy of the data in this. Updates made by other threads wait until the copy
+     * has been made.
+     *
+     * @param compactStorage
+     *      true if the copy should use compact storage (see AggregateData)
+     * @return copy of the data in this
+     */
+    public AggregateData snapshot(boolean compactStorage) {
+        AggregateData data = new AggregateData(description, compactStorage);
+        long[] stamps = new long[locks.length];
+        for (int i = 0; i < locks.length; i++) {
+            stamps[i] = locks[i].writeLock();  // always in the same order, so snapshots cannot deadlock
+        }
+        try {
+            data.getDocuments().addAll(documents);
+            data.getRawData().addAll(rawData);
+            for (AggregateData.Type type : AggregateData.Type.values()) {
+                for (Map.Entry<Object,Cell> entry : maps[type.ordinal()].entrySet()) {
+                    Object key = entry.getKey();
+                    Cell cell = entry.getValue();
+                    data.addData((key == NULL_KEY) ? null : (String) key, cell.count, cell.relevance, cell.score, type);
+                }
+            }
+        } finally {
+            for (int i = 0; i < locks.length; i++) {
+                locks[i].unlockWrite(stamps[i]);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Return a consistent copy of the data in this stored in HashMaps
+     *
+     * @return copy of the data in this
+     */
+    public AggregateData snapshot() {
+        return snapshot(false);
+    }
+
+    // Lock for the stripe of the current thread
+    private StampedLock stripeLock() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9e3779b9;  // spreads consecutive thread IDs across stripes
+        return locks[(hash >>> 16) & (locks.length - 1)];
+    }
+
+    // Smallest power of two which is at least "minimum"
+    private static int numStripes(int minimum) {
+        int stripes = 1;
+        while (stripes < minimum) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    // Caller must hold a read lock
+    private void add(String key, int countAdd, double relAdd, double scoreAdd, AggregateData.Type type) {
+        ConcurrentHashMap<Object,Cell> map = maps[type.ordinal()];
+        Object mapKey = (key == null) ? NULL_KEY : key;
+        Cell cell = map.get(mapKey);
+        if (cell == null) {
+            cell = map.computeIfAbsent(mapKey, NEW_CELL);
+        }
+        synchronized (cell) {
+            cell.addData(countAdd, relAdd, scoreAdd);
+        }
+    }
+
+}
@@ -4,9 +4,31 @@
 package com.ibm.watson.developer_cloud.cognitive_client;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.ibm.watson.developer_cloud.cognitive_client.Search.SearchType;
 import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
@@ -18,6 +40,60 @@ import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
 public class DataManager {
     
     private static final String FILESUFFIX = ".ana";
+    private static final int CHUNKS_PER_THREAD = 4;  // allows threads which finish early to take more work
+
+    private static volatile StageTimers stageTimers = new StageTimers(MetricsRegistry.NONE);
+
+    /**
+     * Timers for the stages of analyzing data, and counters of stored results reused and of Web search
+     * results, looked up once when a registry is set
+     */
+    private static class StageTimers {
+
+        private final MetricsRegistry.Timer read;
+        private final MetricsRegistry.Timer analyze;
+        private final MetricsRegistry.Timer merge;
+        private final MetricsRegistry.Timer persist;
+        private final MetricsRegistry.Counter reused;
+        private final MetricsRegistry.Counter urls;
+        private final MetricsRegistry.Counter duplicates;
+        private final MetricsRegistry.Counter results;
+        private final MetricsRegistry.Counter fetchTimeouts;
+        private final MetricsRegistry.Counter analysisTimeouts;
+
+        private StageTimers(MetricsRegistry registry) {
+            read = registry.timer("DataManager.read");
+            analyze = registry.timer("DataManager.analyze");
+            merge = registry.timer("DataManager.merge");
+            persist = registry.timer("DataManager.persist");
+            reused = registry.counter("DataManager.reused");
+            urls = registry.counter("DataManager.urls");
+            duplicates = registry.counter("DataManager.duplicates");
+            results = registry.counter("DataManager.results");
+            fetchTimeouts = registry.counter("DataManager.fetchTimeouts");
+            analysisTimeouts = registry.counter("DataManager.analysisTimeouts");
+        }
+    }
+
+    /**
+     * Record the time spent in each stage of analyzing files and Web pages in a registry. The timers are
+     * DataManager.read for reading a file or fetching a Web page, DataManager.analyze for the call to the
+     * natural language client, DataManager.merge for combining the results with the aggregated data, and
+     * DataManager.persist for storing the results on disk. Time spent waiting for a thread or for
+     * permission to call the client is not included. The count of each timer is the number of files or
+     * pages which went through that stage. The counter DataManager.reused counts files which
+     * analyzeDirectoryResumable did not analyze again because their stored results were current. For
+     * analyzeWebSearchResults, the counters DataManager.urls, DataManager.duplicates, and DataManager.results
+     * count the URLs found, those skipped as duplicates or analyzed earlier, and those analyzed successfully,
+     * and DataManager.fetchTimeouts and DataManager.analysisTimeouts count pages whose fetch or analysis
+     * did not complete within the timeout.
+     *
+     * @param registry
+     *      registry in which to record stage timings, MetricsRegistry.NONE to stop recording them
+     */
+    public static void setMetricsRegistry(MetricsRegistry registry) {
+        stageTimers = new StageTimers(registry);
+    }
 
     /**
      * Analyze all files in a directory of character files and return a data structure with the analyzed
@@ -49,23 +125,224 @@ public class DataManager {
             Util.createDirectory(outputDirectory);
         }
         for (File file : inputDir.listFiles()) {
-            String text = Util.fileToString(file.toString());
-            AggregateData newdata = client.analyzeData(text, type, description);
-            if (newdata == null) {
-                continue;
-            }
-            if (keepRawData) {
-                newdata.addDocument(text);
-                newdata.addRawData();
+            analyzeFile(file, data, description, keepRawData, persistResults, outputDirectory, type, client,
+                    null, null);
+        }
+        return data;
+    }
+    
+    /**
+     * Analyze all files in a directory of character files using multiple threads and return a data
+     * structure with the analyzed data aggregated. Optionally store analysis results of individual files
+     * on disk. Each thread aggregates the files it analyzes into its own data structure; these are
+     * combined once all files have been analyzed, so threads do not contend on a shared data structure.
+     * The order in which documents and raw data appear in the returned data structure is not defined.
+     * 
+     * @param directory
+     *      directory containing files to analyze
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @param keepRawData
+     *      indicates whether each file and analysis results of individual files should be kept in
+     *      returned data structure
+     * @param persistResults
+     *      indicates whether analysis results for individual files should be stored on disk
+     * @param outputDirectory
+     *      if "persistResults == true", directory storing analysis results for individual files
+     * @param type
+     *      indicates if each input file contains text data, html data, or a url
+     * @param client
+     *      client to access natural language services; must be safe to call from multiple threads
+     * @param numThreads
+     *      number of threads reading, analyzing, and storing files
+     * @param maxConcurrentCalls
+     *      maximum number of calls to the natural language service which may be in progress at once
+     * @return data structure containing the analysis results aggregated
+     * 
+     */
+    public static AggregateData analyzeDirectory(String directory, String description, boolean keepRawData,
+            boolean persistResults, String outputDirectory, DataType type, NaturalLanguageClient client,
+            int numThreads, int maxConcurrentCalls) {
+        if (persistResults) {
+            Util.createDirectory(outputDirectory);
+        }
+        return analyzeFiles(new File(directory).listFiles(), description, keepRawData, persistResults,
+                outputDirectory, type, client, numThreads, maxConcurrentCalls, null);
+    }
+    
+    /**
+     * Analyze all files in a directory of character files using multiple threads, storing analysis results
+     * of individual files on disk, and return a data structure with the analyzed data aggregated. A manifest
+     * in the output directory records each file whose results have been stored. Files which have not changed
+     * since their results were stored are not analyzed again; their stored results are read and aggregated
+     * instead. If an earlier call did not finish, calling this again with the same directories only analyzes
+     * the files which the earlier call did not get to, and running it on a directory in which only a few
+     * files have changed only analyzes those files. The number of files whose stored results were reused is
+     * counted by the DataManager.reused counter of the registry passed to setMetricsRegistry.
+     * 
+     * @param directory
+     *      directory containing files to analyze
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @param keepRawData
+     *      indicates whether each file and analysis results of individual files should be kept in
+     *      returned data structure
+     * @param outputDirectory
+     *      directory storing analysis results for individual files and the manifest
+     * @param type
+     *      indicates if each input file contains text data, html data, or a url
+     * @param client
+     *      client to access natural language services; must be safe to call from multiple threads
+     * @param numThreads
+     *      number of threads reading, analyzing, and storing files
+     * @param maxConcurrentCalls
+     *      maximum number of calls to the natural language service which may be in progress at once
+     * @param useContentHash
+     *      if true, a file is considered unchanged if a SHA-256 hash of its contents matches the stored hash;
+     *      otherwise, it is considered unchanged if its size and modification time match
+     * @return data structure containing the analysis results aggregated, null if the manifest could not
+     *      be read or written
+     * 
+     */
+    public static AggregateData analyzeDirectoryResumable(String directory, String description,
+            boolean keepRawData, String outputDirectory, DataType type, NaturalLanguageClient client,
+            int numThreads, int maxConcurrentCalls, boolean useContentHash) {
+        Util.createDirectory(outputDirectory);
+        try (AnalysisCheckpoint checkpoint = new AnalysisCheckpoint(outputDirectory, useContentHash)) {
+            return analyzeFiles(new File(directory).listFiles(), description, keepRawData, true,
+                    outputDirectory, type, client, numThreads, maxConcurrentCalls, checkpoint);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    // Analyze files using multiple threads. If "checkpoint" is not null, stored results are used for files
+    // which have not changed, and files which are analyzed are recorded in the checkpoint.
+    private static AggregateData analyzeFiles(final File[] files, final String description,
+            final boolean keepRawData, final boolean persistResults, final String outputDirectory,
+            final DataType type, final NaturalLanguageClient client, int numThreads, int maxConcurrentCalls,
+            final AnalysisCheckpoint checkpoint) {
+        if ((numThreads < 1) || (maxConcurrentCalls < 1)) {
+            throw new IllegalArgumentException("numThreads and maxConcurrentCalls must be positive");
+        }
+        AggregateData data = new AggregateData(description);
+        final AtomicInteger nextFile = new AtomicInteger();
+        final StageTimers timers = stageTimers;
+        final Semaphore inFlight = new Semaphore(maxConcurrentCalls);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        ArrayList<Future<AggregateData>> partialResults = new ArrayList<Future<AggregateData>>();
+        try {
+            for (int i = 0; i < numThreads; i++) {
+                partialResults.add(executor.submit(new Callable<AggregateData>() {
+                    @Override
+                    public AggregateData call() {
+                        AggregateData partial = new AggregateData(description);
+                        int index;
+                        while ((index = nextFile.getAndIncrement()) < files.length) {
+                            try {
+                                if ((checkpoint != null) && checkpoint.isCurrent(files[index], keepRawData)
+                                        && combineStoredResults(files[index], partial, keepRawData,
+                                                outputDirectory)) {
+                                    timers.reused.increment();
+                                    continue;
+                                }
+                                analyzeFile(files[index], partial, description, keepRawData, persistResults,
+                                        outputDirectory, type, client, inFlight, checkpoint);
+                            } catch (RuntimeException e) {
+                                e.printStackTrace();
+                            }
+                        }
+                        return partial;
+                    }
+                }));
             }
-            data.combineData(newdata, keepRawData);
-            if (persistResults) {
-                newdata.writeToFile(createFullPath(analysisFileName(file.getName()), outputDirectory));
+            for (Future<AggregateData> partialResult : partialResults) {
+                AggregateData partial = waitForResult(partialResult);
+                if (partial != null) {
+                    data.combineData(partial, keepRawData);
+                }
             }
+        } finally {
+            executor.shutdownNow();
         }
         return data;
     }
     
+    // Add the stored results for an unchanged file to "data", returning false if they cannot be read
+    private static boolean combineStoredResults(File file, AggregateData data, boolean keepRawData,
+            String outputDirectory) {
+        String filename = createFullPath(analysisFileName(file.getName()), outputDirectory);
+        if (!new File(filename).isFile()) {
+            return false;
+        }
+        AggregateData storedData = AggregateData.readFromFile(filename);
+        if (storedData == null) {
+            return false;
+        }
+        data.combineData(storedData, keepRawData);
+        return true;
+    }
+    
+    // Analyze a single file and add the results to "data". If "inFlight" is not null, a permit is held
+    // for the duration of the service call. If "checkpoint" is not null, the file is recorded in it once
+    // its results have been stored.
+    private static void analyzeFile(File file, AggregateData data, String description, boolean keepRawData,
+            boolean persistResults, String outputDirectory, DataType type, NaturalLanguageClient client,
+            Semaphore inFlight, AnalysisCheckpoint checkpoint) {
+        StageTimers timers = stageTimers;
+        String entry = (checkpoint == null) ? null : checkpoint.entryFor(file, keepRawData);
+        long start = System.nanoTime();
+        String text = Util.fileToString(file.toString());
+        timers.read.record(System.nanoTime() - start);
+        AggregateData newdata;
+        if (inFlight == null) {
+            start = System.nanoTime();
+            newdata = client.analyzeData(text, type, description);
+        }
+        else {
+            inFlight.acquireUninterruptibly();
+            start = System.nanoTime();
+            try {
+                newdata = client.analyzeData(text, type, description);
+            } finally {
+                inFlight.release();
+            }
+        }
+        timers.analyze.record(System.nanoTime() - start);
+        if (newdata == null) {
+            return;
+        }
+        start = System.nanoTime();
+        if (keepRawData) {
+            newdata.addDocument(text);
+            newdata.addRawData();
+        }
+        data.combineData(newdata, keepRawData);
+        timers.merge.record(System.nanoTime() - start);
+        if (persistResults) {
+            start = System.nanoTime();
+            newdata.writeToFile(createFullPath(analysisFileName(file.getName()), outputDirectory));
+            timers.persist.record(System.nanoTime() - start);
+            if (checkpoint != null) {
+                checkpoint.record(entry);
+            }
+        }
+    }
+    
+    // Wait for a task to finish, returning null if it failed or the calling thread was interrupted
+    private static <T> T waitForResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
     
     /**
      * Perform a search on a query and return a data structure containing the combined analysis
@@ -94,24 +371,68 @@ public class DataManager {
     public static AggregateData analyzeWebSearchResults(String query, int numResults, SearchType searchType,
             String description, boolean keepRawData, boolean persistResults, String dataDirectory,
             NaturalLanguageClient client) {
+        return analyzeWebSearchResults(query, numResults, searchType, description, keepRawData, persistResults,
+                dataDirectory, client, null);
+    }
+    
+    /**
+     * Perform a search on a query and return a data structure containing the combined analysis
+     * of all documents found, skipping documents which were analyzed by earlier searches. Optionally store
+     * analysis results for individual documents found on disk. 
+     * 
+     * @param query
+     *            query to pass to search engine
+     * @param numResults
+     *            number of documents to search for
+     * @param searchType
+     *            Type of search
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @param keepRawData
+     *      indicates whether analysis results of individual Web pages should be kept in returned data
+     *      structure
+     * @param persistResults
+     *      indicates whether analysis results for individual Web pages should be stored on disk
+     * @param dataDirectory
+     *      if "persistResults == true", directory storing analysis results for individual Web pages
+     * @param client
+     *      client to access natural language services
+     * @param seenUrls
+     *      URLs of documents analyzed earlier, which are not analyzed again; documents analyzed
+     *      successfully are added to it. If null, only duplicates within the search results are skipped.
+     * @return data structure containing the analysis results aggregated
+     * 
+     * */
+    public static AggregateData analyzeWebSearchResults(String query, int numResults, SearchType searchType,
+            String description, boolean keepRawData, boolean persistResults, String dataDirectory,
+            NaturalLanguageClient client, SeenUrlSet seenUrls) {
         AggregateData data = new AggregateData(description);
+        StageTimers timers = stageTimers;
         
         ArrayList<String> urls = null;
         urls = Search.search(query, numResults, searchType, false);
         if (persistResults) {
             Util.createDirectory(dataDirectory);
         }
-        int numAnalyzed = 0;
+        HashSet<String> found = new HashSet<String>();
+        timers.urls.add(urls.size());
         for (String url : urls) {
+            if (isDuplicate(url, found, seenUrls)) {
+                timers.duplicates.increment();
+                continue;
+            }
             AggregateData newdata = client.analyzeData(url, DataType.URL, description);
             if (newdata == null) {
                 continue;
             }
-            numAnalyzed++;
+            timers.results.increment();
             if (keepRawData) {
                 newdata.addRawData();
             }
             data.combineData(newdata, keepRawData);
+            if (seenUrls != null) {
+                seenUrls.add(url);
+            }
             if (persistResults) {
                 String name;
                 try {
@@ -123,13 +444,273 @@ public class DataManager {
                 newdata.writeToFile(createFullPath(analysisFileName(name), dataDirectory));
             }
         }
-        System.out.println("DataManager.analyzeWebSearchResults: " + urls.size() + " urls analyzed, "
-                + numAnalyzed + " results obtained");
         return data;
     }
     
+    // Determine whether a URL has already been found in the current search results, recording it if not,
+    // or was analyzed earlier
+    private static boolean isDuplicate(String url, HashSet<String> found, SeenUrlSet seenUrls) {
+        return !found.add(UrlCanonicalizer.canonicalize(url)) || ((seenUrls != null) && seenUrls.contains(url));
+    }
+    
+    /**
+     * Perform a search on a query and return a data structure containing the combined analysis
+     * of all documents found. Optionally store analysis results for individual documents found on disk.
+     * Documents are processed in a pipeline: Web pages are fetched by one pool of threads, each page is
+     * passed to a second pool of threads for analysis as soon as it has been fetched, and analysis results
+     * are combined as they become available. A page which cannot be fetched within the timeout, or whose
+     * analysis does not complete within the timeout after it starts, is skipped, so a slow Web site does
+     * not hold up the analysis of other pages. Time a page spends waiting for an analysis thread does not
+     * count against its timeout.
+     * 
+     * @param query
+     *            query to pass to search engine
+     * @param numResults
+     *            number of documents to search for
+     * @param searchType
+     *            Type of search
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @param keepRawData
+     *      indicates whether analysis results of individual Web pages should be kept in returned data
+     *      structure
+     * @param persistResults
+     *      indicates whether analysis results for individual Web pages should be stored on disk
+     * @param dataDirectory
+     *      if "persistResults == true", directory storing analysis results for individual Web pages
+     * @param client
+     *      client to access natural language services; must be safe to call from multiple threads
+     * @param fetchThreads
+     *      maximum number of Web pages fetched at the same time
+     * @param analysisThreads
+     *      maximum number of Web pages analyzed at the same time
+     * @param timeoutMillis
+     *      timeout in milliseconds for fetching a Web page, including reading all of it, and separately
+     *      for analyzing it once its analysis has started
+     * @return data structure containing the analysis results aggregated
+     * 
+     * */
+    public static AggregateData analyzeWebSearchResults(String query, int numResults, SearchType searchType,
+            final String description, boolean keepRawData, boolean persistResults, String dataDirectory,
+            final NaturalLanguageClient client, int fetchThreads, int analysisThreads, final int timeoutMillis) {
+        return analyzeWebSearchResults(query, numResults, searchType, description, keepRawData, persistResults,
+                dataDirectory, client, fetchThreads, analysisThreads, timeoutMillis, null);
+    }
+    
+    /**
+     * Perform a search on a query and return a data structure containing the combined analysis
+     * of all documents found, skipping documents which were analyzed by earlier searches. Optionally store
+     * analysis results for individual documents found on disk. Documents are processed in a pipeline: Web
+     * pages are fetched by one pool of threads, each page is passed to a second pool of threads for analysis
+     * as soon as it has been fetched, and analysis results are combined as they become available. A page
+     * which cannot be fetched within the timeout, or whose analysis does not complete within the timeout
+     * after it starts, is skipped, so a slow Web site does not hold up the analysis of other pages. Time a
+     * page spends waiting for an analysis thread does not count against its timeout.
+     * 
+     * @param query
+     *            query to pass to search engine
+     * @param numResults
+     *            number of documents to search for
+     * @param searchType
+     *            Type of search
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @param keepRawData
+     *      indicates whether analysis results of individual Web pages should be kept in returned data
+     *      structure
+     * @param persistResults
+     *      indicates whether analysis results for individual Web pages should be stored on disk
+     * @param dataDirectory
+     *      if "persistResults == true", directory storing analysis results for individual Web pages
+     * @param client
+     *      client to access natural language services; must be safe to call from multiple threads
+     * @param fetchThreads
+     *      maximum number of Web pages fetched at the same time
+     * @param analysisThreads
+     *      maximum number of Web pages analyzed at the same time
+     * @param timeoutMillis
+     *      timeout in milliseconds for fetching a Web page, including reading all of it, and separately
+     *      for analyzing it once its analysis has started
+     * @param seenUrls
+     *      URLs of documents analyzed earlier, which are not fetched or analyzed again; documents analyzed
+     *      successfully are added to it. If null, only duplicates within the search results are skipped.
+     * @return data structure containing the analysis results aggregated
+     * 
+     * */
+    public static AggregateData analyzeWebSearchResults(String query, int numResults, SearchType searchType,
+            final String description, boolean keepRawData, boolean persistResults, String dataDirectory,
+            final NaturalLanguageClient client, int fetchThreads, int analysisThreads, final int timeoutMillis,
+            final SeenUrlSet seenUrls) {
+        if ((fetchThreads < 1) || (analysisThreads < 1) || (timeoutMillis < 1)) {
+            throw new IllegalArgumentException("fetchThreads, analysisThreads and timeoutMillis must be positive");
+        }
+        AggregateData data = new AggregateData(description);
+        if (persistResults) {
+            Util.createDirectory(dataDirectory);
+        }
+        final ExecutorService fetchExecutor = Executors.newFixedThreadPool(fetchThreads);
+        final ExecutorService analysisExecutor = Executors.newFixedThreadPool(analysisThreads);
+        final LinkedBlockingQueue<PendingAnalysis> fetched = new LinkedBlockingQueue<PendingAnalysis>();
+        final AtomicLong lastProgress = new AtomicLong(System.currentTimeMillis());
+        final StageTimers timers = stageTimers;
+        final HashSet<String> found = new HashSet<String>();
+        final ArrayList<String> toAnalyze = new ArrayList<String>();
+        ArrayList<String> urls = new ArrayList<String>();
+        try {
+            // Each page is fetched as soon as the search results page listing it arrives
+            urls = Search.search(query, numResults, searchType, url -> {
+                if (isDuplicate(url, found, seenUrls)) {
+                    return;
+                }
+                toAnalyze.add(url);
+                fetchExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        final PendingAnalysis pending = new PendingAnalysis(url, lastProgress, timeoutMillis,
+                                timers.analysisTimeouts);
+                        try {
+                            long start = System.nanoTime();
+                            final String page = fetchPage(url, timeoutMillis, timers.fetchTimeouts);
+                            timers.read.record(System.nanoTime() - start);
+                            if (page.length() > 0) {
+                                pending.analysis = analysisExecutor.submit(new Callable<AggregateData>() {
+                                    @Override
+                                    public AggregateData call() {
+                                        pending.start();
+                                        long analyzeStart = System.nanoTime();
+                                        try {
+                                            return client.analyzeData(page, DataType.HTML, description);
+                                        } finally {
+                                            timers.analyze.record(System.nanoTime() - analyzeStart);
+                                            lastProgress.set(System.currentTimeMillis());
+                                        }
+                                    }
+                                });
+                            }
+                        } finally {
+                            fetched.add(pending);
+                        }
+                    }
+                });
+            });
+            for (int i = 0; i < toAnalyze.size(); i++) {
+                PendingAnalysis pending = fetched.take();
+                AggregateData newdata = pending.waitForResult();
+                if (newdata == null) {
+                    continue;
+                }
+                timers.results.increment();
+                long start = System.nanoTime();
+                if (keepRawData) {
+                    newdata.addRawData();
+                }
+                data.combineData(newdata, keepRawData);
+                timers.merge.record(System.nanoTime() - start);
+                if (seenUrls != null) {
+                    seenUrls.add(pending.url);
+                }
+                if (persistResults) {
+                    String name;
+                    try {
+                        name = URLEncoder.encode(pending.url, Util.DEFAULT_ENCODING);
+                    } catch (UnsupportedEncodingException e) {
+                        e.printStackTrace();
+                        continue;
+                    }
+                    start = System.nanoTime();
+                    newdata.writeToFile(createFullPath(analysisFileName(name), dataDirectory));
+                    timers.persist.record(System.nanoTime() - start);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            fetchExecutor.shutdownNow();
+            analysisExecutor.shutdownNow();
+        }
+        timers.urls.add(urls.size());
+        timers.duplicates.add(urls.size() - toAnalyze.size());
+        return data;
+    }
+    
+    // Fetch a Web page, giving up and counting a timeout if the whole page has not been read within the timeout
+    private static String fetchPage(String url, int timeoutMillis, MetricsRegistry.Counter timeouts) {
+        CompletableFuture<String> page = WebFetcher.getDefault().fetchAsync(url, timeoutMillis);
+        try {
+            return page.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            page.cancel(true);
+            return "";
+        } catch (TimeoutException e) {
+            page.cancel(true);
+            timeouts.increment();
+            return "";
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            return "";
+        }
+    }
+    
+    /**
+     * Analysis of a fetched Web page which must complete within a timeout of when it starts
+     */
+    private static class PendingAnalysis {
+        
+        private final String url;
+        private final AtomicLong lastProgress;  // last time an analysis started or finished
+        private final int timeoutMillis;
+        private final MetricsRegistry.Counter timeouts;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile long startTime;
+        private Future<AggregateData> analysis;  // null if the page could not be fetched
+        
+        private PendingAnalysis(String urlVal, AtomicLong lastProgressVal, int timeoutVal,
+                MetricsRegistry.Counter timeoutsVal) {
+            url = urlVal;
+            lastProgress = lastProgressVal;
+            timeoutMillis = timeoutVal;
+            timeouts = timeoutsVal;
+        }
+        
+        // Called by the analysis thread when the analysis starts
+        private void start() {
+            startTime = System.currentTimeMillis();
+            lastProgress.set(startTime);
+            started.countDown();
+        }
+        
+        // Return the analysis results, null if the analysis failed or did not complete within the timeout
+        // of starting. An analysis which has not started is waited for as long as other analyses are
+        // making progress, so it is only given up on if every analysis thread is stuck.
+        private AggregateData waitForResult() throws InterruptedException {
+            if (analysis == null) {
+                return null;
+            }
+            try {
+                while (!started.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    if (System.currentTimeMillis() - lastProgress.get() >= timeoutMillis) {
+                        throw new TimeoutException();
+                    }
+                }
+                long remaining = startTime + timeoutMillis - System.currentTimeMillis();
+                return analysis.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                analysis.cancel(true);
+                timeouts.increment();
+                return null;
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+    
     /**
-     * Read all files in a directory of data files and return a data structure with the data aggregated. 
+     * Read all files in a directory of data files and return a data structure with the data aggregated.
+     * Each file is added to the aggregated data as it is read, so unless "keepRawData == true", memory usage
+     * depends on the number of distinct concepts, entities, keywords, and taxonomies rather than on the
+     * number of files.
      * 
      * @param directory
      *      directory containing data files to aggregate
@@ -142,16 +723,145 @@ public class DataManager {
      * 
      */
     public static AggregateData aggregateDirectoryStats(String directory, String description, boolean keepRawData) {
-        File inputDir = new File(directory);
         AggregateData data = new AggregateData(description);
-        for (File file : inputDir.listFiles()) {
-            AggregateData storedData = AggregateData.readFromFile(file.toString());
-            // System.out.println(storedData.toString());            
-            data.combineData(storedData, keepRawData);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(directory))) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file) && !isManifest(file)) {
+                    data.combineFromFile(file.toString(), keepRawData);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
         return data;
     }
     
+    /**
+     * Read all files in a directory of data files using multiple threads and return a data structure with
+     * the data aggregated. The files are divided into chunks which are aggregated by separate threads,
+     * and the results for adjacent chunks are then combined pairwise until a single result remains.
+     * Documents and raw data appear in the same order as for the single-threaded version. Counts are
+     * identical; relevance and score values may differ in the least significant digits since the values
+     * are added in a different order.
+     * 
+     * @param directory
+     *      directory containing data files to aggregate
+     * @param description
+     *      user-provided description to be stored with the aggregated data
+     * @param keepRawData
+     *      indicates whether analysis results read in from each file should be stored in the returned
+     *      data structure
+     * @param parallelism
+     *      number of threads to use
+     * @return data structure containing the analysis results aggregated
+     * 
+     */
+    public static AggregateData aggregateDirectoryStats(String directory, String description, boolean keepRawData,
+            int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        ArrayList<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(Paths.get(directory))) {
+            for (Path file : directoryStream) {
+                if (Files.isRegularFile(file) && !isManifest(file)) {
+                    files.add(file);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        int chunkSize = Math.max(1, files.size() / (parallelism * CHUNKS_PER_THREAD));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            AggregateData data = pool.invoke(new AggregateTask(files, 0, files.size(), chunkSize, description,
+                    keepRawData));
+            data.setDescription(description);
+            return data;
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Aggregates a range of data files, splitting the range in half until it is small enough to be
+     * aggregated by a single thread
+     */
+    private static class AggregateTask extends RecursiveTask<AggregateData> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Path> files;
+        private final int start;
+        private final int end;
+        private final int chunkSize;
+        private final String description;
+        private final boolean keepRawData;
+        
+        private AggregateTask(List<Path> fileList, int startIndex, int endIndex, int maxChunkSize,
+                String describe, boolean keepRaw) {
+            files = fileList;
+            start = startIndex;
+            end = endIndex;
+            chunkSize = maxChunkSize;
+            description = describe;
+            keepRawData = keepRaw;
+        }
+        
+        @Override
+        protected AggregateData compute() {
+            if (end - start <= chunkSize) {
+                AggregateData data = new AggregateData(description);
+                for (int i = start; i < end; i++) {
+                    data.combineFromFile(files.get(i).toString(), keepRawData);
+                }
+                return data;
+            }
+            int middle = (start + end) >>> 1;
+            AggregateTask left = new AggregateTask(files, start, middle, chunkSize, description, keepRawData);
+            AggregateTask right = new AggregateTask(files, middle, end, chunkSize, description, keepRawData);
+            left.fork();
+            AggregateData rightData = right.compute();
+            AggregateData leftData = left.join();
+            leftData.combineData(rightData, keepRawData);
+            return leftData;
+        }
+    }
+    
+    /**
+     * Rewrite all data files in a directory which were stored using Java serialization by earlier
+     * versions in the current, more compact format. Files already in the current format are not changed.
+     * 
+     * @param directory
+     *      directory containing data files to convert
+     * @return number of files converted
+     * 
+     */
+    public static int migrateDirectory(String directory) {
+        File inputDir = new File(directory);
+        int numConverted = 0;
+        for (File file : inputDir.listFiles()) {
+            if (isManifest(file.toPath())) {
+                continue;
+            }
+            byte[] bytes = Util.fileToByteArray(file.toString());
+            if ((bytes == null) || CompactSerializer.isCompactFormat(bytes)) {
+                continue;
+            }
+            AggregateData storedData = Serializer.deserializeFromByteArray(bytes);
+            if (storedData != null) {
+                storedData.writeToFile(file.toString());
+                numConverted++;
+            }
+        }
+        return numConverted;
+    }
+    
+    // The manifest written by analyzeDirectoryResumable is stored alongside the data files
+    private static boolean isManifest(Path file) {
+        return AnalysisCheckpoint.MANIFEST_NAME.equals(file.getFileName().toString());
+    }
+    
     private static String analysisFileName(String baseName) {
         return baseName + FILESUFFIX;
     }
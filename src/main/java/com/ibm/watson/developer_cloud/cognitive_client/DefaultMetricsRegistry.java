@@ -0,0 +1,165 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * @author ArunIyengar
+ *
+ * Registry which keeps metrics in memory. Counters are LongAdders and timers are LatencyHistograms, so
+ * recording values is cheap enough to leave on in production. Metrics can be read directly or published
+ * as attributes of an MBean so that they can be monitored using JMX tools such as jconsole.
+ *
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+
+    private static class AdderCounter implements Counter {
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        long get() {
+            return count.sum();
+        }
+    }
+
+    private final ConcurrentHashMap<String,AdderCounter> counters = new ConcurrentHashMap<String,AdderCounter>();
+    private final ConcurrentHashMap<String,LatencyHistogram> timers =
+            new ConcurrentHashMap<String,LatencyHistogram>();
+    private final ConcurrentHashMap<String,LongSupplier> gauges = new ConcurrentHashMap<String,LongSupplier>();
+
+    @Override
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new AdderCounter());
+    }
+
+    @Override
+    public LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    @Override
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Return the value of a counter
+     *
+     * @param name
+     *      name of the counter
+     * @return value of the counter, 0 if there is no counter with the name
+     */
+    public long getCount(String name) {
+        AdderCounter counter = counters.get(name);
+        return (counter == null) ? 0 : counter.get();
+    }
+
+    /**
+     * Return a timer if it exists
+     *
+     * @param name
+     *      name of the timer
+     * @return histogram of the durations recorded by the timer, null if there is no timer with the name
+     */
+    public LatencyHistogram getTimer(String name) {
+        return timers.get(name);
+    }
+
+    /**
+     * Return the current value of a gauge
+     *
+     * @param name
+     *      name of the gauge
+     * @return value of the gauge, 0 if there is no gauge with the name
+     */
+    public long getGauge(String name) {
+        LongSupplier gauge = gauges.get(name);
+        return (gauge == null) ? 0 : gauge.getAsLong();
+    }
+
+    /**
+     * Return the names of the counters
+     *
+     * @return sorted counter names
+     */
+    public Set<String> getCounterNames() {
+        return new TreeSet<String>(counters.keySet());
+    }
+
+    /**
+     * Return the names of the timers
+     *
+     * @return sorted timer names
+     */
+    public Set<String> getTimerNames() {
+        return new TreeSet<String>(timers.keySet());
+    }
+
+    /**
+     * Return the names of the gauges
+     *
+     * @return sorted gauge names
+     */
+    public Set<String> getGaugeNames() {
+        return new TreeSet<String>(gauges.keySet());
+    }
+
+    /**
+     * Publish the metrics in this registry as attributes of an MBean registered with the platform MBean
+     * server. Each counter and gauge is an attribute with the same name. Each timer with name t has
+     * attributes t.count, and t.mean, t.p50, t.p99, t.p999 and t.max in milliseconds. Metrics created after
+     * the MBean is registered are also published.
+     *
+     * @param objectName
+     *      object name for the MBean, such as
+     *      "com.ibm.watson.developer_cloud.cognitive_client:type=Metrics"
+     * @return name under which the MBean was registered, null if it could not be registered
+     */
+    public ObjectName registerMBean(String objectName) {
+        try {
+            return ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this),
+                    new ObjectName(objectName)).getObjectName();
+        } catch (JMException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Return the values of all metrics, one per line
+     *
+     * @return metrics in name order
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (String name : getCounterNames()) {
+            result.append(name).append(": ").append(getCount(name)).append('\n');
+        }
+        for (String name : getGaugeNames()) {
+            result.append(name).append(": ").append(getGauge(name)).append('\n');
+        }
+        for (Map.Entry<String,LatencyHistogram> timer : new TreeMap<String,LatencyHistogram>(timers)
+                .entrySet()) {
+            result.append(timer.getKey()).append(": ").append(timer.getValue()).append('\n');
+        }
+        return result.toString();
+    }
+
+}
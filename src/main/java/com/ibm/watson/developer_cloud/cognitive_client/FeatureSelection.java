@@ -0,0 +1,186 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.CategoriesOptions;
+import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.ConceptsOptions;
+import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.EntitiesOptions;
+import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.Features;
+import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.KeywordsOptions;
+
+/**
+ * @author ArunIyengar
+ *
+ * Immutable selection of the features requested from the NaturalLanguageUnderstanding service. The
+ * options sent to the service are built once when the selection is created, so a selection can be reused
+ * for any number of calls, from any number of threads. Requesting only the features which are needed
+ * reduces the size of responses and the time the service takes to produce them.
+ *
+ */
+public final class FeatureSelection {
+
+    /**
+     * Features which can be requested
+     */
+    public enum Feature {
+        CATEGORIES,
+        CONCEPTS,
+        ENTITIES,
+        KEYWORDS
+    }
+
+    private final Set<Feature> features;
+    private final boolean sentiment;
+    private final int maxResponses;
+    private final Features serviceFeatures;
+    private final String key;
+
+    private FeatureSelection(Set<Feature> selected, boolean sentimentScores, int maxItems) {
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("at least one feature must be selected");
+        }
+        features = Collections.unmodifiableSet(EnumSet.copyOf(selected));
+        sentiment = sentimentScores;
+        maxResponses = maxItems;
+        serviceFeatures = createFeatures();
+        key = features + ",sentiment=" + sentiment + ",maxResponses=" + maxResponses;
+    }
+
+    /**
+     * Return a selection of all features, with sentiment scores for entities and keywords
+     *
+     * @param maxResponses
+     *      maximum number of concepts, entities, and keywords returned by each service call
+     * @return selection of all features
+     */
+    public static FeatureSelection all(int maxResponses) {
+        return new FeatureSelection(EnumSet.allOf(Feature.class), true, maxResponses);
+    }
+
+    /**
+     * Return a selection of some features
+     *
+     * @param maxResponses
+     *      maximum number of concepts, entities, and keywords returned by each service call
+     * @param sentiment
+     *      true to request sentiment scores for entities and keywords
+     * @param features
+     *      features to request
+     * @return selection of the features
+     */
+    public static FeatureSelection of(int maxResponses, boolean sentiment, Feature... features) {
+        EnumSet<Feature> selected = EnumSet.noneOf(Feature.class);
+        Collections.addAll(selected, features);
+        return new FeatureSelection(selected, sentiment, maxResponses);
+    }
+
+    /**
+     * Return a selection of the same features with a different maximum number of responses
+     *
+     * @param maxItems
+     *      maximum number of concepts, entities, and keywords returned by each service call
+     * @return new selection, or this if the maximum is unchanged
+     */
+    public FeatureSelection withMaxResponses(int maxItems) {
+        if (maxItems == maxResponses) {
+            return this;
+        }
+        return new FeatureSelection(features, sentiment, maxItems);
+    }
+
+    /**
+     * Return the features selected
+     *
+     * @return unmodifiable set of features
+     */
+    public Set<Feature> getFeatures() {
+        return features;
+    }
+
+    /**
+     * Return whether a feature is selected
+     *
+     * @param feature
+     *      feature
+     * @return true if the feature is selected
+     */
+    public boolean contains(Feature feature) {
+        return features.contains(feature);
+    }
+
+    /**
+     * Return whether sentiment scores are requested for entities and keywords
+     *
+     * @return true if sentiment scores are requested
+     */
+    public boolean hasSentiment() {
+        return sentiment;
+    }
+
+    /**
+     * Return the maximum number of concepts, entities, and keywords returned by each service call
+     *
+     * @return maximum number of responses
+     */
+    public int getMaxResponses() {
+        return maxResponses;
+    }
+
+    // Options sent to the service; Features objects cannot be modified once built
+    Features getServiceFeatures() {
+        return serviceFeatures;
+    }
+
+    /**
+     * Returns a string which is the same for two selections if and only if they request the same data
+     *
+     * @return string identifying the selection
+     */
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return (obj instanceof FeatureSelection) && key.equals(((FeatureSelection) obj).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    private Features createFeatures() {
+        Features.Builder builder = new Features.Builder();
+        if (features.contains(Feature.CATEGORIES)) {
+            builder.categories(new CategoriesOptions());
+        }
+        if (features.contains(Feature.CONCEPTS)) {
+            builder.concepts(new ConceptsOptions.Builder()
+                .limit(maxResponses)
+                .build());
+        }
+        if (features.contains(Feature.ENTITIES)) {
+            builder.entities(new EntitiesOptions.Builder()
+                .emotion(false)
+                .limit(maxResponses)
+                .sentiment(sentiment)
+                .build());
+        }
+        if (features.contains(Feature.KEYWORDS)) {
+            builder.keywords(new KeywordsOptions.Builder()
+                .emotion(false)
+                .limit(maxResponses)
+                .sentiment(sentiment)
+                .build());
+        }
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,346 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * @author ArunIyengar
+ *
+ * Compact storage for the data of one type of feature (concepts, keywords, etc.) in AggregateData. Each
+ * distinct key is assigned an index in parallel arrays holding the count, relevance, and score for the key.
+ * Keys are located using an open addressing hash table of indexes. Adding data for a key which is already
+ * present does not allocate any objects, and there is no per-entry object overhead as there is with
+ * HashMap&lt;String,Data&gt;.
+ *
+ * A table may use a TermDictionary, in which case keys are the dictionary's instances of strings and
+ * are hashed by term ID. Adding a table to another table using the same dictionary then only compares
+ * references and never hashes or compares strings.
+ *
+ */
+final class FeatureTable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int EMPTY = -1;
+
+    private final TermDictionary dictionary;  // null if keys are not in a dictionary
+    private String[] keys;
+    private int[] termIds;  // null if there is no dictionary
+    private int[] hashes;
+    private int[] counts;
+    private double[] relevances;
+    private double[] scores;
+    private int size;
+
+    private int[] slots;  // index of the key hashing to each slot, EMPTY if none
+    private int mask;
+
+    FeatureTable() {
+        this((TermDictionary) null);
+    }
+
+    FeatureTable(TermDictionary termDictionary) {
+        int capacity = INITIAL_CAPACITY;
+        dictionary = termDictionary;
+        if (dictionary != null) {
+            termIds = new int[capacity];
+        }
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        counts = new int[capacity];
+        relevances = new double[capacity];
+        scores = new double[capacity];
+        createSlots(capacity);
+    }
+
+    // Copy constructor
+    FeatureTable(FeatureTable table) {
+        dictionary = table.dictionary;
+        if (dictionary != null) {
+            termIds = table.termIds.clone();
+        }
+        keys = table.keys.clone();
+        hashes = table.hashes.clone();
+        counts = table.counts.clone();
+        relevances = table.relevances.clone();
+        scores = table.scores.clone();
+        size = table.size;
+        slots = table.slots.clone();
+        mask = table.mask;
+    }
+
+    int size() {
+        return size;
+    }
+
+    TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    String key(int index) {
+        return keys[index];
+    }
+
+    // Only valid if there is a dictionary
+    int termId(int index) {
+        return termIds[index];
+    }
+
+    int count(int index) {
+        return counts[index];
+    }
+
+    double relevance(int index) {
+        return relevances[index];
+    }
+
+    double score(int index) {
+        return scores[index];
+    }
+
+    /**
+     * Return the index of a key
+     *
+     * @param key
+     *      key, may be null
+     * @return index of the key, -1 if the key is not present
+     */
+    int find(String key) {
+        int termId = 0;
+        if (dictionary != null) {
+            termId = dictionary.findId(key);
+            if (termId < 0) {
+                return -1;
+            }
+            key = dictionary.getTerm(termId);
+        }
+        int hash = (dictionary == null) ? hash(key) : hash(termId);
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int index = slots[slot];
+            if (index == EMPTY) {
+                return -1;
+            }
+            if ((hashes[index] == hash) && matches(keys[index], key)) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * Add data for a key. The score becomes the average of the existing and new scores weighted by count,
+     * as for AggregateData.Data
+     *
+     * @param key
+     *      key, may be null
+     * @param count
+     *      count to add
+     * @param relevance
+     *      relevance to add
+     * @param score
+     *      score to average in
+     */
+    void add(String key, int count, double relevance, double score) {
+        if (dictionary == null) {
+            add(key, 0, hash(key), count, relevance, score);
+        }
+        else {
+            int termId = dictionary.getId(key);
+            add(dictionary.getTerm(termId), termId, hash(termId), count, relevance, score);
+        }
+    }
+
+    // Add data for a key given by its term ID; only valid if there is a dictionary
+    void addTerm(int termId, int count, double relevance, double score) {
+        add(dictionary.getTerm(termId), termId, hash(termId), count, relevance, score);
+    }
+
+    private void add(String key, int termId, int hash, int count, double relevance, double score) {
+        int slot = hash & mask;
+        while (true) {
+            int index = slots[slot];
+            if (index == EMPTY) {
+                insert(slot, key, termId, hash, count, relevance, score);
+                return;
+            }
+            if ((hashes[index] == hash) && matches(keys[index], key)) {
+                update(index, count, relevance, score);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Add all data from another table to this
+     *
+     * @param table
+     *      table to add
+     */
+    void addAll(FeatureTable table) {
+        if ((dictionary != null) && (table.dictionary == dictionary)) {
+            for (int i = 0; i < table.size; i++) {
+                add(table.keys[i], table.termIds[i], table.hashes[i], table.counts[i], table.relevances[i],
+                        table.scores[i]);
+            }
+            return;
+        }
+        for (int i = 0; i < table.size; i++) {
+            add(table.keys[i], table.counts[i], table.relevances[i], table.scores[i]);
+        }
+    }
+
+    /**
+     * Return the indexes of the k entries with the largest values of a field in O(n log k) time, using a
+     * heap of indexes holding the largest values seen so far
+     *
+     * @param k
+     *      maximum number of indexes to return
+     * @param parameter
+     *      field to rank entries by
+     * @return indexes of the entries with the largest values, in decreasing order of value
+     */
+    int[] top(int k, AggregateData.DataType parameter) {
+        int heapSize = Math.min(Math.max(k, 0), size);
+        int[] heap = new int[heapSize];
+        if (heapSize == 0) {
+            return heap;
+        }
+        for (int index = 0; index < heapSize; index++) {
+            heap[index] = index;
+        }
+        for (int i = (heapSize / 2) - 1; i >= 0; i--) {
+            siftDown(heap, heapSize, i, parameter);
+        }
+        for (int index = heapSize; index < size; index++) {
+            if (compare(index, heap[0], parameter) > 0) {
+                heap[0] = index;
+                siftDown(heap, heapSize, 0, parameter);
+            }
+        }
+
+        // Heap sort; the smallest remaining value is moved to the end at each step
+        for (int n = heapSize - 1; n > 0; n--) {
+            int smallest = heap[0];
+            heap[0] = heap[n];
+            heap[n] = smallest;
+            siftDown(heap, n, 0, parameter);
+        }
+        return heap;
+    }
+
+    // Min-heap ordered by the value of "parameter"
+    private void siftDown(int[] heap, int heapSize, int i, AggregateData.DataType parameter) {
+        int index = heap[i];
+        while (true) {
+            int child = (2 * i) + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if ((child + 1 < heapSize) && (compare(heap[child + 1], heap[child], parameter) < 0)) {
+                child++;
+            }
+            if (compare(heap[child], index, parameter) >= 0) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = index;
+    }
+
+    private int compare(int index1, int index2, AggregateData.DataType parameter) {
+        switch (parameter) {
+            case COUNT:
+                return Integer.compare(counts[index1], counts[index2]);
+            case RELEVANCE:
+                return Double.compare(relevances[index1], relevances[index2]);
+            default:
+                return Double.compare(scores[index1], scores[index2]);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(slots, EMPTY);
+        size = 0;
+    }
+
+    private void update(int index, int count, double relevance, double score) {
+        int oldCount = counts[index];
+        scores[index] = ((oldCount * scores[index]) + (count * score)) / (oldCount + count);
+        counts[index] = oldCount + count;
+        relevances[index] += relevance;
+    }
+
+    private void insert(int slot, String key, int termId, int hash, int count, double relevance, double score) {
+        if (size == keys.length) {
+            grow();
+            slot = hash & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        int index = size++;
+        keys[index] = key;
+        if (termIds != null) {
+            termIds[index] = termId;
+        }
+        hashes[index] = hash;
+        counts[index] = count;
+        relevances[index] = relevance;
+        scores[index] = score;
+        slots[slot] = index;
+    }
+
+    // Double the space for entries. The hash table always has at least twice as many slots as there
+    // are entries, keeping probe sequences short.
+    private void grow() {
+        int capacity = 2 * keys.length;
+        keys = Arrays.copyOf(keys, capacity);
+        if (termIds != null) {
+            termIds = Arrays.copyOf(termIds, capacity);
+        }
+        hashes = Arrays.copyOf(hashes, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        relevances = Arrays.copyOf(relevances, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+        createSlots(capacity);
+        for (int index = 0; index < size; index++) {
+            int slot = hashes[index] & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = index;
+        }
+    }
+
+    private void createSlots(int capacity) {
+        int numSlots = Integer.highestOneBit(capacity - 1) << 2;
+        slots = new int[numSlots];
+        Arrays.fill(slots, EMPTY);
+        mask = numSlots - 1;
+    }
+
+    private static int hash(String key) {
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode() * 0x9e3779b9;  // spread the bits used to select a slot
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(int termId) {
+        int h = termId * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    // Keys from a dictionary are unique instances, so they can be compared by reference
+    private boolean matches(String key1, String key2) {
+        return (key1 == key2) || ((dictionary == null) && (key1 != null) && key1.equals(key2));
+    }
+
+}
@@ -0,0 +1,290 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import com.ibm.watson.developer_cloud.cognitive_client.Search.SearchType;
+
+/**
+ * @author ArunIyengar
+ *
+ * Search provider which fetches a search engine's results page and extracts the result links using a
+ * CSS selector. Links which redirect through the search engine, as Google's "/url?q=" and Yahoo's "RU="
+ * links do, are decoded to the target URL. Search engines change their results pages from time to time,
+ * in which case the selector passed to the constructor needs to change accordingly. When more results are
+ * requested than a search engine returns on one page, several pages are fetched at the same time.
+ *
+ */
+public class HtmlSearchProvider implements SearchProvider {
+
+    public static final String GOOGLE_SELECTOR = "h3.r > a";
+    public static final String BING_SELECTOR = "li.b_algo h2 > a";
+    public static final String BING_NEWS_SELECTOR = "a.title";
+    public static final String YAHOO_SELECTOR = "h3.title > a";
+
+    private static final String GOOGLE_REDIRECT = "/url?q=";
+    private static final String YAHOO_REDIRECT = "/RU=";
+    private static final String YAHOO_REDIRECT_END = "/RK=";
+
+    private final String name;
+    private final String searchUrlPrefix;
+    private final String numResultsParameter;
+    private final String resultSelector;
+    private final String startParameter;  // null if the search engine cannot return later pages
+    private final int firstResultNumber;
+    private final int maxPageSize;
+
+    /**
+     * Constructor for a provider which only fetches the first page of results
+     *
+     * @param providerName
+     *      name of the provider
+     * @param urlPrefix
+     *      URL of the search results page up to the query, such as "https://www.bing.com/search?q="
+     * @param numResultsName
+     *      name of the URL parameter giving the number of results, such as "count"
+     * @param selector
+     *      CSS selector for the links to the results
+     */
+    public HtmlSearchProvider(String providerName, String urlPrefix, String numResultsName, String selector) {
+        this(providerName, urlPrefix, numResultsName, selector, null, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor for a provider which fetches later pages of results when more results are requested
+     * than fit on one page
+     *
+     * @param providerName
+     *      name of the provider
+     * @param urlPrefix
+     *      URL of the search results page up to the query, such as "https://www.bing.com/search?q="
+     * @param numResultsName
+     *      name of the URL parameter giving the number of results, such as "count"
+     * @param selector
+     *      CSS selector for the links to the results
+     * @param startName
+     *      name of the URL parameter giving the number of the first result on a page, such as "first"
+     * @param firstResult
+     *      number of the first result on the first page, usually 0 or 1
+     * @param pageSize
+     *      maximum number of results the search engine returns on one page
+     */
+    public HtmlSearchProvider(String providerName, String urlPrefix, String numResultsName, String selector,
+            String startName, int firstResult, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        name = providerName;
+        searchUrlPrefix = urlPrefix;
+        numResultsParameter = numResultsName;
+        resultSelector = selector;
+        startParameter = startName;
+        firstResultNumber = firstResult;
+        maxPageSize = pageSize;
+    }
+
+    /**
+     * Return a provider for a type of search
+     *
+     * @param searchType
+     *      type of search
+     * @return provider performing the search
+     */
+    public static HtmlSearchProvider forType(SearchType searchType) {
+        String prefix = Search.searchPrefixString(searchType);
+        switch (searchType) {
+        case GOOGLE_REGULAR:
+        case GOOGLE_NEWS:
+            return new HtmlSearchProvider(searchType.toString(), prefix, "num", GOOGLE_SELECTOR, "start", 0, 100);
+        case BING_REGULAR:
+            return new HtmlSearchProvider(searchType.toString(), prefix, "count", BING_SELECTOR, "first", 1, 50);
+        case BING_NEWS:
+            return new HtmlSearchProvider(searchType.toString(), prefix, "count", BING_NEWS_SELECTOR, "first", 1, 50);
+        default:
+            return new HtmlSearchProvider(searchType.toString(), prefix, "n", YAHOO_SELECTOR, "b", 1, 100);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ArrayList<String> search(String query, int numResults) {
+        return search(query, numResults, false);
+    }
+
+    /**
+     * Search for a query, optionally printing information for debugging purposes
+     *
+     * @param query
+     *      query to pass to search engine
+     * @param numResults
+     *      number of documents to search for
+     * @param verbose
+     *      true to print out information for debugging purposes
+     * @return URLs found in rank order, an empty list if the search failed
+     */
+    public ArrayList<String> search(String query, int numResults, boolean verbose) {
+        ArrayList<String> urls;
+        if ((numResults <= maxPageSize) || (startParameter == null)) {
+            urls = fetchPage(query, numResults, 0, verbose);
+        }
+        else {
+            urls = Search.searchPages(this, query, numResults, maxPageSize, Search.DEFAULT_MAX_CONCURRENT_PAGES, null);
+        }
+        if (verbose) {
+            System.out.println("Search.search: " + urls.size() + " urls found by " + name);
+        }
+        return urls;
+    }
+
+    /**
+     * Search for a query, passing each URL found to a callback as soon as the page containing it has
+     * been fetched. When more results are requested than fit on one page, up to
+     * Search.DEFAULT_MAX_CONCURRENT_PAGES pages are fetched at the same time.
+     *
+     * @param query
+     *      query to pass to search engine
+     * @param numResults
+     *      number of documents to search for
+     * @param onUrl
+     *      called by the calling thread with each URL in rank order
+     * @return URLs found in rank order, an empty list if the search failed
+     */
+    public ArrayList<String> search(String query, int numResults, Consumer<String> onUrl) {
+        ArrayList<String> urls = Search.searchPages(this, query, numResults,
+                Math.max(Math.min(numResults, maxPageSize), 1), Search.DEFAULT_MAX_CONCURRENT_PAGES, onUrl);
+        return urls;
+    }
+
+    @Override
+    public ArrayList<String> searchPage(String query, int pageSize, int page) {
+        return fetchPage(query, Math.min(pageSize, maxPageSize), page, false);
+    }
+
+    /**
+     * Return the URL of the first search results page for a query
+     *
+     * @param query
+     *      query to pass to search engine
+     * @param numResults
+     *      number of documents to search for
+     * @return URL of the search results page, null if the query could not be encoded
+     */
+    public String searchUrl(String query, int numResults) {
+        return pageUrl(query, numResults, 0);
+    }
+
+    /**
+     * Return the URL of a search results page for a query
+     *
+     * @param query
+     *      query to pass to search engine
+     * @param pageSize
+     *      number of results on each page
+     * @param page
+     *      page number, starting from 0
+     * @return URL of the search results page, null if the query could not be encoded or the search
+     *      engine cannot return later pages
+     */
+    public String pageUrl(String query, int pageSize, int page) {
+        if ((page > 0) && (startParameter == null)) {
+            return null;
+        }
+        String url;
+        try {
+            url = searchUrlPrefix + URLEncoder.encode(query, Util.DEFAULT_ENCODING) + "&" + numResultsParameter
+                    + "=" + pageSize;
+        } catch (UnsupportedEncodingException e) {
+            e.printStackTrace();
+            return null;
+        }
+        if (page > 0) {
+            url += "&" + startParameter + "=" + (firstResultNumber + (long) page * pageSize);
+        }
+        return url;
+    }
+
+    private ArrayList<String> fetchPage(String query, int pageSize, int page, boolean verbose) {
+        String searchURL = pageUrl(query, pageSize, page);
+        if (searchURL == null) {
+            return new ArrayList<String>();
+        }
+        if (verbose) {
+            System.out.println(searchURL);
+        }
+        return parseResults(WebFetcher.getDefault().fetch(searchURL), searchURL, verbose);
+    }
+
+    // Extract result URLs from a search results page, skipping ads and links within the search engine
+    ArrayList<String> parseResults(String page, String searchURL, boolean verbose) {
+        ArrayList<String> urls = new ArrayList<String>();
+        Document doc = Jsoup.parse(page, searchURL);
+        String searchHost = host(searchURL);
+        for (Element result : doc.select(resultSelector)) {
+            String url = decodeLink(result.absUrl("href"));
+            if ((url == null) || !url.startsWith("http") || searchHost.equals(host(url))) {
+                continue; // Ads/news/etc.
+            }
+            urls.add(url);
+            if (verbose) {
+                System.out.println("Text::" + result.text() + ", URL (decoded): " + url);
+            }
+        }
+        return urls;
+    }
+
+    // Lower-case host of a URL, an empty string if it has none
+    private static String host(String url) {
+        try {
+            String host = new URI(url).getHost();
+            return (host == null) ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (URISyntaxException e) {
+            return "";
+        }
+    }
+
+    // Return the target of a link which redirects through the search engine, or the link itself
+    static String decodeLink(String link) {
+        String encoded = null;
+        int start = link.indexOf(GOOGLE_REDIRECT);
+        if (start >= 0) {
+            start += GOOGLE_REDIRECT.length();
+            int end = link.indexOf('&', start);
+            encoded = link.substring(start, (end < 0) ? link.length() : end);
+        }
+        else {
+            start = link.indexOf(YAHOO_REDIRECT);
+            if (start >= 0) {
+                start += YAHOO_REDIRECT.length();
+                int end = link.indexOf(YAHOO_REDIRECT_END, start);
+                encoded = link.substring(start, (end < 0) ? link.length() : end);
+            }
+        }
+        if (encoded == null) {
+            return link;
+        }
+        try {
+            return URLDecoder.decode(encoded, Util.DEFAULT_ENCODING);
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+}
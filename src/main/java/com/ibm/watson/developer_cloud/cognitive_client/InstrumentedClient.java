@@ -0,0 +1,157 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
+import com.ibm.watson.developer_cloud.cognitive_client.Util.NaturalLanguageService;
+import com.ibm.watson.developer_cloud.service.exception.ServiceResponseException;
+
+/**
+ * @author ArunIyengar
+ *
+ * Records metrics for the calls made to another natural language client. For a prefix p, the timer
+ * p.latency records the latency of each call, and the counters p.success, p.failure and p.throttled count
+ * calls which succeeded, failed, and were rejected because the service was overloaded (status 429). When
+ * the wrapped client is a NaturalLanguageUnderstandingClient or AlchemyClient, the gauges p.bytesSent and
+ * p.bytesReceived report the bytes sent to and received from the service. Only asynchronous calls can
+ * distinguish throttled calls from other failures, since synchronous calls return null for both.
+ *
+ */
+public class InstrumentedClient implements NaturalLanguageClient {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final NaturalLanguageClient client;
+    private final MetricsRegistry.Timer latency;
+    private final MetricsRegistry.Counter successes;
+    private final MetricsRegistry.Counter failures;
+    private final MetricsRegistry.Counter throttled;
+
+    /**
+     * Constructor
+     *
+     * @param naturalLanguageClient
+     *      client whose calls are measured
+     * @param registry
+     *      registry in which metrics are recorded
+     * @param prefix
+     *      prefix for the names of the metrics, such as "nlu"
+     */
+    public InstrumentedClient(NaturalLanguageClient naturalLanguageClient, MetricsRegistry registry, String prefix) {
+        client = naturalLanguageClient;
+        latency = registry.timer(prefix + ".latency");
+        successes = registry.counter(prefix + ".success");
+        failures = registry.counter(prefix + ".failure");
+        throttled = registry.counter(prefix + ".throttled");
+        if (client instanceof NaturalLanguageUnderstandingClient) {
+            NaturalLanguageUnderstandingClient nluClient = (NaturalLanguageUnderstandingClient) client;
+            registry.gauge(prefix + ".bytesSent", nluClient::getBytesSent);
+            registry.gauge(prefix + ".bytesReceived", nluClient::getBytesReceived);
+        }
+        else if (client instanceof AlchemyClient) {
+            AlchemyClient alchemyClient = (AlchemyClient) client;
+            registry.gauge(prefix + ".bytesSent", alchemyClient::getBytesSent);
+            registry.gauge(prefix + ".bytesReceived", alchemyClient::getBytesReceived);
+        }
+    }
+
+    /**
+     * Return identity of natural language service
+     *
+     * @return identity of the wrapped client's natural language service
+     *
+     * */
+    @Override
+    public NaturalLanguageService serviceType() {
+        return client.serviceType();
+    }
+
+    /**
+     * Return the settings of the wrapped client which affect results
+     *
+     * @return the wrapped client's cache key parameters
+     *
+     * */
+    @Override
+    public String cacheKeyParameters() {
+        return client.cacheKeyParameters();
+    }
+
+    /**
+     * Analyze and aggregate data from the text analysis service, recording the latency and outcome of
+     * the call
+     *
+     * @param text
+     *      data itself, or URL containing data to be analyzed
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @return analyzed and aggregated results from text analysis service, null if the text analysis
+     *      service failed to produce valid results
+     *
+     */
+    @Override
+    public AggregateData analyzeData(String text, DataType type, String description) {
+        long start = System.nanoTime();
+        AggregateData data = client.analyzeData(text, type, description);
+        latency.record(System.nanoTime() - start);
+        if (data == null) {
+            failures.increment();
+        }
+        else {
+            successes.increment();
+        }
+        return data;
+    }
+
+    /**
+     * Analyze and aggregate data from the text analysis service without blocking the calling thread,
+     * recording the latency and outcome of the call. Metrics are recorded before the returned future
+     * completes.
+     *
+     * @param text
+     *      data itself, or URL containing data to be analyzed
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @return future which completes with the analyzed and aggregated results from the text analysis
+     *      service, or completes exceptionally if the text analysis service failed to produce valid results
+     *
+     */
+    @Override
+    public CompletableFuture<AggregateData> analyzeDataAsync(String text, DataType type, String description) {
+        final long start = System.nanoTime();
+        final CompletableFuture<AggregateData> result = new CompletableFuture<AggregateData>();
+        CompletableFuture<AggregateData> future;
+        try {
+            future = client.analyzeDataAsync(text, type, description);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<AggregateData>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((data, exception) -> {
+            latency.record(System.nanoTime() - start);
+            Throwable cause = RateLimitedClient.unwrap(exception);
+            if (cause == null) {
+                successes.increment();
+                result.complete(data);
+                return;
+            }
+            if ((cause instanceof ServiceResponseException)
+                    && (((ServiceResponseException) cause).getStatusCode() == TOO_MANY_REQUESTS)) {
+                throttled.increment();
+            }
+            else {
+                failures.increment();
+            }
+            result.completeExceptionally(cause);
+        });
+        return result;
+    }
+
+}
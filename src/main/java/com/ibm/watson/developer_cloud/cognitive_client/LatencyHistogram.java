@@ -0,0 +1,152 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author ArunIyengar
+ *
+ * Histogram of durations from which percentiles such as the median and 99th percentile can be read.
+ * Durations are counted in buckets whose width grows with the duration: each power of two is divided into
+ * 16 buckets, so a percentile is accurate to within about 3% of its value, and any duration up to about
+ * 292 years can be recorded using a fixed amount of memory. Each bucket is a LongAdder, so recording a
+ * duration takes a few nanoseconds and threads recording at the same time do not contend. Percentiles
+ * read while durations are being recorded may not include the most recent durations.
+ *
+ */
+public class LatencyHistogram implements MetricsRegistry.Timer {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LongAdder[] buckets = new LongAdder[NUM_BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Constructor
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record a duration
+     *
+     * @param nanos
+     *      duration in nanoseconds; negative durations are recorded as 0
+     */
+    @Override
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets[bucketIndex(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Return the number of durations recorded
+     *
+     * @return number of durations
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Return the mean duration
+     *
+     * @return mean duration in nanoseconds, 0 if no durations have been recorded
+     */
+    public double getMean() {
+        long n = count.sum();
+        return (n == 0) ? 0.0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Return the longest duration recorded
+     *
+     * @return longest duration in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Return a percentile of the durations recorded
+     *
+     * @param percentile
+     *      percentile between 0 and 100, such as 50 for the median or 99.9
+     * @return duration in nanoseconds such that the given percentage of durations are no longer, 0 if no
+     *      durations have been recorded
+     */
+    public long getPercentile(double percentile) {
+        if ((percentile < 0.0) || (percentile > 100.0)) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        long[] counts = new long[NUM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        int index = 0;
+        while (seen + counts[index] < rank) {
+            seen += counts[index];
+            index++;
+        }
+        long lower = lowerBound(index);
+        long width = (index + 1 < NUM_BUCKETS) ? lowerBound(index + 1) - lower : lower;
+        return Math.min(lower + (width - 1) / 2, max.get());
+    }
+
+    /**
+     * Return a summary of the durations recorded
+     *
+     * @return count, mean, median, 99th and 99.9th percentiles, and maximum, in milliseconds
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms", getCount(),
+                getMean() / NANOS_PER_MILLI, getPercentile(50.0) / NANOS_PER_MILLI,
+                getPercentile(99.0) / NANOS_PER_MILLI, getPercentile(99.9) / NANOS_PER_MILLI,
+                getMax() / NANOS_PER_MILLI);
+    }
+
+    // Values below SUB_BUCKETS have a bucket each. Above that, each power of two is divided into
+    // SUB_BUCKETS buckets, indexed by the bits following the most significant bit.
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    // Smallest value counted in a bucket
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index >> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        long subBucket = index & (SUB_BUCKETS - 1);
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+}
@@ -0,0 +1,116 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * @author ArunIyengar
+ *
+ * Read-only MBean publishing the metrics in a DefaultMetricsRegistry. Attributes are computed when they
+ * are read, so the MBean adds no cost to recording metrics.
+ *
+ */
+class MetricsMBean implements DynamicMBean {
+
+    private static final String[] TIMER_STATISTICS = {"count", "mean", "p50", "p99", "p999", "max"};
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final DefaultMetricsRegistry registry;
+
+    MetricsMBean(DefaultMetricsRegistry metrics) {
+        registry = metrics;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if (registry.getCounterNames().contains(attribute)) {
+            return registry.getCount(attribute);
+        }
+        if (registry.getGaugeNames().contains(attribute)) {
+            return registry.getGauge(attribute);
+        }
+        int dot = attribute.lastIndexOf('.');
+        LatencyHistogram timer = (dot < 0) ? null : registry.getTimer(attribute.substring(0, dot));
+        if (timer != null) {
+            switch (attribute.substring(dot + 1)) {
+                case "count":
+                    return timer.getCount();
+                case "mean":
+                    return timer.getMean() / NANOS_PER_MILLI;
+                case "p50":
+                    return timer.getPercentile(50.0) / NANOS_PER_MILLI;
+                case "p99":
+                    return timer.getPercentile(99.0) / NANOS_PER_MILLI;
+                case "p999":
+                    return timer.getPercentile(99.9) / NANOS_PER_MILLI;
+                case "max":
+                    return timer.getMax() / NANOS_PER_MILLI;
+                default:
+                    break;
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList values = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                values.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // attributes which do not exist are left out of the list
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        for (String name : registry.getCounterNames()) {
+            attributes.add(new MBeanAttributeInfo(name, "long", "counter", true, false, false));
+        }
+        for (String name : registry.getGaugeNames()) {
+            attributes.add(new MBeanAttributeInfo(name, "long", "gauge", true, false, false));
+        }
+        for (String name : registry.getTimerNames()) {
+            for (String statistic : TIMER_STATISTICS) {
+                boolean isCount = "count".equals(statistic);
+                attributes.add(new MBeanAttributeInfo(name + "." + statistic, isCount ? "long" : "double",
+                        isCount ? "number of durations" : statistic + " in milliseconds", true, false, false));
+            }
+        }
+        return new MBeanInfo(getClass().getName(), "Metrics for cognitive clients",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[0],
+                null);
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.function.LongSupplier;
+
+/**
+ * @author ArunIyengar
+ *
+ * Registry of named metrics recorded by clients and by DataManager. DefaultMetricsRegistry keeps metrics
+ * in memory and can publish them through JMX; other implementations can forward metrics to a monitoring
+ * system. Counters and timers should be looked up once and kept, since recording a value through a
+ * counter or timer must be cheap, while looking one up by name need not be. Implementations must be
+ * safe to use from multiple threads.
+ *
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Counts events, such as calls or bytes transferred
+     */
+    interface Counter {
+
+        /**
+         * Add to the count
+         *
+         * @param amount
+         *      amount to add
+         */
+        void add(long amount);
+
+        /**
+         * Add one to the count
+         */
+        default void increment() {
+            add(1);
+        }
+    }
+
+    /**
+     * Records the distribution of durations, such as call latencies
+     */
+    interface Timer {
+
+        /**
+         * Record a duration
+         *
+         * @param nanos
+         *      duration in nanoseconds
+         */
+        void record(long nanos);
+    }
+
+    /**
+     * Registry which discards all values, so that code which records metrics costs almost nothing when
+     * metrics are not needed
+     */
+    MetricsRegistry NONE = new MetricsRegistry() {
+        private final Counter counter = amount -> { };
+        private final Timer timer = nanos -> { };
+
+        @Override
+        public Counter counter(String name) {
+            return counter;
+        }
+
+        @Override
+        public Timer timer(String name) {
+            return timer;
+        }
+
+        @Override
+        public void gauge(String name, LongSupplier value) {
+        }
+    };
+
+    /**
+     * Return the counter with a name, creating it if it does not exist
+     *
+     * @param name
+     *      name of the counter
+     * @return counter
+     */
+    Counter counter(String name);
+
+    /**
+     * Return the timer with a name, creating it if it does not exist
+     *
+     * @param name
+     *      name of the timer
+     * @return timer
+     */
+    Timer timer(String name);
+
+    /**
+     * Register a value which is read when metrics are reported, replacing any value registered with the
+     * same name
+     *
+     * @param name
+     *      name of the value
+     * @param value
+     *      returns the current value; must be safe to call from any thread
+     */
+    void gauge(String name, LongSupplier value);
+
+}
@@ -3,6 +3,8 @@
  */
 package com.ibm.watson.developer_cloud.cognitive_client;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
 import com.ibm.watson.developer_cloud.cognitive_client.Util.NaturalLanguageService;
 
@@ -28,6 +30,32 @@ public interface NaturalLanguageClient {
      */
     AggregateData analyzeData(String text, DataType type, String description);
     
+    /**
+     * Analyze and aggregate data from the text analysis service without blocking the calling thread. The
+     * default implementation calls analyzeData on a thread of the common ForkJoinPool; clients with an
+     * asynchronous interface to their service should override it.
+     * 
+     * @param text
+     *      data itself, or URL containing data to be analyzed
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @return future which completes with the analyzed and aggregated results from the text analysis
+     *      service, or completes exceptionally if the text analysis service failed to produce valid results
+     *      
+     */
+    default CompletableFuture<AggregateData> analyzeDataAsync(final String text, final DataType type,
+            final String description) {
+        return CompletableFuture.supplyAsync(() -> {
+            AggregateData data = analyzeData(text, type, description);
+            if (data == null) {
+                throw new IllegalStateException("text analysis service failed to produce valid results");
+            }
+            return data;
+        });
+    }
+    
     /**
      * Return identity of natural language service
      * 
@@ -35,4 +63,18 @@ public interface NaturalLanguageClient {
      * 
      * */
     NaturalLanguageService serviceType();
+    
+    /**
+     * Return a string identifying the settings which affect the results of analyzing data, such as the
+     * features requested and the maximum number of responses, so that results obtained with different
+     * settings are cached separately. Clients which wrap another client should return the wrapped
+     * client's parameters.
+     * 
+     * @return string which is the same for two calls if and only if the settings are the same; the default
+     *      implementation returns an empty string, for clients without such settings
+     * 
+     * */
+    default String cacheKeyParameters() {
+        return "";
+    }
 }
@@ -3,24 +3,28 @@
  */
 package com.ibm.watson.developer_cloud.cognitive_client;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
 import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
 import com.ibm.watson.developer_cloud.cognitive_client.Util.NaturalLanguageService;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
 import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.AnalysisResults;
 import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.AnalyzeOptions;
 import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.AnalyzeOptions.Builder;
-import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.CategoriesOptions;
 import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.CategoriesResult;
-import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.ConceptsOptions;
 import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.ConceptsResult;
 import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.DisambiguationResult;
-import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.EntitiesOptions;
 import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.EntitiesResult;
-import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.Features;
 import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.FeatureSentimentResults;
-import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.KeywordsOptions;
 import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.KeywordsResult;
 import com.ibm.watson.developer_cloud.natural_language_understanding.v1.NaturalLanguageUnderstanding;
 
+import okhttp3.OkHttpClient;
+
 
 
 /**
@@ -32,10 +36,14 @@ import com.ibm.watson.developer_cloud.natural_language_understanding.v1.NaturalL
 
 public class NaturalLanguageUnderstandingClient implements NaturalLanguageClient {
     
+    static final int MAX_BATCH_CHARACTERS = 40000;  // below the service's limit of 50,000 characters per call
+    static final int MAX_SERVICE_ITEMS = 250;  // most keywords or entities the service returns for one call
+    static final int BATCH_ITEMS_PER_TEXT = 10;  // keywords and entities per text which a batch leaves room for
+    static final String BATCH_DELIMITER = "\n\n";
     
-    private NaturalLanguageUnderstanding service = 
-            new NaturalLanguageUnderstanding(NaturalLanguageUnderstanding.VERSION_DATE_2017_02_27);    
-    private int maxResponses = Integer.MAX_VALUE;  // maximum # of responses to return, default value
+    private final TrafficCounter traffic = new TrafficCounter();
+    private NaturalLanguageUnderstanding service = newService(traffic);
+    private volatile FeatureSelection featureSelection = FeatureSelection.all(Integer.MAX_VALUE);  // default
     
     /**
      * Constructor.
@@ -56,9 +64,36 @@ public class NaturalLanguageUnderstandingClient implements NaturalLanguageClient
      */
     public NaturalLanguageUnderstandingClient(String username, String password, int maxItems) {
         service.setUsernameAndPassword(username, password);
-        maxResponses = maxItems;
+        featureSelection = FeatureSelection.all(maxItems);
+    }
+
+    // Service whose HTTP client counts the bytes sent and received
+    private static NaturalLanguageUnderstanding newService(final TrafficCounter counter) {
+        return new NaturalLanguageUnderstanding(NaturalLanguageUnderstanding.VERSION_DATE_2017_02_27) {
+            @Override
+            protected OkHttpClient configureHttpClient() {
+                return super.configureHttpClient().newBuilder().addNetworkInterceptor(counter).build();
+            }
+        };
+    }
+
+    /**
+     * Return the number of bytes sent to the service in request bodies
+     * 
+     * @return bytes sent
+     */
+    public long getBytesSent() {
+        return traffic.getBytesSent();
     }
 
+    /**
+     * Return the number of bytes received from the service in response bodies
+     * 
+     * @return bytes received
+     */
+    public long getBytesReceived() {
+        return traffic.getBytesReceived();
+    }
     
     /**
      * Return identity of natural language service
@@ -76,7 +111,7 @@ public class NaturalLanguageUnderstandingClient implements NaturalLanguageClient
      * @param newValue new value for the parameter
      */
     public void setMaxResponses(int newValue) {
-        maxResponses = newValue;
+        featureSelection = featureSelection.withMaxResponses(newValue);
     }
 
     /**
@@ -84,7 +119,35 @@ public class NaturalLanguageUnderstandingClient implements NaturalLanguageClient
      * @return parameter described above
      */
     public int getMaxResponses() {
-        return maxResponses;
+        return featureSelection.getMaxResponses();
+    }
+    
+    /**
+     * Sets the features requested by calls which do not specify features. By default, all features are
+     * requested.
+     * @param selection features to request
+     */
+    public void setFeatureSelection(FeatureSelection selection) {
+        featureSelection = selection;
+    }
+    
+    /**
+     * Returns the features requested by calls which do not specify features
+     * @return features requested
+     */
+    public FeatureSelection getFeatureSelection() {
+        return featureSelection;
+    }
+    
+    /**
+     * Return a string identifying the features requested and the maximum number of responses
+     * 
+     * @return string identifying the feature selection
+     * 
+     * */
+    @Override
+    public String cacheKeyParameters() {
+        return featureSelection.toString();
     }
 
     
@@ -103,28 +166,312 @@ public class NaturalLanguageUnderstandingClient implements NaturalLanguageClient
      */
     @Override
     public AggregateData analyzeData(String text, DataType type, String description) {
-        ConceptsOptions concepts = new ConceptsOptions.Builder()
-            .limit(maxResponses)
-            .build();    
-        EntitiesOptions entities = new EntitiesOptions.Builder()
-            .emotion(false)
-            .limit(maxResponses)
-            .sentiment(true)
-            .build();
-        KeywordsOptions keywords = new KeywordsOptions.Builder()
-            .emotion(false)
-            .limit(maxResponses)
-            .sentiment(true)
-            .build();
-        Features features = new Features.Builder()
-            .categories(new CategoriesOptions())
-            .concepts(concepts)
-            .entities(entities)
-            .keywords(keywords)
-            .build();
+        return analyzeData(text, type, description, featureSelection);
+    }
+    
+    /**
+     * Analyze and aggregate data from the text analysis service, requesting only some features
+     * 
+     * @param text
+     *      data itself, or URL containing data to be analyzed
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @param selection
+     *      features to request
+     * @return analyzed and aggregated results from text analysis service, null if the text analysis
+     *      service failed to produce valid results
+     *      
+     */
+    public AggregateData analyzeData(String text, DataType type, String description, FeatureSelection selection) {
+        AnalysisResults results;
+        try {
+            results = service.analyze(createAnalyzeOptions(text, type, selection)).execute();
+        }
+        catch (Exception e) {
+            return null;
+        }
+        return createAggregateData(results, description);
+    }
+    
+    /**
+     * Analyze and aggregate data from the text analysis service without blocking the calling thread. The
+     * request is queued by the underlying HTTP client, so no thread is tied up while waiting for the
+     * response.
+     * 
+     * @param text
+     *      data itself, or URL containing data to be analyzed
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @return future which completes with the analyzed and aggregated results from the text analysis
+     *      service, or completes exceptionally if the text analysis service failed to produce valid results
+     *      
+     */
+    @Override
+    public CompletableFuture<AggregateData> analyzeDataAsync(String text, DataType type, String description) {
+        return analyzeDataAsync(text, type, description, featureSelection);
+    }
+    
+    /**
+     * Analyze and aggregate data from the text analysis service without blocking the calling thread,
+     * requesting only some features
+     * 
+     * @param text
+     *      data itself, or URL containing data to be analyzed
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @param selection
+     *      features to request
+     * @return future which completes with the analyzed and aggregated results from the text analysis
+     *      service, or completes exceptionally if the text analysis service failed to produce valid results
+     *      
+     */
+    public CompletableFuture<AggregateData> analyzeDataAsync(String text, DataType type,
+            final String description, FeatureSelection selection) {
+        final CompletableFuture<AggregateData> future = new CompletableFuture<AggregateData>();
+        try {
+            service.analyze(createAnalyzeOptions(text, type, selection)).enqueue(new ServiceCallback<AnalysisResults>() {
+                @Override
+                public void onResponse(AnalysisResults results) {
+                    // an exception thrown here would be lost on the callback thread, leaving the future incomplete
+                    try {
+                        future.complete(createAggregateData(results, description));
+                    }
+                    catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+    
+                @Override
+                public void onFailure(Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+        catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    
+    /**
+     * Analyze many short texts using as few calls to the text analysis service as possible. Texts are
+     * packed into batches, separated by blank lines, and each batch is analyzed in a single call. A batch
+     * holds at most MAX_BATCH_CHARACTERS characters, and few enough texts that the service's limit of
+     * MAX_SERVICE_ITEMS keywords and entities per call leaves room for min(maxResponses,
+     * BATCH_ITEMS_PER_TEXT) of each per text. The limit on responses requested for a batch is raised
+     * accordingly, and each text receives at most maxResponses concepts, entities, and keywords, as if it
+     * had been analyzed alone. The results for a batch are split into results for each text:
+     * <ul>
+     * <li>a keyword is attributed to each text containing it as a whole word or phrase (ignoring case)
+     * with a count of 1</li>
+     * <li>an entity is attributed to each text containing it as a whole word or phrase, with a count equal
+     * to the number of occurrences in the text</li>
+     * <li>a concept is attributed to each text containing its name as a whole word or phrase</li>
+     * </ul>
+     * Some results are lost compared with analyzing each text separately: categories are not requested,
+     * since the service only categorizes the batch as a whole; concepts which the service infers without
+     * their names appearing in a text are dropped; relevance and sentiment scores are those computed for
+     * the batch as a whole; and keywords and entities which are less relevant to the batch than those of
+     * other texts may not be returned. A batch containing a single text, such as a text too long to share
+     * a batch, is analyzed exactly as by analyzeData. If only categories are selected, each text is
+     * analyzed separately. For texts of a few hundred characters, this makes one service call per
+     * BATCH_ITEMS_PER_TEXT texts or fewer rather than one per text.
+     * 
+     * @param texts
+     *      texts to analyze
+     * @param description
+     *      user-provided description to be stored with the analyzed data of each text
+     * @return analyzed results for each text, in the same order as "texts". An element is null if the
+     *      text analysis service failed to produce valid results for the batch containing the text
+     *      
+     */
+    public ArrayList<AggregateData> analyzeBatch(List<String> texts, String description) {
+        FeatureSelection selection = featureSelection;
+        FeatureSelection batchSelection = batchSelection(selection);
+        int maxTexts = (batchSelection == null) ? 1 : maxBatchTexts(selection.getMaxResponses());
+        ArrayList<AggregateData> dataList = new ArrayList<AggregateData>(texts.size());
+        int start = 0;
+        while (start < texts.size()) {
+            int end = batchEnd(texts, start, MAX_BATCH_CHARACTERS, maxTexts);
+            List<String> batch = texts.subList(start, end);
+            start = end;
+            AnalysisResults results;
+            try {
+                if (batch.size() == 1) {
+                    results = service.analyze(createAnalyzeOptions(batch.get(0), DataType.TEXT, selection)).execute();
+                    dataList.add(createAggregateData(results, description));
+                    continue;
+                }
+                int limit = (int) Math.min((long) selection.getMaxResponses() * batch.size(), MAX_SERVICE_ITEMS);
+                results = service.analyze(createBatchOptions(batch, batchSelection.withMaxResponses(limit))).execute();
+            }
+            catch (Exception e) {
+                dataList.addAll(Collections.<AggregateData>nCopies(batch.size(), null));
+                continue;
+            }
+            dataList.addAll(splitBatchResults(results, batch, description, selection.getMaxResponses()));
+        }
+        return dataList;
+    }
+    
+    // Most texts in a batch such that each text can receive its share of keywords and entities
+    static int maxBatchTexts(int maxResponses) {
+        int itemsPerText = Math.max(Math.min(maxResponses, BATCH_ITEMS_PER_TEXT), 1);
+        return Math.max(MAX_SERVICE_ITEMS / itemsPerText, 1);
+    }
+    
+    // Features requested for batches: those selected other than categories, null if there are none
+    private static FeatureSelection batchSelection(FeatureSelection selection) {
+        ArrayList<FeatureSelection.Feature> features = new ArrayList<FeatureSelection.Feature>(selection.getFeatures());
+        features.remove(FeatureSelection.Feature.CATEGORIES);
+        if (features.isEmpty()) {
+            return null;
+        }
+        return FeatureSelection.of(selection.getMaxResponses(), selection.hasSentiment(),
+                features.toArray(new FeatureSelection.Feature[features.size()]));
+    }
+    
+    // Return the index after the last text of the batch beginning at "start". A batch always contains at
+    // least one text, even if it is longer than "maxCharacters".
+    static int batchEnd(List<String> texts, int start, int maxCharacters, int maxTexts) {
+        int length = texts.get(start).length();
+        int end = start + 1;
+        while ((end < texts.size()) && (end - start < maxTexts)) {
+            length += BATCH_DELIMITER.length() + texts.get(end).length();
+            if (length > maxCharacters) {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+    
+    private static AnalyzeOptions createBatchOptions(List<String> batch, FeatureSelection selection) {
+        StringBuilder sb = new StringBuilder(MAX_BATCH_CHARACTERS);
+        for (String text : batch) {
+            if (sb.length() > 0) {
+                sb.append(BATCH_DELIMITER);
+            }
+            sb.append(text);
+        }
+        return createAnalyzeOptions(sb.toString(), DataType.TEXT, selection);
+    }
+    
+    /**
+     * Split the results of analyzing a batch of texts into results for each text, as described for
+     * analyzeBatch. Categories are ignored.
+     * 
+     * @param results
+     *      results of analyzing the batch
+     * @param batch
+     *      texts in the batch
+     * @param description
+     *      user-provided description to be stored with the analyzed data of each text
+     * @param maxResponses
+     *      maximum number of concepts, entities, and keywords attributed to each text
+     * @return analyzed results for each text
+     *      
+     */
+    static ArrayList<AggregateData> splitBatchResults(AnalysisResults results, List<String> batch,
+            String description, int maxResponses) {
+        ArrayList<AggregateData> dataList = new ArrayList<AggregateData>(batch.size());
+        String[] segments = new String[batch.size()];
+        for (int i = 0; i < segments.length; i++) {
+            dataList.add(new AggregateData(description));
+            segments[i] = batch.get(i).toLowerCase(Locale.ROOT);
+        }
+        // results are in decreasing order of relevance, so each text keeps its most relevant ones
+        int[] numConcepts = new int[segments.length];
+        for (ConceptsResult concept : nonNull(results.getConcepts())) {
+            double relevance = Util.unboxDouble(concept.getRelevance());
+            String name = (concept.getText() == null) ? "" : concept.getText().toLowerCase(Locale.ROOT);
+            for (int i = 0; i < segments.length; i++) {
+                if ((numConcepts[i] < maxResponses) && (countWords(segments[i], name) > 0)) {
+                    dataList.get(i).addData(concept.getDbpediaResource(), 1, relevance, 0.0, AggregateData.Type.CONCEPT);
+                    numConcepts[i]++;
+                }
+            }
+        }
+        int[] numEntities = new int[segments.length];
+        for (EntitiesResult result : nonNull(results.getEntities())) {
+            double relevance = Util.unboxDouble(result.getRelevance());
+            double sentimentScore = sentimentScore(result.getSentiment());
+            DisambiguationResult disamResult = result.getDisambiguation();
+            String key = (disamResult != null) ? disamResult.getName() : result.getText();
+            AggregateData.Type type = (disamResult != null) ? AggregateData.Type.DISAMBIGUATEDENTITY
+                    : AggregateData.Type.ENTITYAMBIGUOUS;
+            String text = (result.getText() == null) ? "" : result.getText().toLowerCase(Locale.ROOT);
+            for (int i = 0; i < segments.length; i++) {
+                int count = (numEntities[i] < maxResponses) ? countWords(segments[i], text) : 0;
+                if (count > 0) {
+                    dataList.get(i).addData(key, count, relevance, sentimentScore, type);
+                    numEntities[i]++;
+                }
+            }
+        }
+        int[] numKeywords = new int[segments.length];
+        for (KeywordsResult result : nonNull(results.getKeywords())) {
+            double relevance = Util.unboxDouble(result.getRelevance());
+            double sentimentScore = sentimentScore(result.getSentiment());
+            String text = (result.getText() == null) ? "" : result.getText().toLowerCase(Locale.ROOT);
+            for (int i = 0; i < segments.length; i++) {
+                if ((numKeywords[i] < maxResponses) && (countWords(segments[i], text) > 0)) {
+                    dataList.get(i).addData(result.getText(), 1, relevance, sentimentScore,
+                            AggregateData.Type.KEYWORD);
+                    numKeywords[i]++;
+                }
+            }
+        }
+        return dataList;
+    }
+    
+    private static <T> List<T> nonNull(List<T> list) {
+        return (list == null) ? Collections.<T>emptyList() : list;
+    }
+    
+    // Number of occurrences of "target" in "text" which do not begin or end within a word
+    static int countWords(String text, String target) {
+        if (target.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        int index = text.indexOf(target);
+        while (index >= 0) {
+            int after = index + target.length();
+            if (isWordBoundary(text, index) && isWordBoundary(text, after)) {
+                count++;
+                index = text.indexOf(target, after);
+            }
+            else {
+                index = text.indexOf(target, index + 1);
+            }
+        }
+        return count;
+    }
+    
+    // A word boundary is between two characters which are not both letters or digits
+    private static boolean isWordBoundary(String text, int index) {
+        return (index == 0) || (index == text.length()) || !Character.isLetterOrDigit(text.charAt(index - 1))
+                || !Character.isLetterOrDigit(text.charAt(index));
+    }
+    
+    private static double sentimentScore(FeatureSentimentResults sentiment) {
+        if (sentiment == null) {
+            return 0.0;
+        }
+        return Util.unboxDouble(sentiment.getScore());
+    }
+    
+    // The analyzed text is not requested since it is not used, and can be as long as the input
+    private static AnalyzeOptions createAnalyzeOptions(String text, DataType type, FeatureSelection selection) {
         Builder builder = new AnalyzeOptions.Builder()
-            .features(features)
-            .returnAnalyzedText(true);
+            .features(selection.getServiceFeatures());
         switch(type) {
         case HTML:
             builder.html(text);
@@ -136,26 +483,23 @@ public class NaturalLanguageUnderstandingClient implements NaturalLanguageClient
             builder.text(text);
             break;
         }
-        AnalyzeOptions parameters = builder.build();
-        AnalysisResults results;
-        try {
-            results = service.analyze(parameters).execute();
-        }
-        catch (Exception e) {
-            return null;
-        }
+        return builder.build();
+    }
+    
+    // Lists of results are null for features which were not requested
+    static AggregateData createAggregateData(AnalysisResults results, String description) {
         AggregateData data = new AggregateData(description);
-        for (CategoriesResult result : results.getCategories()) {
+        for (CategoriesResult result : nonNull(results.getCategories())) {
             String label = result.getLabel();
             double score = Util.unboxDouble(result.getScore());
             data.addData(label, 1, 0.0, score, AggregateData.Type.TAXONOMY);
         }
-        for (ConceptsResult concept : results.getConcepts()) {
+        for (ConceptsResult concept : nonNull(results.getConcepts())) {
             double relevance = Util.unboxDouble(concept.getRelevance());
             String dbpedia = concept.getDbpediaResource();
             data.addData(dbpedia, 1, relevance, 0.0, AggregateData.Type.CONCEPT);
         }
-        for (EntitiesResult result : results.getEntities()) {
+        for (EntitiesResult result : nonNull(results.getEntities())) {
             int count = Util.unboxInteger(result.getCount());
             double relevance = Util.unboxDouble(result.getRelevance());
             String text2 = result.getText();
@@ -176,7 +520,7 @@ public class NaturalLanguageUnderstandingClient implements NaturalLanguageClient
                 data.addData(text2, count, relevance, sentimentScore, AggregateData.Type.ENTITYAMBIGUOUS);
             }
         }
-        for (KeywordsResult result : results.getKeywords()) {
+        for (KeywordsResult result : nonNull(results.getKeywords())) {
             double relevance = Util.unboxDouble(result.getRelevance());
             String text2 = result.getText();
             FeatureSentimentResults sentiment = result.getSentiment();
@@ -0,0 +1,424 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
+import com.ibm.watson.developer_cloud.cognitive_client.Util.NaturalLanguageService;
+import com.ibm.watson.developer_cloud.service.exception.ServiceResponseException;
+
+/**
+ * @author ArunIyengar
+ *
+ * Limits the rate and concurrency of calls made by another natural language client, and retries calls
+ * which fail because the text analysis service is overloaded. This allows many threads to share one client
+ * without losing documents to throttling.
+ *
+ * <ul>
+ * <li>Calls are started at no more than a fixed rate, with short bursts allowed, using a token bucket.</li>
+ * <li>The number of calls in progress is limited. The limit is adjusted using additive increase and
+ * multiplicative decrease (AIMD): it grows slowly while calls succeed quickly, and is halved when the
+ * service responds with status 429 (too many requests) or 5xx, a call fails with an I/O error, or a call
+ * takes longer than a latency target.</li>
+ * <li>Calls failing with status 429 or 5xx, or with an I/O error, are retried after an exponentially
+ * increasing random delay ("full jitter"), or after the delay requested by the service if longer.</li>
+ * </ul>
+ *
+ * The wrapped client's analyzeDataAsync method is used for every call, since it reports why a call failed.
+ * It should not block.
+ *
+ */
+public class RateLimitedClient implements NaturalLanguageClient {
+
+    static final long BASE_BACKOFF_MILLIS = 500;
+    static final long MAX_BACKOFF_MILLIS = 30000;
+    private static final int DEFAULT_MAX_RETRIES = 6;
+    private static final double DECREASE_FACTOR = 0.5;
+
+    // Shared by all instances, so that clients which are discarded without being closed leave no threads
+    // behind. Scheduled tasks only start asynchronous calls, so one daemon thread is enough.
+    private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+    private final NaturalLanguageClient client;
+    private final TokenBucket tokenBucket;
+    private final ConcurrencyLimiter limiter;
+    private final int maxRetries;
+    private final long latencyTargetNanos;  // 0 if latency is not used to adjust the concurrency limit
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param naturalLanguageClient
+     *      client to make calls with
+     * @param requestsPerSecond
+     *      maximum average rate at which calls are started
+     * @param maxConcurrency
+     *      maximum number of calls in progress at once
+     */
+    public RateLimitedClient(NaturalLanguageClient naturalLanguageClient, double requestsPerSecond,
+            int maxConcurrency) {
+        this(naturalLanguageClient, requestsPerSecond, Math.max(1, (int) requestsPerSecond), maxConcurrency,
+                DEFAULT_MAX_RETRIES, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param naturalLanguageClient
+     *      client to make calls with
+     * @param requestsPerSecond
+     *      maximum average rate at which calls are started
+     * @param burstSize
+     *      maximum number of calls which can be started at once after a period of inactivity
+     * @param maxConcurrency
+     *      maximum number of calls in progress at once
+     * @param maxRetries
+     *      maximum number of times a call is retried
+     * @param latencyTargetMillis
+     *      the concurrency limit is decreased when a call takes longer than this, 0 to ignore latency
+     */
+    public RateLimitedClient(NaturalLanguageClient naturalLanguageClient, double requestsPerSecond, int burstSize,
+            int maxConcurrency, int maxRetries, long latencyTargetMillis) {
+        if ((requestsPerSecond <= 0.0) || (burstSize < 1) || (maxConcurrency < 1) || (maxRetries < 0)) {
+            throw new IllegalArgumentException("rate, burst size, and concurrency must be positive");
+        }
+        client = naturalLanguageClient;
+        tokenBucket = new TokenBucket(requestsPerSecond, burstSize, System.nanoTime());
+        limiter = new ConcurrencyLimiter(maxConcurrency);
+        this.maxRetries = maxRetries;
+        latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "RateLimitedClient");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Return identity of natural language service
+     *
+     * @return identity of natural language service
+     *
+     * */
+    @Override
+    public NaturalLanguageService serviceType() {
+        return client.serviceType();
+    }
+
+    /**
+     * Return the settings of the wrapped client which affect results
+     *
+     * @return the wrapped client's cache key parameters
+     *
+     * */
+    @Override
+    public String cacheKeyParameters() {
+        return client.cacheKeyParameters();
+    }
+
+    /**
+     * Analyze and aggregate data, waiting as necessary for the rate and concurrency limits and retrying
+     * calls rejected because the service is overloaded
+     *
+     * @param text
+     *      data itself, or URL containing data to be analyzed
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @return analyzed and aggregated results from text analysis service, null if the text analysis
+     *      service failed to produce valid results
+     *
+     */
+    @Override
+    public AggregateData analyzeData(String text, DataType type, String description) {
+        try {
+            return analyzeDataAsync(text, type, description).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Analyze and aggregate data without blocking the calling thread. The call is made once the rate and
+     * concurrency limits allow it, and retried if it is rejected because the service is overloaded.
+     *
+     * @param text
+     *      data itself, or URL containing data to be analyzed
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @return future which completes with the analyzed and aggregated results from the text analysis
+     *      service, or completes exceptionally if the text analysis service failed to produce valid results
+     *      after all retries
+     *
+     */
+    @Override
+    public CompletableFuture<AggregateData> analyzeDataAsync(String text, DataType type, String description) {
+        CompletableFuture<AggregateData> result = new CompletableFuture<AggregateData>();
+        attempt(text, type, description, 0, result);
+        return result;
+    }
+
+    /**
+     * Return the current limit on the number of calls in progress
+     *
+     * @return current concurrency limit
+     */
+    public int getConcurrencyLimit() {
+        return limiter.getLimit();
+    }
+
+    /**
+     * Return the number of calls made to the wrapped client, including retries
+     *
+     * @return number of calls
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Return the number of calls which were retried
+     *
+     * @return number of retries
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Return the number of calls which failed because the service was overloaded
+     *
+     * @return number of throttled calls
+     */
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    private void attempt(final String text, final DataType type, final String description, final int attemptNumber,
+            final CompletableFuture<AggregateData> result) {
+        limiter.acquire().thenRun(() -> {
+            long delayNanos = tokenBucket.reserve(System.nanoTime());
+            SCHEDULER.schedule(() -> call(text, type, description, attemptNumber, result), delayNanos,
+                    TimeUnit.NANOSECONDS);
+        });
+    }
+
+    private void call(final String text, final DataType type, final String description, final int attemptNumber,
+            final CompletableFuture<AggregateData> result) {
+        final long start = System.nanoTime();
+        calls.incrementAndGet();
+        CompletableFuture<AggregateData> future;
+        try {
+            future = client.analyzeDataAsync(text, type, description);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<AggregateData>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((data, exception) -> {
+            long now = System.nanoTime();
+            Throwable cause = unwrap(exception);
+            boolean overloaded = (cause != null) && isRetryable(cause);
+            boolean slow = (latencyTargetNanos > 0) && (now - start > latencyTargetNanos);
+            limiter.release(overloaded || slow, now);
+            if (cause == null) {
+                result.complete(data);
+            }
+            else if (overloaded && (attemptNumber < maxRetries)) {
+                throttled.incrementAndGet();
+                retries.incrementAndGet();
+                SCHEDULER.schedule(() -> attempt(text, type, description, attemptNumber + 1, result),
+                        backoffMillis(attemptNumber, cause), TimeUnit.MILLISECONDS);
+            }
+            else {
+                if (overloaded) {
+                    throttled.incrementAndGet();
+                }
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    static Throwable unwrap(Throwable exception) {
+        while (((exception instanceof CompletionException) || (exception instanceof ExecutionException))
+                && (exception.getCause() != null)) {
+            exception = exception.getCause();
+        }
+        return exception;
+    }
+
+    // Overloaded services respond with 429 or 503; other server errors and I/O errors are usually transient
+    static boolean isRetryable(Throwable exception) {
+        if (exception instanceof ServiceResponseException) {
+            int status = ((ServiceResponseException) exception).getStatusCode();
+            return (status == 429) || (status >= 500);
+        }
+        return (exception instanceof IOException) || (exception.getCause() instanceof IOException);
+    }
+
+    /**
+     * Return the delay before retrying a call: a random time between 0 and an exponentially increasing
+     * bound, or the time requested by the service in a Retry-After header if that is longer
+     *
+     * @param attemptNumber
+     *      number of retries already made
+     * @param exception
+     *      exception which caused the call to fail
+     * @return delay in milliseconds
+     */
+    static long backoffMillis(int attemptNumber, Throwable exception) {
+        long bound = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attemptNumber, 16));
+        long delay = ThreadLocalRandom.current().nextLong(bound + 1);
+        if ((exception instanceof ServiceResponseException)
+                && (((ServiceResponseException) exception).getResponse() != null)) {
+            String retryAfter = ((ServiceResponseException) exception).getResponse().header("Retry-After");
+            if (retryAfter != null) {
+                try {
+                    delay = Math.max(delay, Math.min(MAX_BACKOFF_MILLIS, 1000 * Long.parseLong(retryAfter.trim())));
+                } catch (NumberFormatException e) {
+                    // an HTTP date; use the computed delay
+                }
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * Token bucket holding up to "capacity" tokens, refilled at a fixed rate. Each call takes one token.
+     * If no token is available, the token is borrowed from the future and the caller must wait until it
+     * would have been added, so calls are delayed in the order in which they reserve tokens.
+     */
+    static final class TokenBucket {
+
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double tokensPerSecond, int burstSize, long now) {
+            tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+            capacity = burstSize;
+            tokens = burstSize;
+            lastRefill = now;
+        }
+
+        /**
+         * Take a token
+         *
+         * @param now
+         *      current time from System.nanoTime
+         * @return nanoseconds to wait before using the token
+         */
+        synchronized long reserve(long now) {
+            tokens = Math.min(capacity, tokens + ((now - lastRefill) * tokensPerNano));
+            lastRefill = now;
+            tokens -= 1.0;
+            if (tokens >= 0.0) {
+                return 0;
+            }
+            return (long) Math.ceil(-tokens / tokensPerNano);
+        }
+    }
+
+    /**
+     * Limits the number of calls in progress, with the limit adjusted by additive increase and
+     * multiplicative decrease. Each successful call increases the limit by 1/limit, or by about 1 for each
+     * limit's worth of calls. The limit is halved at most once per BASE_BACKOFF_MILLIS so that the many
+     * failures caused by a single overload only halve it once.
+     */
+    static final class ConcurrencyLimiter {
+
+        private final int maxLimit;
+        private double limit;
+        private int inFlight;
+        private long lastDecrease;
+        private boolean decreased;
+        private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<CompletableFuture<Void>>();
+
+        ConcurrencyLimiter(int maxConcurrency) {
+            maxLimit = maxConcurrency;
+            limit = maxConcurrency;
+        }
+
+        synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        synchronized int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Wait for permission to start a call
+         *
+         * @return future which completes when the call may start
+         */
+        synchronized CompletableFuture<Void> acquire() {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> future = new CompletableFuture<Void>();
+            waiters.add(future);
+            return future;
+        }
+
+        /**
+         * Record the end of a call, adjust the limit, and start waiting calls which are now permitted
+         *
+         * @param congested
+         *      true if the call indicated that the service is overloaded
+         * @param now
+         *      current time from System.nanoTime
+         */
+        void release(boolean congested, long now) {
+            ArrayDeque<CompletableFuture<Void>> ready = new ArrayDeque<CompletableFuture<Void>>();
+            synchronized (this) {
+                inFlight--;
+                if (congested) {
+                    if (!decreased || (now - lastDecrease > TimeUnit.MILLISECONDS.toNanos(BASE_BACKOFF_MILLIS))) {
+                        limit = Math.max(1.0, limit * DECREASE_FACTOR);
+                        lastDecrease = now;
+                        decreased = true;
+                    }
+                }
+                else {
+                    limit = Math.min(maxLimit, limit + (1.0 / limit));
+                }
+                while ((inFlight < (int) limit) && !waiters.isEmpty()) {
+                    inFlight++;
+                    ready.add(waiters.poll());
+                }
+            }
+            for (CompletableFuture<Void> waiter : ready) {
+                waiter.complete(null);
+            }
+        }
+    }
+
+}
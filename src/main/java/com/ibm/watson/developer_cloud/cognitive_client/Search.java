@@ -4,19 +4,17 @@
 package com.ibm.watson.developer_cloud.cognitive_client;
 
 import java.util.ArrayList;
-import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.net.URLEncoder;
-
-
-
-
-
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 
 
@@ -30,10 +28,9 @@ public class Search {
     public enum SearchType {
         GOOGLE_REGULAR,
         GOOGLE_NEWS,
-/*        BING_REGULAR,
+        BING_REGULAR,
         BING_NEWS,
         YAHOO
-*/
     }
 
     private static final String GOOGLE_BASE_URL = "https://www.google.com/search?";
@@ -42,17 +39,63 @@ public class Search {
     private static final String NEWS = "hl=en&gl=us&tbm=nws&";
     private static final String GOOGLE_NEWS_URL = GOOGLE_BASE_URL + NEWS + QUERY_PREFIX;
     
-/*    private static final String BING_BASE_URL = "https://www.bing.com/";
+    private static final String BING_BASE_URL = "https://www.bing.com/";
     private static final String BING_QUERY_PREFIX = "search?q=";
     private static final String BING_SEARCH_URL = BING_BASE_URL + BING_QUERY_PREFIX;
     private static final String BING_NEWS = "news/";
     private static final String BING_NEWS_URL = BING_BASE_URL + BING_NEWS + BING_QUERY_PREFIX;
     private static final String YAHOO_SEARCH_URL = "https://search.yahoo.com/search?p=";
-*/
     
+    public static final int DEFAULT_MAX_CONCURRENT_PAGES = 4;
+
+    private static volatile SearchCache cache;  // null if searches are not cached
+    private static volatile SearchCounters counters = new SearchCounters(MetricsRegistry.NONE);
+    
+    private static final ExecutorService SEARCH_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Search");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     /**
-     * Perform a Google search on a query and return an ArrayList of URLs found. 
+     * Counters for searchAll, looked up once when a registry is set
+     */
+    private static class SearchCounters {
+
+        private final MetricsRegistry.Counter urls;
+        private final MetricsRegistry.Counter timeouts;
+
+        private SearchCounters(MetricsRegistry registry) {
+            urls = registry.counter("Search.urls");
+            timeouts = registry.counter("Search.timeouts");
+        }
+    }
+
+    /**
+     * Count the results of searchAll in a registry. The counters are Search.urls for the distinct URLs
+     * found, and Search.timeouts for the providers which did not respond within the timeout.
+     *
+     * @param registry
+     *      registry in which to count results, MetricsRegistry.NONE to stop counting them
+     */
+    public static void setMetricsRegistry(MetricsRegistry registry) {
+        counters = new SearchCounters(registry);
+    }
+
+    /**
+     * Cache the results of all searches made by search, including searches made by DataManager
+     * 
+     * @param searchCache
+     *            cache to use, null to stop caching searches
+     * 
+     * */
+    public static void setCache(SearchCache searchCache) {
+        cache = searchCache;
+    }
+    
+    /**
+     * Perform a Web search on a query and return an ArrayList of URLs found. If a cache has been set
+     * using setCache, cached results are returned when available.
      * 
      * @param query
      *            query to pass to search engine
@@ -67,54 +110,256 @@ public class Search {
      * 
      * */
     public static ArrayList<String> search(String query, int numResults, SearchType searchType, boolean verbose) {
-        String encodedQuery;
+        SearchCache searchCache = cache;
+        if (searchCache != null) {
+            return searchCache.search(query, numResults, searchType);
+        }
+        return searchUncached(query, numResults, searchType, verbose);
+    }
+    
+    /**
+     * Perform a Web search on a query, passing each URL found to a callback as soon as the results page
+     * containing it has been fetched, so that URLs can be processed while later pages are loading. If a
+     * cache has been set using setCache, the search is made through the cache and all URLs are passed to
+     * the callback once the search completes.
+     * 
+     * @param query
+     *            query to pass to search engine
+     * @param numResults
+     *            number of documents to search for
+     * @param searchType
+     *            Type of search
+     * @param onUrl
+     *            called by the calling thread with each URL in rank order
+     * 
+     * @return ArrayList of urls found
+     * 
+     * */
+    public static ArrayList<String> search(String query, int numResults, SearchType searchType,
+            Consumer<String> onUrl) {
+        SearchCache searchCache = cache;
+        if (searchCache == null) {
+            return HtmlSearchProvider.forType(searchType).search(query, numResults, onUrl);
+        }
+        ArrayList<String> urls = searchCache.search(query, numResults, searchType);
+        for (String url : urls) {
+            onUrl.accept(url);
+        }
+        return urls;
+    }
+    
+    // Fetch and parse a search results page
+    static ArrayList<String> searchUncached(String query, int numResults, SearchType searchType, boolean verbose) {
+        return HtmlSearchProvider.forType(searchType).search(query, numResults, verbose);
+    }
+
+    /**
+     * Search for a query using several search engines at the same time and return the URLs found,
+     * without duplicates. Results are merged as each search engine responds, with the results from
+     * search engines which respond first coming first. Search engines which do not respond within the
+     * timeout are ignored.
+     * 
+     * @param query
+     *            query to pass to search engines
+     * @param numResults
+     *            number of documents to search for with each search engine
+     * @param timeoutMillis
+     *            time in milliseconds to wait for the search engines
+     * @param searchTypes
+     *            types of search to perform
+     * 
+     * @return ArrayList of urls found
+     * 
+     * */
+    public static ArrayList<String> searchAll(String query, int numResults, long timeoutMillis,
+            SearchType... searchTypes) {
+        ArrayList<SearchProvider> providers = new ArrayList<SearchProvider>();
+        for (SearchType searchType : searchTypes) {
+            providers.add(HtmlSearchProvider.forType(searchType));
+        }
+        return searchAll(query, numResults, providers, timeoutMillis, null);
+    }
+
+    /**
+     * Search for a query using several search providers at the same time and return the URLs found.
+     * URLs are deduplicated using their canonical form from UrlCanonicalizer, keeping the first form
+     * found. Results are merged as each provider responds, with the results from providers which respond
+     * first coming first. Providers which fail are ignored, and providers which do not respond within the
+     * timeout are interrupted and ignored. The number of URLs found and of providers which timed out are
+     * counted in the registry passed to setMetricsRegistry.
+     * 
+     * @param query
+     *            query to pass to search providers
+     * @param numResults
+     *            number of documents to search for with each provider
+     * @param providers
+     *            providers to search with
+     * @param timeoutMillis
+     *            time in milliseconds to wait for each provider; all providers start at the same time
+     * @param onNewUrl
+     *            if not null, called by the calling thread with each new URL as soon as it is found, so
+     *            that processing can start before slower providers respond
+     * 
+     * @return ArrayList of urls found
+     * 
+     * */
+    public static ArrayList<String> searchAll(final String query, final int numResults,
+            List<? extends SearchProvider> providers, long timeoutMillis, Consumer<String> onNewUrl) {
+        SearchCounters searchCounters = counters;
+        ExecutorCompletionService<ArrayList<String>> completion =
+                new ExecutorCompletionService<ArrayList<String>>(SEARCH_EXECUTOR);
+        ArrayList<Future<ArrayList<String>>> searches = new ArrayList<Future<ArrayList<String>>>();
+        for (final SearchProvider provider : providers) {
+            searches.add(completion.submit(() -> provider.search(query, numResults)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        HashSet<String> seen = new HashSet<String>();
         ArrayList<String> urls = new ArrayList<String>();
         try {
-            encodedQuery = URLEncoder.encode(query, "UTF-8") + "&num=" + numResults;
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-            return urls;
+            for (int i = 0; i < searches.size(); i++) {
+                Future<ArrayList<String>> done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    break;
+                }
+                ArrayList<String> results;
+                try {
+                    results = done.get();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    continue;
+                }
+                for (String url : results) {
+                    if (seen.add(UrlCanonicalizer.canonicalize(url))) {
+                        urls.add(url);
+                        if (onNewUrl != null) {
+                            onNewUrl.accept(url);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<ArrayList<String>> search : searches) {
+                if (!search.isDone()) {
+                    search.cancel(true);
+                    searchCounters.timeouts.increment();
+                }
+            }
         }
-        String searchURL = searchPrefixString(searchType) + encodedQuery;
-        if (verbose) {
-            System.out.println(searchURL);
+        searchCounters.urls.add(urls.size());
+        return urls;
+    }
+
+    /**
+     * Retrieve more results than fit on one results page by fetching several pages at the same time.
+     * URLs are passed to the callback in rank order as soon as the pages before them have arrived, with
+     * URLs repeated on later pages left out. Fetching stops once numResults URLs have been found or a
+     * page has no results; pages still being fetched are then cancelled. A page which fails is treated
+     * as having no results.
+     * 
+     * @param provider
+     *            provider returning the pages
+     * @param query
+     *            query to pass to search engine
+     * @param numResults
+     *            number of documents to search for
+     * @param pageSize
+     *            number of results requested on each page
+     * @param maxConcurrentPages
+     *            maximum number of pages fetched at the same time
+     * @param onUrl
+     *            if not null, called by the calling thread with each URL in rank order
+     * 
+     * @return ArrayList of urls found in rank order
+     * 
+     * */
+    public static ArrayList<String> searchPages(final SearchProvider provider, final String query, int numResults,
+            final int pageSize, int maxConcurrentPages, Consumer<String> onUrl) {
+        if ((pageSize < 1) || (maxConcurrentPages < 1)) {
+            throw new IllegalArgumentException("pageSize and maxConcurrentPages must be positive");
         }
-        Document doc;
+        int numPages = (int) ((numResults + (long) pageSize - 1) / pageSize);
+        ExecutorCompletionService<ArrayList<String>> completion =
+                new ExecutorCompletionService<ArrayList<String>>(SEARCH_EXECUTOR);
+        HashMap<Future<ArrayList<String>>,Integer> pending = new HashMap<Future<ArrayList<String>>,Integer>();
+        TreeMap<Integer,ArrayList<String>> arrived = new TreeMap<Integer,ArrayList<String>>();
+        HashSet<String> seen = new HashSet<String>();
+        ArrayList<String> urls = new ArrayList<String>();
+        int nextPage = 0;
+        int nextToDeliver = 0;
+        boolean finished = numPages == 0;
         try {
-            // Without proper User-Agent, we will get 403 error
-            doc = Jsoup.connect(searchURL).userAgent("Mozilla/5.0").get();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return urls;
-        }
-                
-        // If google search results HTML change the <h3 class="r" to <h3 class="r1"
-        // we need to change below accordingly
-        Elements results = doc.select("h3.r > a");
-        for (Element result : results) {
-            String linkHref = result.attr("href");
-            String linkText = result.text();
-            String url = result.absUrl("href"); // Google returns URLs in format "http://www.google.com/url?q=<url>&sa=U&ei=<someKey>".
-            try {
-                url = URLDecoder.decode(url.substring(url.indexOf('=') + 1, url.indexOf('&')), "UTF-8");
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
-                continue;
+            while (!finished) {
+                while ((pending.size() < maxConcurrentPages) && (nextPage < numPages)) {
+                    final int page = nextPage++;
+                    pending.put(completion.submit(() -> provider.searchPage(query, pageSize, page)), page);
+                }
+                if (pending.isEmpty()) {
+                    break;
+                }
+                Future<ArrayList<String>> done = completion.take();
+                int page = pending.remove(done);
+                ArrayList<String> results;
+                try {
+                    results = done.get();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    results = new ArrayList<String>();
+                }
+                arrived.put(page, results);
+                while (!finished && arrived.containsKey(nextToDeliver)) {
+                    results = arrived.remove(nextToDeliver++);
+                    finished = results.isEmpty();
+                    for (String url : results) {
+                        if (seen.add(UrlCanonicalizer.canonicalize(url))) {
+                            urls.add(url);
+                            if (onUrl != null) {
+                                onUrl.accept(url);
+                            }
+                            if (urls.size() >= numResults) {
+                                finished = true;
+                                break;
+                            }
+                        }
+                    }
+                }
             }
-            if (!url.startsWith("http")) {
-                continue; // Ads/news/etc.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<ArrayList<String>> future : pending.keySet()) {
+                future.cancel(true);
             }
-            urls.add(url);
-            if (verbose) {
-                System.out.println("Text::" + linkText + ", URL (undecoded): " + 
-                        linkHref.substring(6, linkHref.indexOf("&")));
-                System.out.println("URL (decoded): " + url);
-            }            
         }
-        System.out.println("Search.search: " + urls.size() + " urls found");
         return urls;
     }
 
+    /**
+     * Retrieve results as searchPages does, but in the background, returning an iterator over the URLs
+     * found. The iterator returns each URL as soon as it is available and blocks until the next URL
+     * arrives or the search completes. Closing the iterator cancels the search.
+     * 
+     * @param provider
+     *            provider returning the pages
+     * @param query
+     *            query to pass to search engine
+     * @param numResults
+     *            number of documents to search for
+     * @param pageSize
+     *            number of results requested on each page
+     * @param maxConcurrentPages
+     *            maximum number of pages fetched at the same time
+     * 
+     * @return iterator over the urls found in rank order
+     * 
+     * */
+    public static SearchResults searchPagesIterator(final SearchProvider provider, final String query,
+            final int numResults, final int pageSize, final int maxConcurrentPages) {
+        return new SearchResults(consumer -> searchPages(provider, query, numResults, pageSize, maxConcurrentPages,
+                consumer), SEARCH_EXECUTOR);
+    }
+
     /**
      * Return a string corresponding to the type of search. 
      * 
@@ -128,15 +373,14 @@ public class Search {
         switch(searchType) {
         case GOOGLE_REGULAR:
             return GOOGLE_SEARCH_URL;
-        default:
+        case GOOGLE_NEWS:
             return GOOGLE_NEWS_URL;
-/*        case BING_REGULAR:
+        case BING_REGULAR:
             return BING_SEARCH_URL;
         case BING_NEWS:
             return BING_NEWS_URL;
         default:
             return YAHOO_SEARCH_URL;
-*/  
         }
         
     }
@@ -0,0 +1,348 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import com.ibm.watson.developer_cloud.cognitive_client.Search.SearchType;
+
+/**
+ * @author ArunIyengar
+ *
+ * Caches Web search results so that repeating a search does not fetch and parse a search results page
+ * again. Results are keyed on the query, the number of results requested, and the type of search. They
+ * expire after a fixed time, the least recently used results are evicted once the cache is full, and
+ * results can optionally be stored on disk so that they survive restarts. When several threads make the
+ * same search at the same time, only one of them searches and the others wait for its results. Searches
+ * which return no URLs, usually because the search failed, are not cached.
+ *
+ */
+public class SearchCache {
+
+    /**
+     * Performs searches for the cache on a miss
+     */
+    public interface Searcher {
+
+        /**
+         * Search for a query
+         *
+         * @param query
+         *      query to pass to search engine
+         * @param numResults
+         *      number of documents to search for
+         * @param searchType
+         *      type of search
+         * @return URLs found, an empty list if the search failed
+         */
+        ArrayList<String> search(String query, int numResults, SearchType searchType);
+    }
+
+    private static final String FILESUFFIX = ".search";
+    private static final String TEMPSUFFIX = ".tmp";
+
+    private static class Entry {
+        final List<String> urls;
+        final long expires;
+
+        Entry(List<String> urlList, long expiryTime) {
+            urls = Collections.unmodifiableList(new ArrayList<String>(urlList));
+            expires = expiryTime;
+        }
+    }
+
+    private final Searcher searcher;
+    private final long ttlMillis;
+    private final String cacheDirectory;  // null if results are only cached in memory
+    private final LongSupplier clock;
+    private final LinkedHashMap<String,Entry> memoryCache;
+    private final ConcurrentHashMap<String,CompletableFuture<List<String>>> inFlight =
+            new ConcurrentHashMap<String,CompletableFuture<List<String>>>();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Constructor for a cache which only stores results in memory and searches using Search.search
+     *
+     * @param maxEntries
+     *      maximum number of searches cached in memory
+     * @param ttlMillis
+     *      time in milliseconds after which cached results expire
+     */
+    public SearchCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, null);
+    }
+
+    /**
+     * Constructor for a cache which stores results in memory and on disk and searches using Search.search
+     *
+     * @param maxEntries
+     *      maximum number of searches cached in memory
+     * @param ttlMillis
+     *      time in milliseconds after which cached results expire
+     * @param directory
+     *      directory for storing cached results on disk, null to only cache results in memory. If the
+     *      directory does not exist, an attempt is made to create it
+     */
+    public SearchCache(int maxEntries, long ttlMillis, String directory) {
+        this(maxEntries, ttlMillis, directory,
+            (query, numResults, searchType) -> Search.searchUncached(query, numResults, searchType, false));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxEntries
+     *      maximum number of searches cached in memory
+     * @param ttlMillis
+     *      time in milliseconds after which cached results expire
+     * @param directory
+     *      directory for storing cached results on disk, null to only cache results in memory. If the
+     *      directory does not exist, an attempt is made to create it
+     * @param searcher
+     *      performs searches which are not cached. If this cache is passed to Search.setCache, the
+     *      searcher must not call Search.search.
+     */
+    public SearchCache(int maxEntries, long ttlMillis, String directory, Searcher searcher) {
+        this(maxEntries, ttlMillis, directory, searcher, System::currentTimeMillis);
+    }
+
+    // Constructor with a clock which can be controlled by tests
+    SearchCache(final int maxEntries, long ttl, String directory, Searcher searchFunction, LongSupplier time) {
+        if ((maxEntries < 1) || (ttl < 1)) {
+            throw new IllegalArgumentException("maxEntries and ttlMillis must be positive");
+        }
+        searcher = searchFunction;
+        ttlMillis = ttl;
+        cacheDirectory = directory;
+        clock = time;
+        memoryCache = new LinkedHashMap<String,Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        Util.createDirectory(cacheDirectory);
+    }
+
+    /**
+     * Search for a query, searching only if the results are not cached or have expired
+     *
+     * @param query
+     *      query to pass to search engine
+     * @param numResults
+     *      number of documents to search for
+     * @param searchType
+     *      type of search
+     * @return ArrayList of urls found, which the caller may modify
+     */
+    public ArrayList<String> search(String query, int numResults, SearchType searchType) {
+        String key = cacheKey(query, numResults, searchType);
+        List<String> urls = lookup(key, true);
+        if (urls != null) {
+            return new ArrayList<String>(urls);
+        }
+        CompletableFuture<List<String>> future = new CompletableFuture<List<String>>();
+        CompletableFuture<List<String>> pending = inFlight.putIfAbsent(key, future);
+        if (pending != null) {
+            coalesced.incrementAndGet();
+            return waitForSearch(pending);
+        }
+        try {
+            // another thread may have stored the results since they were looked up
+            urls = lookup(key, false);
+            if (urls == null) {
+                misses.incrementAndGet();
+                urls = searcher.search(query, numResults, searchType);
+                if (!urls.isEmpty()) {
+                    store(key, urls);
+                }
+            }
+            future.complete(urls);
+            return new ArrayList<String>(urls);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Return number of searches satisfied from memory
+     *
+     * @return number of searches satisfied from memory
+     */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    /**
+     * Return number of searches satisfied from disk
+     *
+     * @return number of searches satisfied from disk
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Return number of searches which called the searcher
+     *
+     * @return number of searches which called the searcher
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Return number of searches which waited for the same search made by another thread
+     *
+     * @return number of searches which waited for another thread
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Return number of searches cached in memory, including expired searches not yet removed
+     *
+     * @return number of searches cached in memory
+     */
+    public int size() {
+        synchronized (memoryCache) {
+            return memoryCache.size();
+        }
+    }
+
+    /**
+     * Remove all searches cached in memory. Searches cached on disk are not affected.
+     */
+    public void clear() {
+        synchronized (memoryCache) {
+            memoryCache.clear();
+        }
+    }
+
+    private static String cacheKey(String query, int numResults, SearchType searchType) {
+        String key = searchType + "\n" + numResults + "\n" + query;
+        return Util.sha256(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Return cached URLs which have not expired, null if there are none
+    private List<String> lookup(String key, boolean countHits) {
+        long now = clock.getAsLong();
+        Entry entry;
+        synchronized (memoryCache) {
+            entry = memoryCache.get(key);
+            if ((entry != null) && (entry.expires <= now)) {
+                memoryCache.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            if (countHits) {
+                memoryHits.incrementAndGet();
+            }
+            return entry.urls;
+        }
+        entry = readFromDisk(key, now);
+        if (entry == null) {
+            return null;
+        }
+        if (countHits) {
+            diskHits.incrementAndGet();
+        }
+        synchronized (memoryCache) {
+            memoryCache.put(key, entry);
+        }
+        return entry.urls;
+    }
+
+    private void store(String key, List<String> urls) {
+        Entry entry = new Entry(urls, clock.getAsLong() + ttlMillis);
+        writeToDisk(key, entry);
+        synchronized (memoryCache) {
+            memoryCache.put(key, entry);
+        }
+    }
+
+    // Wait for a search made by another thread, returning an empty list if it failed
+    private static ArrayList<String> waitForSearch(CompletableFuture<List<String>> pending) {
+        try {
+            return new ArrayList<String>(pending.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        }
+        return new ArrayList<String>();
+    }
+
+    // The first line of a cache file is the expiry time, followed by one URL per line. Files are written
+    // under a temporary name and renamed so that a reader never sees a partly written file.
+    private void writeToDisk(String key, Entry entry) {
+        if (cacheDirectory == null) {
+            return;
+        }
+        ArrayList<String> lines = new ArrayList<String>(entry.urls.size() + 1);
+        lines.add(Long.toString(entry.expires));
+        lines.addAll(entry.urls);
+        Path file = cacheFile(key);
+        Path temp = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().getId() + TEMPSUFFIX);
+        try {
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Entry readFromDisk(String key, long now) {
+        if (cacheDirectory == null) {
+            return null;
+        }
+        Path file = cacheFile(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            long expires = Long.parseLong(lines.get(0));
+            if (expires <= now) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return new Entry(lines.subList(1, lines.size()), expires);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private Path cacheFile(String key) {
+        return new File(cacheDirectory, key + FILESUFFIX).toPath();
+    }
+
+}
@@ -0,0 +1,53 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.ArrayList;
+
+/**
+ * @author ArunIyengar
+ *
+ * Source of Web search results. Search.searchAll queries several providers at the same time and merges
+ * their results. Implementations must be safe to call from multiple threads.
+ *
+ */
+public interface SearchProvider {
+
+    /**
+     * Return the name of the provider, used in messages
+     *
+     * @return name of the provider
+     */
+    String getName();
+
+    /**
+     * Search for a query
+     *
+     * @param query
+     *      query to pass to search engine
+     * @param numResults
+     *      number of documents to search for
+     * @return URLs found in rank order, an empty list if the search failed
+     */
+    ArrayList<String> search(String query, int numResults);
+
+    /**
+     * Return one page of results for a query, so that more results can be retrieved than a search engine
+     * returns at once. Search.searchPages fetches several pages at the same time. Providers which cannot
+     * return later pages return the first pageSize results for page 0 and no results for later pages.
+     *
+     * @param query
+     *      query to pass to search engine
+     * @param pageSize
+     *      number of results on each page
+     * @param page
+     *      page number, starting from 0
+     * @return URLs on the page in rank order, an empty list if there are no more results or the search
+     *      failed
+     */
+    default ArrayList<String> searchPage(String query, int pageSize, int page) {
+        return (page == 0) ? search(query, pageSize) : new ArrayList<String>();
+    }
+
+}
@@ -0,0 +1,91 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * @author ArunIyengar
+ *
+ * Iterator over URLs produced by a search running in the background. URLs are queued as the search finds
+ * them, so the caller can process the first URLs while the search is still fetching later results pages.
+ * hasNext blocks until a URL is available or the search completes. An iterator should be used by one
+ * thread at a time.
+ *
+ */
+public class SearchResults implements Iterator<String>, Closeable {
+
+    private static final String END = new String("end of results");  // compared by identity
+
+    /**
+     * Search which passes each URL it finds to a consumer
+     */
+    interface Producer {
+        void produce(Consumer<String> consumer);
+    }
+
+    private final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<String>();
+    private final Future<?> search;
+    private String next;
+    private boolean ended;
+
+    SearchResults(final Producer producer, ExecutorService executor) {
+        search = executor.submit(() -> {
+            try {
+                producer.produce(queue::add);
+            } finally {
+                queue.add(END);
+            }
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (ended) {
+            return false;
+        }
+        String url;
+        try {
+            url = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (url == END) {
+            ended = true;
+            return false;
+        }
+        next = url;
+        return true;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String url = next;
+        next = null;
+        return url;
+    }
+
+    /**
+     * Stop the search if it is still running. URLs already found may still be returned.
+     */
+    @Override
+    public void close() {
+        search.cancel(true);
+        queue.add(END);  // in case the search was cancelled before it started
+    }
+
+}
@@ -0,0 +1,250 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author ArunIyengar
+ *
+ * Set of URLs which have already been processed, such as Web pages which have been analyzed, so that
+ * pages found again by later searches can be skipped. URLs are compared in the canonical form returned by
+ * UrlCanonicalizer, so variants of a URL which differ only in tracking parameters, case, or similar
+ * details count as the same URL.
+ *
+ * Each URL is stored in memory as a 64-bit fingerprint of its canonical form in an open-addressing hash
+ * table, so a million URLs take about 16 MB. A Bloom filter of about 10 bits per URL sits in front of the
+ * table: most lookups are for URLs which have not been seen, and the Bloom filter answers these without
+ * touching the larger table, while the table resolves the Bloom filter's false positives exactly. Two
+ * different URLs are only confused if their fingerprints collide, which for a million URLs has a
+ * probability of about 1 in 30 million.
+ *
+ * A set can be backed by a file to which each canonical URL is appended, and flushed, as it is added, so
+ * the set survives restarts and a crash loses at most the URL being added. The file is read when the set
+ * is created; an incomplete last line is removed.
+ *
+ */
+public class SeenUrlSet implements Closeable {
+
+    private static final int BITS_PER_URL = 10;
+    private static final int NUM_HASHES = 7;  // with 10 bits per URL, about 1% of lookups reach the table
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN_RATIO = 0x9e3779b97f4a7c15L;
+
+    private long[] bloomFilter;
+    private long numBloomBits;
+    private int bloomCapacity;
+    private long[] fingerprints;  // 0 marks an empty slot
+    private int size;
+    private final BufferedWriter writer;  // null if the set is only kept in memory
+
+    /**
+     * Constructor for a set which is only kept in memory
+     *
+     * @param expectedUrls
+     *      number of URLs the set is expected to hold; the set grows if more are added
+     */
+    public SeenUrlSet(int expectedUrls) {
+        allocate(expectedUrls);
+        writer = null;
+    }
+
+    /**
+     * Constructor for a set backed by a file. URLs in the file, if it exists, are added to the set, and
+     * URLs added later are appended to it.
+     *
+     * @param fileName
+     *      file storing the URLs in the set
+     * @param expectedUrls
+     *      number of URLs the set is expected to hold; the set grows if more are added
+     * @throws IOException
+     *      if the file could not be read or opened
+     */
+    public SeenUrlSet(String fileName, int expectedUrls) throws IOException {
+        Path file = Paths.get(fileName);
+        String[] urls = new String[0];
+        if (Files.exists(file)) {
+            byte[] bytes = Files.readAllBytes(file);
+            // the last line is incomplete unless the file ends with a newline
+            int complete = bytes.length;
+            while ((complete > 0) && (bytes[complete - 1] != '\n')) {
+                complete--;
+            }
+            if (complete < bytes.length) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(complete);
+                }
+            }
+            urls = new String(bytes, 0, complete, StandardCharsets.UTF_8).split("\n");
+        }
+        allocate(Math.max(expectedUrls, urls.length));
+        for (String url : urls) {
+            if (!url.isEmpty()) {
+                insert(fingerprint(UrlCanonicalizer.canonicalize(url)));
+            }
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Determine whether a URL, or a URL with the same canonical form, is in the set
+     *
+     * @param url
+     *      URL to look up
+     * @return true if the URL is in the set
+     */
+    public synchronized boolean contains(String url) {
+        long fingerprint = fingerprint(UrlCanonicalizer.canonicalize(url));
+        return mightContain(fingerprint) && (fingerprints[findSlot(fingerprint)] == fingerprint);
+    }
+
+    /**
+     * Add a URL to the set, appending it to the file backing the set if there is one
+     *
+     * @param url
+     *      URL to add
+     * @return true if the URL was added, false if it, or a URL with the same canonical form, was already
+     *      in the set
+     */
+    public synchronized boolean add(String url) {
+        String canonical = UrlCanonicalizer.canonicalize(url);
+        if (!insert(fingerprint(canonical))) {
+            return false;
+        }
+        if (writer != null) {
+            try {
+                writer.write(canonical);
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the number of URLs in the set
+     *
+     * @return number of URLs
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private void allocate(int expectedUrls) {
+        int capacity = Math.max(expectedUrls, 16);
+        fingerprints = new long[Integer.highestOneBit(capacity - 1) << 2];  // at most half full
+        resizeBloomFilter(capacity);
+    }
+
+    // Add a fingerprint, returning false if it was already present
+    private boolean insert(long fingerprint) {
+        int slot = findSlot(fingerprint);
+        if (fingerprints[slot] == fingerprint) {
+            return false;
+        }
+        fingerprints[slot] = fingerprint;
+        size++;
+        setBloomBits(fingerprint);
+        if (size * 2 > fingerprints.length) {
+            growTable();
+        }
+        if (size > bloomCapacity) {
+            resizeBloomFilter(bloomCapacity * 2);
+        }
+        return true;
+    }
+
+    // Slot holding a fingerprint, or the empty slot where it belongs (linear probing)
+    private int findSlot(long fingerprint) {
+        int mask = fingerprints.length - 1;
+        int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        while ((fingerprints[slot] != 0) && (fingerprints[slot] != fingerprint)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void growTable() {
+        long[] old = fingerprints;
+        fingerprints = new long[old.length * 2];
+        for (long fingerprint : old) {
+            if (fingerprint != 0) {
+                fingerprints[findSlot(fingerprint)] = fingerprint;
+            }
+        }
+    }
+
+    // The Bloom filter is rebuilt from the fingerprints, so it can grow with the set
+    private void resizeBloomFilter(int capacity) {
+        bloomCapacity = capacity;
+        numBloomBits = (long) capacity * BITS_PER_URL;
+        bloomFilter = new long[(int) ((numBloomBits + 63) / 64)];
+        for (long fingerprint : fingerprints) {
+            if (fingerprint != 0) {
+                setBloomBits(fingerprint);
+            }
+        }
+    }
+
+    // Bit positions are derived from the fingerprint by double hashing
+    private void setBloomBits(long fingerprint) {
+        long step = mix(fingerprint ^ GOLDEN_RATIO) | 1;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            long bit = Math.floorMod(fingerprint + i * step, numBloomBits);
+            bloomFilter[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(long fingerprint) {
+        long step = mix(fingerprint ^ GOLDEN_RATIO) | 1;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            long bit = Math.floorMod(fingerprint + i * step, numBloomBits);
+            if ((bloomFilter[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 64-bit FNV-1a hash of the characters, mixed so that all bits depend on all characters; never 0
+    static long fingerprint(String canonicalUrl) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < canonicalUrl.length(); i++) {
+            hash = (hash ^ canonicalUrl.charAt(i)) * FNV_PRIME;
+        }
+        hash = mix(hash);
+        return (hash == 0) ? 1 : hash;
+    }
+
+    // Finalizer from MurmurHash3
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb53fe1a85e63L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
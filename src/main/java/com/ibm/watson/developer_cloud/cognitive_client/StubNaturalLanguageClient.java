@@ -0,0 +1,432 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jsoup.Jsoup;
+
+import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
+import com.ibm.watson.developer_cloud.cognitive_client.Util.NaturalLanguageService;
+import com.ibm.watson.developer_cloud.service.exception.InternalServerErrorException;
+import com.ibm.watson.developer_cloud.service.exception.ServiceResponseException;
+import com.ibm.watson.developer_cloud.service.exception.TooManyRequestsException;
+
+/**
+ * @author ArunIyengar
+ *
+ * Natural language client which analyzes text locally, without a network connection or credentials, for
+ * testing and load testing code which uses natural language clients. Results are derived from the text
+ * itself, so analyzing the same text always gives the same results:
+ *
+ * <ul>
+ * <li>keywords are the most frequent words of at least three letters which are not common English words,
+ * with relevance proportional to their frequency;</li>
+ * <li>entities are capitalized words which do not start a sentence. Entities which occur more than once
+ * are disambiguated;</li>
+ * <li>concepts are derived from the most relevant keywords, and the single taxonomy from a hash of the
+ * text;</li>
+ * <li>sentiment scores are derived from a hash of each word.</li>
+ * </ul>
+ *
+ * HTML is converted to text before it is analyzed. URLs are not fetched; the URL itself is analyzed.
+ *
+ * The behavior of a remote service can be simulated. Each call takes a random time drawn from a log-normal
+ * distribution, fails with status 500 with a given probability, and is rejected with status 429 (too many
+ * requests) if too many calls are in progress or too many calls have been started in the current second.
+ * Random values are drawn from a generator with a fixed seed. Settings can be changed while the client is
+ * in use, and the client can be used by multiple threads at once.
+ *
+ */
+public class StubNaturalLanguageClient implements NaturalLanguageClient {
+
+    static final String CONCEPT_PREFIX = "http://dbpedia.org/resource/";
+    static final String TAXONOMY_PREFIX = "/stub/category";
+
+    private static final int DEFAULT_MAX_RESPONSES = 50;
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final int MAX_CONCEPTS = 3;
+    private static final int NUM_TAXONOMIES = 8;
+    private static final int SCHEDULER_THREADS = 2;
+    private static final Set<String> STOP_WORDS = new HashSet<String>(Arrays.asList(
+            "the", "and", "for", "are", "but", "not", "you", "all", "any", "can", "had", "her", "was", "one",
+            "our", "out", "has", "his", "how", "its", "who", "did", "get", "him", "may", "new", "now", "see",
+            "two", "way", "she", "use", "that", "with", "have", "this", "will", "your", "from", "they", "been",
+            "were", "said", "each", "which", "their", "there", "what", "when", "would", "about", "into",
+            "than", "them", "then", "these", "some", "other", "more", "also", "only", "such", "very"));
+
+    // Shared by all instances, so that stubs which are discarded, as load tests discard many, leave no
+    // threads behind
+    private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+    private final int maxResponses;
+    private final Random random;
+
+    private volatile double medianLatencyMillis = 0.0;
+    private volatile double latencySigma = 0.0;
+    private volatile double errorRate = 0.0;
+    private volatile int maxConcurrentCalls = Integer.MAX_VALUE;
+    private volatile int maxCallsPerSecond = Integer.MAX_VALUE;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private long windowStart;  // guarded by "this"
+    private int callsInWindow;  // guarded by "this"
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    /**
+     * Constructor for a client which responds immediately and never fails
+     */
+    public StubNaturalLanguageClient() {
+        this(DEFAULT_MAX_RESPONSES, 0);
+    }
+
+    /**
+     * Constructor for a client which responds immediately and never fails
+     *
+     * @param maxItems
+     *      maximum number of keywords and of each type of entity returned by each call
+     * @param seed
+     *      seed for the random values used to simulate latency, errors, and throttling
+     */
+    public StubNaturalLanguageClient(int maxItems, long seed) {
+        if (maxItems < 1) {
+            throw new IllegalArgumentException("maxItems must be positive");
+        }
+        maxResponses = maxItems;
+        random = new Random(seed);
+        windowStart = System.nanoTime();
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "StubNaturalLanguageClient");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Set the time taken by each call. Times are drawn from a log-normal distribution: the logarithm of the
+     * time is normally distributed with mean log(medianMillis) and standard deviation sigma. A sigma of 0
+     * makes every call take medianMillis; a sigma of 1 makes 1 call in 100 take about 10 times as long as
+     * the median.
+     *
+     * @param medianMillis
+     *      median time in milliseconds, 0 for calls which respond immediately
+     * @param sigma
+     *      standard deviation of the logarithm of the time
+     */
+    public void setLatency(double medianMillis, double sigma) {
+        if ((medianMillis < 0.0) || (sigma < 0.0)) {
+            throw new IllegalArgumentException("medianMillis and sigma must not be negative");
+        }
+        medianLatencyMillis = medianMillis;
+        latencySigma = sigma;
+    }
+
+    /**
+     * Set the fraction of calls which fail with status 500 (internal server error)
+     *
+     * @param rate
+     *      probability between 0 and 1 that a call fails
+     */
+    public void setErrorRate(double rate) {
+        if ((rate < 0.0) || (rate > 1.0)) {
+            throw new IllegalArgumentException("rate must be between 0 and 1");
+        }
+        errorRate = rate;
+    }
+
+    /**
+     * Set limits above which calls are rejected with status 429 (too many requests), as a service does
+     * when a client exceeds its quota
+     *
+     * @param maxConcurrent
+     *      maximum number of calls in progress at once
+     * @param maxPerSecond
+     *      maximum number of calls started in each second
+     */
+    public void setThrottling(int maxConcurrent, int maxPerSecond) {
+        if ((maxConcurrent < 1) || (maxPerSecond < 1)) {
+            throw new IllegalArgumentException("maxConcurrent and maxPerSecond must be positive");
+        }
+        maxConcurrentCalls = maxConcurrent;
+        maxCallsPerSecond = maxPerSecond;
+    }
+
+    /**
+     * Return identity of natural language service. The stub has its own identity so that its results are
+     * never cached, for example by CachingClient, under the same keys as those of a real service.
+     *
+     * @return NaturalLanguageService.STUB
+     */
+    @Override
+    public NaturalLanguageService serviceType() {
+        return NaturalLanguageService.STUB;
+    }
+
+    /**
+     * Return a string identifying the maximum number of items returned by each call
+     *
+     * @return string identifying the settings affecting results
+     */
+    @Override
+    public String cacheKeyParameters() {
+        return "maxResponses=" + maxResponses;
+    }
+
+    /**
+     * Analyze text locally after waiting for the simulated latency
+     *
+     * @param text
+     *      data itself, or URL
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @return analyzed and aggregated results, null if the call failed or was rejected
+     */
+    @Override
+    public AggregateData analyzeData(String text, DataType type, String description) {
+        ServiceResponseException rejection = startCall();
+        if (rejection != null) {
+            return null;
+        }
+        try {
+            long delayNanos = nextLatencyNanos();
+            if (delayNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            inFlight.decrementAndGet();
+            return null;
+        }
+        return finishCall(text, type, description, nextFailure());
+    }
+
+    /**
+     * Analyze text locally without blocking the calling thread. The returned future completes once the
+     * simulated latency has elapsed.
+     *
+     * @param text
+     *      data itself, or URL
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @return future which completes with the analyzed and aggregated results, or completes exceptionally
+     *      with a ServiceResponseException if the call failed or was rejected
+     */
+    @Override
+    public CompletableFuture<AggregateData> analyzeDataAsync(final String text, final DataType type,
+            final String description) {
+        final CompletableFuture<AggregateData> future = new CompletableFuture<AggregateData>();
+        ServiceResponseException rejection = startCall();
+        if (rejection != null) {
+            future.completeExceptionally(rejection);
+            return future;
+        }
+        final boolean fail = nextFailure();
+        long delayNanos = nextLatencyNanos();
+        if (delayNanos == 0) {
+            complete(future, text, type, description, fail);
+        }
+        else {
+            SCHEDULER.schedule(() -> complete(future, text, type, description, fail), delayNanos,
+                    TimeUnit.NANOSECONDS);
+        }
+        return future;
+    }
+
+    /**
+     * Return the number of calls made, including calls which failed or were rejected
+     *
+     * @return number of calls
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Return the number of calls which failed with status 500
+     *
+     * @return number of failed calls
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Return the number of calls which were rejected with status 429
+     *
+     * @return number of rejected calls
+     */
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    /**
+     * Analyze text locally. The same text always gives the same results.
+     *
+     * @param text
+     *      data itself, or URL
+     * @param type
+     *      indicates whether the first parameter should be treated as raw text, html, or a url
+     * @param description
+     *      user-provided description to be stored with the analyzed data
+     * @param maxItems
+     *      maximum number of keywords and of each type of entity
+     * @return analyzed and aggregated results
+     */
+    static AggregateData analyze(String text, DataType type, String description, int maxItems) {
+        String plainText = (type == DataType.HTML) ? Jsoup.parse(text).text() : text;
+        HashMap<String,Integer> wordCounts = new HashMap<String,Integer>();
+        HashMap<String,Integer> entityCounts = new HashMap<String,Integer>();
+        int numWords = 0;
+        for (String sentence : plainText.split("[.!?]+(\\s+|$)")) {
+            boolean sentenceStart = true;
+            for (String word : sentence.split("[^\\p{L}\\p{Nd}]+")) {
+                if (word.isEmpty()) {
+                    continue;
+                }
+                if (word.length() >= MIN_WORD_LENGTH) {
+                    numWords++;
+                    String lowerCase = word.toLowerCase();
+                    if (!STOP_WORDS.contains(lowerCase)) {
+                        wordCounts.merge(lowerCase, 1, Integer::sum);
+                        if (!sentenceStart && Character.isUpperCase(word.charAt(0))) {
+                            entityCounts.merge(word, 1, Integer::sum);
+                        }
+                    }
+                }
+                sentenceStart = false;
+            }
+        }
+
+        AggregateData data = new AggregateData(description);
+        List<Map.Entry<String,Integer>> keywords = mostFrequent(wordCounts, maxItems);
+        double maxCount = keywords.isEmpty() ? 1.0 : keywords.get(0).getValue();
+        for (Map.Entry<String,Integer> keyword : keywords) {
+            data.addData(keyword.getKey(), 1, keyword.getValue() / maxCount, sentiment(keyword.getKey()),
+                    AggregateData.Type.KEYWORD);
+        }
+        for (int i = 0; i < Math.min(MAX_CONCEPTS, keywords.size()); i++) {
+            String word = keywords.get(i).getKey();
+            data.addData(CONCEPT_PREFIX + Character.toUpperCase(word.charAt(0)) + word.substring(1), 1,
+                    keywords.get(i).getValue() / maxCount, 0.0, AggregateData.Type.CONCEPT);
+        }
+        List<Map.Entry<String,Integer>> entities = mostFrequent(entityCounts, maxItems);
+        double maxEntityCount = entities.isEmpty() ? 1.0 : entities.get(0).getValue();
+        for (Map.Entry<String,Integer> entity : entities) {
+            int count = entity.getValue();
+            AggregateData.Type entityType = (count > 1) ? AggregateData.Type.DISAMBIGUATEDENTITY
+                    : AggregateData.Type.ENTITYAMBIGUOUS;
+            data.addData(entity.getKey(), count, count / maxEntityCount, sentiment(entity.getKey()), entityType);
+        }
+        int category = Math.floorMod(plainText.hashCode(), NUM_TAXONOMIES);
+        data.addData(TAXONOMY_PREFIX + category, 1, 0.0, 0.5 + category / (2.0 * NUM_TAXONOMIES),
+                AggregateData.Type.TAXONOMY);
+        data.setAnalysisResults("{\"words\": " + numWords + ", \"keywords\": " + keywords.size()
+                + ", \"entities\": " + entityCounts.size() + "}");
+        return data;
+    }
+
+    // Entries with the highest counts, ties broken alphabetically so that results do not depend on hashing
+    private static List<Map.Entry<String,Integer>> mostFrequent(HashMap<String,Integer> counts, int maxItems) {
+        ArrayList<Map.Entry<String,Integer>> entries = new ArrayList<Map.Entry<String,Integer>>(counts.entrySet());
+        Collections.sort(entries, (e1, e2) -> {
+            int result = Integer.compare(e2.getValue(), e1.getValue());
+            return (result != 0) ? result : e1.getKey().compareTo(e2.getKey());
+        });
+        return entries.subList(0, Math.min(maxItems, entries.size()));
+    }
+
+    // Sentiment score between -1 and 1 derived from a word
+    private static double sentiment(String word) {
+        return (Math.floorMod(word.toLowerCase().hashCode(), 201) - 100) / 100.0;
+    }
+
+    // Count a call and return the exception rejecting it, or null if it is accepted
+    private ServiceResponseException startCall() {
+        calls.incrementAndGet();
+        if ((inFlight.incrementAndGet() > maxConcurrentCalls) || !admit(System.nanoTime())) {
+            inFlight.decrementAndGet();
+            throttled.incrementAndGet();
+            return new TooManyRequestsException("too many requests to stub service", null);
+        }
+        return null;
+    }
+
+    private synchronized boolean admit(long now) {
+        if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+            windowStart = now;
+            callsInWindow = 0;
+        }
+        if (callsInWindow >= maxCallsPerSecond) {
+            return false;
+        }
+        callsInWindow++;
+        return true;
+    }
+
+    private long nextLatencyNanos() {
+        double median = medianLatencyMillis;
+        if (median == 0.0) {
+            return 0;
+        }
+        double millis = median * Math.exp(latencySigma * random.nextGaussian());
+        return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private boolean nextFailure() {
+        double rate = errorRate;
+        return (rate > 0.0) && (random.nextDouble() < rate);
+    }
+
+    // Analyze the text for a call which has finished waiting, null if it failed
+    private AggregateData finishCall(String text, DataType type, String description, boolean fail) {
+        inFlight.decrementAndGet();
+        if (fail) {
+            failures.incrementAndGet();
+            return null;
+        }
+        return analyze(text, type, description, maxResponses);
+    }
+
+    private void complete(CompletableFuture<AggregateData> future, String text, DataType type,
+            String description, boolean fail) {
+        try {
+            AggregateData data = finishCall(text, type, description, fail);
+            if (data == null) {
+                future.completeExceptionally(new InternalServerErrorException("stub service error", null));
+            }
+            else {
+                future.complete(data);
+            }
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+}
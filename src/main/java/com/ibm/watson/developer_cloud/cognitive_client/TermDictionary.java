@@ -0,0 +1,206 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author ArunIyengar
+ *
+ * Maps strings such as keywords, entities, and concepts to integer term IDs. A dictionary can be shared
+ * by many AggregateData objects and used by multiple threads at once. Each distinct string is then stored
+ * only once, and data for two AggregateData objects using the same dictionary can be combined by comparing
+ * term IDs instead of hashing and comparing strings. Term IDs are assigned consecutively starting at 1;
+ * term ID 0 represents null. Strings are never removed from a dictionary.
+ *
+ * The dictionary maintains a checksum of its first n strings for every n. Data files storing term IDs
+ * record the number of strings in the dictionary they were written with and this checksum, so that they
+ * are only read using a dictionary which assigns the same term IDs to the same strings.
+ *
+ */
+public class TermDictionary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final byte[] MAGIC = {'C', 'C', 'T', 'D'};
+    static final int VERSION = 1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NULL_ID = 0;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ConcurrentHashMap<String,Integer> ids = new ConcurrentHashMap<String,Integer>();
+    private volatile String[] terms = new String[INITIAL_CAPACITY];
+    private long[] checksums = new long[INITIAL_CAPACITY];  // checksum of terms 1 to i; guarded by "this"
+    private int size = 1;  // number of term IDs assigned, including the one for null; guarded by "this"
+
+    /**
+     * Return the term ID for a string, assigning a new term ID if the string is not yet in the dictionary
+     *
+     * @param term
+     *      string, may be null
+     * @return term ID
+     */
+    public int getId(String term) {
+        if (term == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(term);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(term);
+            if (id != null) {
+                return id;
+            }
+            if (size == terms.length) {
+                terms = Arrays.copyOf(terms, 2 * size);
+                checksums = Arrays.copyOf(checksums, 2 * size);
+            }
+            terms[size] = term;
+            checksums[size] = extendChecksum(checksums[size - 1], term);
+            ids.put(term, size);  // publishes terms[size] to threads which look up the term ID
+            return size++;
+        }
+    }
+
+    /**
+     * Return the term ID for a string without adding it to the dictionary
+     *
+     * @param term
+     *      string, may be null
+     * @return term ID, -1 if the string is not in the dictionary
+     */
+    public int findId(String term) {
+        if (term == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(term);
+        return (id == null) ? -1 : id;
+    }
+
+    /**
+     * Return the string corresponding to a term ID
+     *
+     * @param id
+     *      term ID previously returned by this dictionary
+     * @return string corresponding to the term ID
+     */
+    public String getTerm(int id) {
+        return terms[id];
+    }
+
+    /**
+     * Return the single instance of a string stored in the dictionary, adding the string if necessary
+     *
+     * @param term
+     *      string, may be null
+     * @return instance of the string stored in the dictionary
+     */
+    public String intern(String term) {
+        return terms[getId(term)];
+    }
+
+    /**
+     * Return number of strings in the dictionary
+     *
+     * @return number of strings in the dictionary
+     */
+    public synchronized int size() {
+        return size - 1;
+    }
+
+    /**
+     * Return a checksum identifying the first strings in the dictionary and their term IDs. Two
+     * dictionaries return the same checksum for a number of strings if, with high probability, they
+     * assign the same term IDs to those strings.
+     *
+     * @param numTerms
+     *      number of strings, no greater than size()
+     * @return checksum
+     */
+    synchronized long checksum(int numTerms) {
+        return checksums[numTerms];
+    }
+
+    // 64-bit FNV-1a hash of the previous checksum, the length of the term, and its characters
+    private static long extendChecksum(long checksum, String term) {
+        long hash = FNV_OFFSET;
+        hash = (hash ^ checksum) * FNV_PRIME;
+        hash = (hash ^ term.length()) * FNV_PRIME;
+        for (int i = 0; i < term.length(); i++) {
+            hash = (hash ^ term.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Write this to a file. Data files written using this dictionary can only be read using a dictionary
+     * read from this file.
+     *
+     * @param filename
+     *      file name
+     */
+    public void writeToFile(String filename) {
+        String[] snapshot;
+        int numTerms;
+        synchronized (this) {
+            snapshot = terms;
+            numTerms = size;
+        }
+        try (OutputStream outputStream = Files.newOutputStream(Paths.get(filename))) {
+            CompactSerializer.Output out = new CompactSerializer.Output(outputStream);
+            out.writeBytes(MAGIC, MAGIC.length);
+            out.writeByte(VERSION);
+            out.writeVarInt(numTerms - 1);
+            for (int i = 1; i < numTerms; i++) {
+                out.writeString(snapshot[i]);
+            }
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Read a dictionary from a file
+     *
+     * @param filename
+     *      file name
+     * @return dictionary read from file, null if the file could not be read
+     */
+    public static TermDictionary readFromFile(String filename) {
+        try (InputStream inputStream = Files.newInputStream(Paths.get(filename))) {
+            CompactSerializer.Input in = new CompactSerializer.Input(inputStream);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (in.readByte() != MAGIC[i]) {
+                    throw new IOException(filename + " is not a term dictionary");
+                }
+            }
+            int version = in.readByte() & 0xff;
+            if (version != VERSION) {
+                throw new IOException("unsupported term dictionary version " + version);
+            }
+            int numTerms = in.readVarInt();
+            TermDictionary dictionary = new TermDictionary();
+            for (int i = 0; i < numTerms; i++) {
+                dictionary.getId(in.readString());
+            }
+            return dictionary;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * @author ArunIyengar
+ *
+ * OkHttp network interceptor counting the bytes in request and response bodies as they are sent and
+ * received, so compressed responses are counted at their compressed size. Headers are not counted.
+ *
+ */
+class TrafficCounter implements Interceptor {
+
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        RequestBody requestBody = chain.request().body();
+        if (requestBody != null) {
+            long length = requestBody.contentLength();
+            if (length > 0) {
+                bytesSent.add(length);
+            }
+        }
+        Response response = chain.proceed(chain.request());
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        return response.newBuilder().body(new CountingBody(body)).build();
+    }
+
+    /**
+     * Return the number of bytes sent in request bodies
+     *
+     * @return bytes sent
+     */
+    long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * Return the number of bytes received in response bodies
+     *
+     * @return bytes received
+     */
+    long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    private class CountingBody extends ResponseBody {
+        private final ResponseBody body;
+        private final BufferedSource source;
+
+        CountingBody(ResponseBody responseBody) {
+            body = responseBody;
+            source = Okio.buffer(new ForwardingSource(responseBody.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long numRead = super.read(sink, byteCount);
+                    if (numRead > 0) {
+                        bytesReceived.add(numRead);
+                    }
+                    return numRead;
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+
+}
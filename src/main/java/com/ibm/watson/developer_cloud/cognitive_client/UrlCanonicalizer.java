@@ -0,0 +1,174 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+
+/**
+ * @author ArunIyengar
+ *
+ * Reduces URLs which refer to the same page to the same string, so that results from different search
+ * engines, and pages reached through links with tracking parameters, are only processed once. The scheme
+ * and host are lower-cased, a leading "www." is removed from the host, default ports and fragments are
+ * removed, "." and ".." path segments are resolved, a trailing "/" is removed from the path, escaped
+ * letters, digits and "-._~" are unescaped, other escapes are upper-cased, tracking parameters such as
+ * utm_source and gclid are removed, and the remaining query parameters are sorted. The canonical form is
+ * meant for comparing URLs; fetching it may not return the same page.
+ *
+ */
+public class UrlCanonicalizer {
+
+    private static final String TRACKING_PREFIX = "utm_";
+    private static final HashSet<String> TRACKING_PARAMETERS = new HashSet<String>(Arrays.asList(
+            "gclid", "dclid", "fbclid", "msclkid", "yclid", "igshid", "mc_cid", "mc_eid", "_ga", "_hsenc",
+            "_hsmi", "ocid", "cmpid"));
+    private static final String WWW = "www.";
+
+    private UrlCanonicalizer() {
+    }
+
+    /**
+     * Return the canonical form of a URL
+     *
+     * @param url
+     *      URL to canonicalize
+     * @return canonical form of the URL, or the URL with surrounding white space removed if it cannot be
+     *      parsed
+     */
+    public static String canonicalize(String url) {
+        String trimmed = url.trim();
+        URI uri;
+        try {
+            uri = new URI(trimmed).normalize();
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+        if ((uri.getScheme() == null) || (uri.getRawAuthority() == null)) {
+            return trimmed;
+        }
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder canonical = new StringBuilder(trimmed.length());
+        canonical.append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            canonical.append(uri.getRawUserInfo()).append('@');
+        }
+        String host = uri.getHost();
+        if (host == null) {
+            canonical.append(uri.getRawAuthority());
+        }
+        else {
+            host = host.toLowerCase(Locale.ROOT);
+            if (host.endsWith(".")) {
+                host = host.substring(0, host.length() - 1);
+            }
+            if (host.startsWith(WWW) && (host.indexOf('.', WWW.length()) > 0)) {
+                host = host.substring(WWW.length());
+            }
+            canonical.append(host);
+            int port = uri.getPort();
+            if ((port != -1) && (port != defaultPort(scheme))) {
+                canonical.append(':').append(port);
+            }
+        }
+        String path = normalizeEscapes(uri.getRawPath());
+        if (path.isEmpty()) {
+            path = "/";
+        }
+        else if ((path.length() > 1) && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        canonical.append(path);
+        String query = canonicalQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            canonical.append('?').append(query);
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * Determine whether a query parameter only tracks how a page was reached
+     *
+     * @param name
+     *      name of the query parameter
+     * @return true if the parameter is removed from canonical URLs
+     */
+    public static boolean isTrackingParameter(String name) {
+        String lowerCase = name.toLowerCase(Locale.ROOT);
+        return lowerCase.startsWith(TRACKING_PREFIX) || TRACKING_PARAMETERS.contains(lowerCase);
+    }
+
+    // Remove empty and tracking parameters and sort the rest
+    private static String canonicalQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        ArrayList<String> parameters = new ArrayList<String>();
+        for (String parameter : query.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equals = parameter.indexOf('=');
+            String name = (equals < 0) ? parameter : parameter.substring(0, equals);
+            if (!isTrackingParameter(normalizeEscapes(name))) {
+                parameters.add(normalizeEscapes(parameter));
+            }
+        }
+        Collections.sort(parameters);
+        return String.join("&", parameters);
+    }
+
+    // Unescape characters which never need escaping and upper-case the hexadecimal digits of other escapes
+    private static String normalizeEscapes(String value) {
+        if ((value == null) || (value.indexOf('%') < 0)) {
+            return (value == null) ? "" : value;
+        }
+        StringBuilder normalized = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            if ((c == '%') && (i + 2 < value.length()) && isHex(value.charAt(i + 1)) && isHex(value.charAt(i + 2))) {
+                char decoded = (char) Integer.parseInt(value.substring(i + 1, i + 3), 16);
+                if (isUnreserved(decoded)) {
+                    normalized.append(decoded);
+                }
+                else {
+                    normalized.append('%').append(value.substring(i + 1, i + 3).toUpperCase(Locale.ROOT));
+                }
+                i += 3;
+            }
+            else {
+                normalized.append(c);
+                i++;
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isHex(char c) {
+        return (c < 128) && (Character.digit(c, 16) >= 0);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9'))
+                || (c == '-') || (c == '.') || (c == '_') || (c == '~');
+    }
+
+    private static int defaultPort(String scheme) {
+        switch (scheme) {
+        case "http":
+            return 80;
+        case "https":
+            return 443;
+        default:
+            return -1;
+        }
+    }
+
+}
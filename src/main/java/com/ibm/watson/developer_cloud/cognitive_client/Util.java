@@ -3,21 +3,31 @@
  */
 package com.ibm.watson.developer_cloud.cognitive_client;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.PrintWriter;
-import java.net.URL;
-import java.net.URLConnection;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 import com.ibm.watson.developer_cloud.cognitive_client.Search.SearchType;
 
@@ -36,39 +46,134 @@ public class Util {
     
     public enum NaturalLanguageService {
         ALCHEMY,
-        NATURAL_LANGUAGE_UNDERSTANDING
+        NATURAL_LANGUAGE_UNDERSTANDING,
+        STUB  // local results from StubNaturalLanguageClient, which must not be mistaken for a real service's
     }
 
     public static final String DEFAULT_ENCODING = "UTF-8";
     
-    private static final int STRING_SIZE_INITIAL = 10000;
+    private static final int CHUNK_READ_BUFFER_SIZE = 65536;
     
     /**
-     * Return a string from a text file
+     * Return a string from a text file using the platform's default character set. The file is read
+     * into a buffer of the file's size and decoded in a single step; line separators are returned as they
+     * appear in the file.
      * 
      * @param filename
      *            string denoting full path to file
-     * @return text from file
+     * @return text from file, or an empty string if the file could not be read
      * 
      * */
     public static String fileToString(String filename) {
-        StringBuilder sb = new StringBuilder(STRING_SIZE_INITIAL);
+        return fileToString(filename, Charset.defaultCharset());
+    }
+    
+    /**
+     * Return a string from a text file. The file is read into a buffer of the file's size and decoded in
+     * a single step; line separators are returned as they appear in the file. Files which are too large
+     * to be held in a single string can be read using fileToChunks.
+     * 
+     * @param filename
+     *            string denoting full path to file
+     * @param charset
+     *            character set used to decode the file
+     * @return text from file, or an empty string if the file could not be read
+     * 
+     * */
+    public static String fileToString(String filename, Charset charset) {
         try {
-            try (
-                    FileInputStream fis = new FileInputStream(filename);
-                    BufferedReader br = new BufferedReader(new InputStreamReader(fis));
-            ) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    sb.append(line);
-                    sb.append(System.lineSeparator());
+            return new String(Files.readAllBytes(Paths.get(filename)), charset);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return "";
+        }
+    }
+    
+    /**
+     * Read a text file in chunks, passing each chunk to a consumer as it is read, so that files of any
+     * size can be processed using a fixed amount of memory. Each chunk except the last contains at most
+     * chunkSize characters. A chunk ends after the last line separator in the second half of those
+     * characters, or failing that after the last whitespace character, so that lines and words are only
+     * split between chunks if they are very long.
+     * 
+     * @param filename
+     *            string denoting full path to file
+     * @param charset
+     *            character set used to decode the file
+     * @param chunkSize
+     *            maximum number of characters in a chunk
+     * @param consumer
+     *            receives each chunk in order
+     * @return number of chunks read, or -1 if the file could not be read
+     * 
+     * */
+    public static int fileToChunks(String filename, Charset charset, int chunkSize, Consumer<String> consumer) {
+        if (chunkSize < 2) {
+            throw new IllegalArgumentException("chunkSize must be at least 2");
+        }
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(CHUNK_READ_BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(chunkSize);
+        int numChunks = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = (channel.read(bytes) < 0);
+                bytes.flip();
+                CoderResult result = decoder.decode(bytes, chars, endOfInput);
+                while (result.isOverflow()) {
+                    numChunks += emitChunk(chars, consumer);
+                    result = decoder.decode(bytes, chars, endOfInput);
                 }
+                bytes.compact();
+            }
+            while (decoder.flush(chars).isOverflow()) {
+                numChunks += emitChunk(chars, consumer);
+            }
+            chars.flip();
+            if (chars.hasRemaining()) {
+                consumer.accept(chars.toString());
+                numChunks++;
             }
+            return numChunks;
         }
-        catch (Exception e) {
-            e.printStackTrace();           
+        catch (IOException e) {
+            e.printStackTrace();
+            return -1;
         }
-        return sb.toString();
+    }
+    
+    // Pass the characters in a full buffer up to a line or word boundary to the consumer and keep the rest
+    // in the buffer
+    private static int emitChunk(CharBuffer chars, Consumer<String> consumer) {
+        chars.flip();
+        int end = chars.limit();
+        int boundary = lastBoundary(chars, end, end / 2, true);
+        if (boundary < 0) {
+            boundary = lastBoundary(chars, end, 1, false);
+        }
+        if (boundary < 0) {
+            boundary = Character.isHighSurrogate(chars.get(end - 1)) ? end - 1 : end;
+        }
+        consumer.accept(chars.subSequence(0, boundary).toString());
+        chars.position(boundary);
+        chars.compact();
+        return 1;
+    }
+    
+    // Return the position after the last line separator, or whitespace character, at or after "start"
+    // and before "end", or -1 if there is none
+    private static int lastBoundary(CharBuffer chars, int end, int start, boolean lineSeparator) {
+        for (int i = end - 1; i >= start; i--) {
+            char c = chars.get(i);
+            if (lineSeparator ? (c == '\n') : Character.isWhitespace(c)) {
+                return i + 1;
+            }
+        }
+        return -1;
     }
     
     /**
@@ -84,34 +189,32 @@ public class Util {
     }
     
     /**
-     * Fetch a Web page, return it as a string
+     * Fetch a Web page, return it as a string. The page is fetched by the shared WebFetcher, using its
+     * pooled connections and default timeouts.
      * 
      * @param urlString
      *            URL for the Web page
-     * @return string containing the Web page
+     * @return string containing the Web page, or an empty string if the page could not be fetched
      * 
      * */
     public static String urlToString(String urlString) {
-        StringBuilder sb = new StringBuilder(STRING_SIZE_INITIAL);
-        try {
-            URL url = new URL(urlString);
-            URLConnection conn = url.openConnection();
-            try (
-                    BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-            ) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    sb.append(line);
-                    sb.append(System.lineSeparator());
-                }
-            }
-        }
-        catch (Exception e) {
-            e.printStackTrace();           
-        }
-
-        return sb.toString();
-        
+        return WebFetcher.getDefault().fetch(urlString);
+    }
+    
+    /**
+     * Fetch a Web page, return it as a string. The page is fetched by the shared WebFetcher, using its
+     * pooled connections.
+     * 
+     * @param urlString
+     *            URL for the Web page
+     * @param timeoutMillis
+     *            timeout in milliseconds for connecting to the server and for each read from the
+     *            connection, 0 for no timeout
+     * @return string containing the Web page, or an empty string if the page could not be fetched
+     * 
+     * */
+    public static String urlToString(String urlString, int timeoutMillis) {
+        return WebFetcher.getDefault().fetch(urlString, timeoutMillis);
     }
     
     /**
@@ -178,17 +281,25 @@ public class Util {
     }
     
     private static void storeWebPage(String urlString, String directory, String fileSuffix) {
+        String fileName = webPageFileName(urlString, directory, fileSuffix);
+        if (fileName != null) {
+            stringToFile(urlToString(urlString), fileName);
+        }
+    }
+    
+    // Return the name of the file storing a Web page, null if the url cannot be encoded
+    private static String webPageFileName(String urlString, String directory, String fileSuffix) {
         String fileName = null;
         try {
             fileName = URLEncoder.encode(urlString, DEFAULT_ENCODING) + fileSuffix;
         } catch (IOException e) {
             e.printStackTrace();
-            return;
+            return null;
         }       
         if (directory != null) {
             fileName = directory + File.separator + fileName;
         }
-        stringToFile(urlToString(urlString), fileName);
+        return fileName;
     }
     
     /**
@@ -211,7 +322,8 @@ public class Util {
     /**
      * Perform a Google search on a query, store each returned Web document in a separate file in a
      * directory. Each file name is the urlencoded version of the url appended with the fileSuffix
-     * parameter
+     * parameter. The documents are fetched in parallel by the shared WebFetcher, and each is stored as soon
+     * as it has been fetched. Documents which cannot be fetched are not stored.
      * 
      * @param query
      *            query to pass to search engine
@@ -228,11 +340,62 @@ public class Util {
      * */
     public static void searchWeb(String query, int numResults, SearchType searchType, String directory,
             String fileSuffix) {
+        searchWeb(query, numResults, searchType, directory, fileSuffix, null);
+    }
+    
+    /**
+     * Perform a Google search on a query, store each returned Web document in a separate file in a
+     * directory. Each file name is the urlencoded version of the url appended with the fileSuffix
+     * parameter. The documents are fetched in parallel by the shared WebFetcher, and each is stored as soon
+     * as it has been fetched. Documents which cannot be fetched are not stored. Documents with the same
+     * canonical URL as an earlier result, or stored by an earlier search, are skipped.
+     * 
+     * @param query
+     *            query to pass to search engine
+     * @param numResults
+     *            number of documents to search for
+     * @param searchType
+     *            Type of search
+     * @param directory
+     *            directory for storing the file. If the directory does not exist, an attempt is made to
+     *            create it
+     * @param fileSuffix
+     *            suffix for files storing Web pages, eg ".html"
+     * @param seenUrls
+     *            URLs of documents stored earlier, which are not fetched again; documents stored are added
+     *            to it. If null, only duplicates within the search results are skipped.
+     * 
+     * */
+    public static void searchWeb(String query, int numResults, SearchType searchType, String directory,
+            String fileSuffix, final SeenUrlSet seenUrls) {
         ArrayList<String> urls = null;
         urls = Search.search(query, numResults, searchType, false);
         createDirectory(directory);
-        for (String url : urls) {
-            storeWebPage(url, directory, fileSuffix);            
+        HashSet<String> found = new HashSet<String>();
+        ArrayList<CompletableFuture<Void>> stored = new ArrayList<CompletableFuture<Void>>(urls.size());
+        for (final String url : urls) {
+            if (!found.add(UrlCanonicalizer.canonicalize(url)) || ((seenUrls != null) && seenUrls.contains(url))) {
+                continue;
+            }
+            final String fileName = webPageFileName(url, directory, fileSuffix);
+            if (fileName != null) {
+                stored.add(WebFetcher.getDefault().fetchAsync(url).thenAccept(page -> {
+                    stringToFile(page, fileName);
+                    if (seenUrls != null) {
+                        seenUrls.add(url);
+                    }
+                }));
+            }
+        }
+        for (CompletableFuture<Void> future : stored) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
         }
     }
     
@@ -306,6 +469,39 @@ public class Util {
         }
     }
 
+    // Return the SHA-256 hash of a byte array as a hexadecimal string
+    static String sha256(byte[] data) {
+        return toHex(newSha256().digest(data));
+    }
+
+    // Return the SHA-256 hash of the rest of a stream as a hexadecimal string, reading it in pieces
+    static String sha256(InputStream in) throws IOException {
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[CHUNK_READ_BUFFER_SIZE];
+        int numRead;
+        while ((numRead = in.read(buffer)) > 0) {
+            digest.update(buffer, 0, numRead);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);  // every Java platform is required to support SHA-256
+        }
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder sb = new StringBuilder(2 * hash.length);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
     // Get input string from the user
     static String readInputString(String prompt, Scanner input) { 
         System.out.print(prompt);
@@ -0,0 +1,269 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * @author ArunIyengar
+ *
+ * Fetches Web pages over pooled keep-alive connections. Any number of pages can be requested at once;
+ * at most maxRequests are fetched at the same time, and at most maxRequestsPerHost from any one host, so
+ * fetching many pages takes about as long as fetching the slowest of them without overloading a single
+ * server. Responses compressed with gzip are decompressed, and pages are decoded using the character set
+ * in the Content-Type header, or UTF-8 if there is none. A fetcher can be used by multiple threads at
+ * once.
+ *
+ */
+public class WebFetcher implements Closeable {
+
+    public static final int DEFAULT_MAX_REQUESTS = 64;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+    public static final int DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    private static final int MAX_IDLE_CONNECTIONS = 16;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final long IDLE_THREAD_SECONDS = 60;
+    private static final String USER_AGENT = "Mozilla/5.0";  // some sites reject requests without one
+
+    private final TrafficCounter traffic = new TrafficCounter();
+    private final OkHttpClient client;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<Integer,OkHttpClient> clientsByTimeout =
+            new ConcurrentHashMap<Integer,OkHttpClient>();
+
+    private static class DefaultFetcher {
+        private static final WebFetcher INSTANCE = new WebFetcher();
+    }
+
+    /**
+     * Constructor using default limits and timeouts
+     */
+    public WebFetcher() {
+        this(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxRequests
+     *      maximum number of pages fetched at the same time
+     * @param maxRequestsPerHost
+     *      maximum number of pages fetched from the same host at the same time
+     * @param timeoutMillis
+     *      timeout in milliseconds for connecting to a server and for each read from a connection, 0 for
+     *      no timeout
+     */
+    public WebFetcher(int maxRequests, int maxRequestsPerHost, int timeoutMillis) {
+        if ((maxRequests < 1) || (maxRequestsPerHost < 1) || (timeoutMillis < 0)) {
+            throw new IllegalArgumentException("maxRequests and maxRequestsPerHost must be positive, "
+                    + "timeoutMillis must not be negative");
+        }
+        executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), runnable -> {
+                    Thread thread = new Thread(runnable, "WebFetcher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Dispatcher dispatcher = new Dispatcher(executor);
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        client = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .connectTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .readTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .writeTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .addNetworkInterceptor(traffic)
+            .build();
+        clientsByTimeout.put(timeoutMillis, client);
+    }
+
+    /**
+     * Return a fetcher shared by the methods of this library which fetch Web pages. It uses the default
+     * limits and timeouts and should not be closed.
+     *
+     * @return shared fetcher
+     */
+    public static WebFetcher getDefault() {
+        return DefaultFetcher.INSTANCE;
+    }
+
+    /**
+     * Fetch a Web page without blocking the calling thread
+     *
+     * @param url
+     *      URL for the Web page
+     * @return future which completes with the Web page, or completes exceptionally if the page could not
+     *      be fetched or the server did not return a successful response
+     */
+    public CompletableFuture<String> fetchAsync(String url) {
+        return fetchAsync(client, url);
+    }
+
+    /**
+     * Fetch a Web page without blocking the calling thread, using a different timeout. Connections and
+     * limits on the number of pages fetched at the same time are shared with other calls.
+     *
+     * @param url
+     *      URL for the Web page
+     * @param timeoutMillis
+     *      timeout in milliseconds for connecting to the server and for each read from the connection, 0
+     *      for no timeout
+     * @return future which completes with the Web page, or completes exceptionally if the page could not
+     *      be fetched or the server did not return a successful response
+     */
+    public CompletableFuture<String> fetchAsync(String url, int timeoutMillis) {
+        return fetchAsync(clientWithTimeout(timeoutMillis), url);
+    }
+
+    /**
+     * Fetch a Web page
+     *
+     * @param url
+     *      URL for the Web page
+     * @return the Web page, or an empty string if the page could not be fetched
+     */
+    public String fetch(String url) {
+        return waitForPage(fetchAsync(url));
+    }
+
+    /**
+     * Fetch a Web page using a different timeout
+     *
+     * @param url
+     *      URL for the Web page
+     * @param timeoutMillis
+     *      timeout in milliseconds for connecting to the server and for each read from the connection, 0
+     *      for no timeout
+     * @return the Web page, or an empty string if the page could not be fetched
+     */
+    public String fetch(String url, int timeoutMillis) {
+        return waitForPage(fetchAsync(url, timeoutMillis));
+    }
+
+    /**
+     * Fetch several Web pages in parallel, subject to the limits of this fetcher
+     *
+     * @param urls
+     *      URLs for the Web pages
+     * @return list containing the Web page for each URL in the same order as the URLs, with an empty
+     *      string for each page which could not be fetched
+     */
+    public ArrayList<String> fetchAll(List<String> urls) {
+        ArrayList<CompletableFuture<String>> futures = new ArrayList<CompletableFuture<String>>(urls.size());
+        for (String url : urls) {
+            futures.add(fetchAsync(url));
+        }
+        ArrayList<String> pages = new ArrayList<String>(urls.size());
+        for (CompletableFuture<String> future : futures) {
+            pages.add(waitForPage(future));
+        }
+        return pages;
+    }
+
+    /**
+     * Return the number of bytes received in response bodies, before they were decompressed
+     *
+     * @return bytes received
+     */
+    public long getBytesReceived() {
+        return traffic.getBytesReceived();
+    }
+
+    /**
+     * Cancel fetches in progress and release connections and threads
+     */
+    @Override
+    public void close() {
+        client.dispatcher().cancelAll();
+        client.connectionPool().evictAll();
+        executor.shutdown();
+    }
+
+    // Clients with different timeouts share the dispatcher and connection pool
+    private OkHttpClient clientWithTimeout(int timeoutMillis) {
+        OkHttpClient timeoutClient = clientsByTimeout.get(timeoutMillis);
+        if (timeoutClient == null) {
+            timeoutClient = clientsByTimeout.computeIfAbsent(timeoutMillis, timeout -> client.newBuilder()
+                .connectTimeout(timeout, TimeUnit.MILLISECONDS)
+                .readTimeout(timeout, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeout, TimeUnit.MILLISECONDS)
+                .build());
+        }
+        return timeoutClient;
+    }
+
+    private static CompletableFuture<String> fetchAsync(OkHttpClient httpClient, final String url) {
+        final CompletableFuture<String> future = new CompletableFuture<String>();
+        Request request;
+        try {
+            request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", USER_AGENT)
+                .build();
+        } catch (IllegalArgumentException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        final Call call = httpClient.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call failedCall, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call completedCall, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful()) {
+                        throw new IOException("HTTP status " + response.code() + " fetching " + url);
+                    }
+                    future.complete(body.string());
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        future.whenComplete((page, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    private static String waitForPage(CompletableFuture<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return "";
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            return "";
+        }
+    }
+
+}
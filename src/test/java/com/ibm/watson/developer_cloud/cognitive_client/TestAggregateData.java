@@ -0,0 +1,137 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.cognitive_client.AggregateData.Data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ArunIyengar
+ *
+ */
+public class TestAggregateData {
+
+    private static final int NUM_KEYS = 5000;
+
+    private static void addTestData(AggregateData data, int offset) {
+        for (int i = 0; i < NUM_KEYS; i++) {
+            data.addData("keyword" + ((i + offset) % (NUM_KEYS / 2)), 1 + (i % 3), 0.25 * (i % 8), 0.5 * (i % 5),
+                    AggregateData.Type.KEYWORD);
+        }
+        data.addData("IBM", 3, 0.75, 0.125, AggregateData.Type.DISAMBIGUATEDENTITY);
+        data.addData(null, 1, 0.5, 0.0, AggregateData.Type.CONCEPT);
+        data.addData("/technology", 1, 0.0, 0.875, AggregateData.Type.TAXONOMY);
+    }
+
+    private static void assertSameData(AggregateData expected, AggregateData actual) {
+        for (AggregateData.Type type : AggregateData.Type.values()) {
+            TestDataManager.assertSameCounts(expected.selectHashMap(type), actual.selectHashMap(type));
+        }
+    }
+
+    @Test
+    public void testCompactStorage() {
+        AggregateData hashed = new AggregateData("hashed");
+        AggregateData compact = new AggregateData("compact", true);
+        assertFalse(hashed.isCompactStorage());
+        assertTrue(compact.isCompactStorage());
+        addTestData(hashed, 0);
+        addTestData(compact, 0);
+        assertEquals(NUM_KEYS / 2, compact.getKeywords().size());
+        assertSameData(hashed, compact);
+
+        // combine in every combination of storage types
+        AggregateData hashed2 = new AggregateData("hashed2");
+        AggregateData compact2 = new AggregateData("compact2", true);
+        addTestData(hashed2, 7);
+        addTestData(compact2, 7);
+        AggregateData expected = hashed.copy();
+        expected.combineData(hashed2.copy(), false);
+        AggregateData actual = compact.copy();
+        actual.combineData(compact2, false);
+        assertSameData(expected, actual);
+        actual = compact.copy();
+        actual.combineData(hashed2.copy(), false);
+        assertSameData(expected, actual);
+        actual = hashed.copy();
+        actual.combineData(compact2, false);
+        assertSameData(expected, actual);
+
+        // copies are independent of the original, and the maps returned by getters cannot be modified
+        AggregateData copy = compact.copy();
+        copy.addData("IBM", 1, 1.0, 1.0, AggregateData.Type.DISAMBIGUATEDENTITY);
+        try {
+            compact.getDisambiguatedEntities().clear();
+            fail("map returned with compact storage was modified");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(3, compact.getDisambiguatedEntities().get("IBM").getCount());
+        assertEquals(4, copy.getDisambiguatedEntities().get("IBM").getCount());
+
+        // data can be read without copying, and views reflect later changes
+        Map<String,Data> view = compact.getFeatures(AggregateData.Type.DISAMBIGUATEDENTITY);
+        assertEquals(3, compact.getData("IBM", AggregateData.Type.DISAMBIGUATEDENTITY).getCount());
+        assertNull(compact.getData("missing", AggregateData.Type.DISAMBIGUATEDENTITY));
+        compact.addData("Watson", 1, 1.0, 1.0, AggregateData.Type.DISAMBIGUATEDENTITY);
+        assertEquals(1, view.get("Watson").getCount());
+        assertEquals(compact.numEntries(AggregateData.Type.DISAMBIGUATEDENTITY), view.size());
+        assertEquals(compact.getDisambiguatedEntities().keySet(), view.keySet());
+        assertEquals(hashed.getKeywords().keySet(), hashed.getFeatures(AggregateData.Type.KEYWORD).keySet());
+
+        AggregateData restored = CompactSerializer.deserializeFromByteArray(
+                CompactSerializer.serializeToByteArray(compact));
+        assertSameData(compact, restored);
+        AggregateData restoredCompact = Serializer.deserializeFromByteArray(Serializer.serializeToByteArray(compact));
+        assertTrue(restoredCompact.isCompactStorage());
+        assertSameData(compact, restoredCompact);
+    }
+
+    @Test
+    public void testTopK() {
+        AggregateData hashed = new AggregateData("hashed");
+        AggregateData compact = new AggregateData("compact", true);
+        addTestData(hashed, 0);
+        addTestData(compact, 0);
+        for (AggregateData.DataType parameter : AggregateData.DataType.values()) {
+            ArrayList<Entry<String,Data>> sorted = hashed.getSortedValues(AggregateData.Type.KEYWORD, parameter);
+            for (AggregateData data : new AggregateData[] {hashed, compact}) {
+                for (int k : new int[] {0, 1, 20, 100, NUM_KEYS}) {
+                    ArrayList<Entry<String,Data>> top = data.topK(AggregateData.Type.KEYWORD, parameter, k);
+                    assertEquals(Math.min(k, sorted.size()), top.size());
+                    for (int i = 0; i < top.size(); i++) {
+                        assertEquals(value(sorted.get(i), parameter), value(top.get(i), parameter), 0.0);
+                        Data expected = hashed.getKeywords().get(top.get(i).getKey());
+                        assertEquals(expected.getCount(), top.get(i).getValue().getCount());
+                    }
+                }
+            }
+        }
+        assertEquals("IBM", compact.topK(AggregateData.Type.DISAMBIGUATEDENTITY, AggregateData.DataType.COUNT, 5)
+                .get(0).getKey());
+    }
+
+    private static double value(Entry<String,Data> entry, AggregateData.DataType parameter) {
+        switch (parameter) {
+            case COUNT:
+                return entry.getValue().getCount();
+            case RELEVANCE:
+                return entry.getValue().getRelevance();
+            default:
+                return entry.getValue().getScore();
+        }
+    }
+
+}
@@ -5,11 +5,19 @@ package com.ibm.watson.developer_cloud.cognitive_client;
 
 import java.util.Scanner;
 
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.alchemy.v1.model.CombinedResults;
 import com.ibm.watson.developer_cloud.cognitive_client.AlchemyClient;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author ArunIyengar
  * This class tests the Alchemy client. In order to run it, invoke the main method.
+ * Tests of parsing results which do not use the service are run by JUnit.
  */
 public class TestAlchemyClient {
 
@@ -26,4 +34,58 @@ public class TestAlchemyClient {
         testAlchemyClient();
     }
 
+    private static final String COMBINED_RESULTS = "{\"status\": \"OK\","
+            + "\"keywords\": [{\"text\": \"cloud services\", \"relevance\": \"0.9\","
+            + "  \"sentiment\": {\"type\": \"positive\", \"score\": \"0.5\"}},"
+            + "  {\"text\": \"IBM\", \"relevance\": \"0.7\", \"sentiment\": {\"type\": \"neutral\"}}],"
+            + "\"concepts\": [{\"text\": \"Cloud computing\", \"relevance\": \"0.8\"}],"
+            + "\"taxonomy\": [{\"label\": \"/technology\", \"score\": \"0.75\"}],"
+            + "\"entities\": [{\"type\": \"Company\", \"text\": \"IBM\", \"relevance\": \"0.6\", \"count\": \"3\","
+            + "  \"sentiment\": {\"type\": \"positive\", \"score\": \"0.25\"}, \"disambiguated\": {\"name\": \"IBM\"}},"
+            + "  {\"type\": \"Person\", \"text\": \"Ginni\", \"relevance\": \"0.4\", \"count\": \"1\"}]"
+            + "}";
+
+    @Test
+    public void testTypedResults() {
+        CombinedResults results = GsonSingleton.getGson().fromJson(COMBINED_RESULTS, CombinedResults.class);
+        AggregateData fromString = AlchemyClient.analyzeData(results.toString(), "string");
+        AggregateData typed = AlchemyClient.analyzeData(results, "typed");
+        for (AggregateData.Type type : AggregateData.Type.values()) {
+            TestDataManager.assertSameCounts(fromString.selectHashMap(type), typed.selectHashMap(type));
+        }
+        assertEquals(3, typed.getDisambiguatedEntities().get("IBM").getCount());
+        assertEquals(0.5, typed.getKeywords().get("cloud services").getScore(), 0.0);
+        assertEquals(1, typed.getEntitiesAmbiguous().get("Ginni").getCount());
+
+        // the results are converted to a string when needed
+        assertEquals(fromString.getAnalysisResults(), typed.getAnalysisResults());
+        AggregateData copy = AlchemyClient.analyzeData(results, "typed").copy();
+        copy.addRawData();
+        assertEquals(fromString.getAnalysisResults(), copy.getRawData().get(0));
+        AggregateData restored = Serializer.deserializeFromByteArray(
+                Serializer.serializeToByteArray(AlchemyClient.analyzeData(results, "typed")));
+        assertEquals(fromString.getAnalysisResults(), restored.getAnalysisResults());
+    }
+
+    @Test
+    public void testMissingNumericFields() {
+        String json = "{\"status\": \"OK\","
+                + "\"keywords\": [{\"text\": \"cloud services\", \"relevance\": \"0.9\"}, {\"text\": \"IBM\"}],"
+                + "\"concepts\": [{\"text\": \"Cloud computing\"}],"
+                + "\"taxonomy\": [{\"label\": \"/technology\"}],"
+                + "\"entities\": [{\"type\": \"Company\", \"text\": \"IBM\", \"count\": \"3\"},"
+                + "  {\"type\": \"Person\", \"text\": \"Ginni\", \"relevance\": \"0.4\"},"
+                + "  {\"type\": \"Person\", \"text\": \"Watson\", \"relevance\": \"0.5\", \"count\": \"2\"}]"
+                + "}";
+        CombinedResults results = GsonSingleton.getGson().fromJson(json, CombinedResults.class);
+        AggregateData data = AlchemyClient.analyzeData(results, "missing");
+        assertEquals(1, data.getKeywords().size());
+        assertEquals(0.9, data.getKeywords().get("cloud services").getRelevance(), 0.0);
+        assertTrue(data.getConcepts().isEmpty());
+        assertTrue(data.getTaxonomies().isEmpty());
+        assertTrue(data.getDisambiguatedEntities().isEmpty());
+        assertEquals(1, data.getEntitiesAmbiguous().size());
+        assertEquals(2, data.getEntitiesAmbiguous().get("Watson").getCount());
+    }
+
 }
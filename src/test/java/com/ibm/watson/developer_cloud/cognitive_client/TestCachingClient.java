@@ -0,0 +1,87 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.ibm.watson.developer_cloud.cognitive_client.TestDataManager.WordClient;
+import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
+
+/**
+ * @author ArunIyengar
+ *
+ */
+public class TestCachingClient {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMemoryCache() throws Exception {
+        WordClient wordClient = new WordClient();
+        CachingClient client = new CachingClient(wordClient, 2);
+        AggregateData ad1 = client.analyzeData("alpha beta", DataType.TEXT, "first");
+        AggregateData ad2 = client.analyzeData("alpha beta", DataType.TEXT, "second");
+        assertEquals(1, wordClient.calls.get());
+        assertEquals(1, client.getMemoryHits());
+        assertEquals(1, client.getMisses());
+        assertEquals("second", ad2.getDescription());
+        assertEquals("alpha beta", ad2.getAnalysisResults());
+
+        // results returned from the cache must not be affected by changes made by the caller
+        ad2.combineData(ad1, false);
+        AggregateData ad3 = client.analyzeDataAsync("alpha beta", DataType.TEXT, "third").get();
+        assertEquals(1, ad3.getKeywords().get("alpha").getCount());
+
+        // the same data treated differently is a different entry
+        client.analyzeData("alpha beta", DataType.HTML, "html");
+        client.analyzeData("gamma", DataType.TEXT, "gamma");
+        assertEquals(3, wordClient.calls.get());
+        assertEquals(2, client.size());
+        client.analyzeData("alpha beta", DataType.TEXT, "evicted");
+        assertEquals(4, wordClient.calls.get());
+    }
+
+    @Test
+    public void testCacheKeyParameters() {
+        // settings of a client wrapped in other clients are part of the key
+        NaturalLanguageUnderstandingClient nlu = new NaturalLanguageUnderstandingClient("user", "password", 5);
+        CachingClient client = new CachingClient(new InstrumentedClient(new RateLimitedClient(nlu, 10.0, 1),
+                MetricsRegistry.NONE, "nlu"), 10);
+        String key = client.cacheKey("alpha beta", DataType.TEXT);
+        nlu.setMaxResponses(10);
+        assertNotEquals(key, client.cacheKey("alpha beta", DataType.TEXT));
+        nlu.setMaxResponses(5);
+        assertEquals(key, client.cacheKey("alpha beta", DataType.TEXT));
+        nlu.setFeatureSelection(FeatureSelection.of(5, false, FeatureSelection.Feature.KEYWORDS));
+        assertNotEquals(key, client.cacheKey("alpha beta", DataType.TEXT));
+        assertNotEquals(new CachingClient(new StubNaturalLanguageClient(5, 0), 10).cacheKey("alpha", DataType.TEXT),
+                new CachingClient(new StubNaturalLanguageClient(6, 0), 10).cacheKey("alpha", DataType.TEXT));
+    }
+
+    @Test
+    public void testDiskCache() throws IOException {
+        String directory = folder.newFolder("cache").toString();
+        WordClient wordClient = new WordClient();
+        new CachingClient(wordClient, 10, directory).analyzeData("alpha beta", DataType.TEXT, "first");
+        CachingClient client = new CachingClient(wordClient, 10, directory);
+        AggregateData ad = client.analyzeData("alpha beta", DataType.TEXT, "second");
+        assertEquals(1, wordClient.calls.get());
+        assertEquals(1, client.getDiskHits());
+        assertNotNull(ad.getKeywords().get("beta"));
+        assertEquals("alpha beta", ad.getAnalysisResults());
+        assertEquals(0, ad.getRawData().size());
+        client.analyzeData("alpha beta", DataType.TEXT, "third");
+        assertEquals(1, client.getMemoryHits());
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ArunIyengar
+ *
+ */
+public class TestCompactSerializer {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static AggregateData createData(int numKeys) {
+        AggregateData data = new AggregateData("test data \u00e9\u4e2d");
+        for (int i = 0; i < numKeys; i++) {
+            data.addData("keyword" + i, i, 0.25 * i, -0.5, AggregateData.Type.KEYWORD);
+            data.addData("concept" + (i % 10), 1, 0.5, 0.0, AggregateData.Type.CONCEPT);
+        }
+        data.addData("IBM", 3, 0.75, 0.125, AggregateData.Type.DISAMBIGUATEDENTITY);
+        data.addData("IBM", 2, 0.5, 0.25, AggregateData.Type.ENTITYAMBIGUOUS);
+        data.addData("/technology", 1, 0.0, 0.875, AggregateData.Type.TAXONOMY);
+        data.addData(null, 1, 0.0, 0.0, AggregateData.Type.CONCEPT);
+        data.addData("negative", -7, 1.0, 1.0, AggregateData.Type.KEYWORD);
+        data.addDocument("document text");
+        data.setAnalysisResults(null);
+        data.addRawData();
+        data.setAnalysisResults("{\"keywords\": []}");
+        data.addRawData();
+        return data;
+    }
+
+    static void assertSameData(AggregateData expected, AggregateData actual) {
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getDocuments(), actual.getDocuments());
+        assertEquals(expected.getRawData(), actual.getRawData());
+        for (AggregateData.Type type : AggregateData.Type.values()) {
+            TestDataManager.assertSameCounts(expected.selectHashMap(type), actual.selectHashMap(type));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        AggregateData data = createData(1000);
+        byte[] bytes = CompactSerializer.serializeToByteArray(data);
+        assertTrue(CompactSerializer.isCompactFormat(bytes));
+        assertSameData(data, CompactSerializer.deserializeFromByteArray(bytes));
+        byte[] javaBytes = Serializer.serializeToByteArray(data);
+        assertTrue(bytes.length < javaBytes.length);
+        assertNull(CompactSerializer.deserializeFromByteArray(javaBytes));
+
+        // typical data from a single document
+        data = createData(30);
+        bytes = CompactSerializer.serializeToByteArray(data);
+        assertSameData(data, CompactSerializer.deserializeFromByteArray(bytes));
+        assertTrue(bytes.length < Serializer.serializeToByteArray(data).length / 2);
+    }
+
+    @Test
+    public void testMigration() throws IOException {
+        File directory = folder.newFolder("data");
+        AggregateData data = createData(100);
+        String legacyFile = new File(directory, "legacy.ana").toString();
+        Util.byteArrayToFile(Serializer.serializeToByteArray(data), legacyFile);
+        data.writeToFile(new File(directory, "current.ana").toString());
+        assertSameData(data, AggregateData.readFromFile(legacyFile));
+        assertEquals(1, DataManager.migrateDirectory(directory.toString()));
+        assertTrue(CompactSerializer.isCompactFormat(Util.fileToByteArray(legacyFile)));
+        assertSameData(data, AggregateData.readFromFile(legacyFile));
+        assertEquals(0, DataManager.migrateDirectory(directory.toString()));
+    }
+
+    @Test
+    public void testTruncatedFile() throws IOException {
+        File directory = folder.newFolder("truncated");
+        AggregateData data = createData(100);
+        data.writeToFile(new File(directory, "complete.ana").toString());
+        byte[] bytes = CompactSerializer.serializeToByteArray(createData(200));
+        byte[] truncated = new byte[bytes.length - 100];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        String truncatedFile = new File(directory, "truncated.ana").toString();
+        Util.byteArrayToFile(truncated, truncatedFile);
+
+        // nothing from a file which cannot be read completely is added
+        AggregateData combined = new AggregateData("combined");
+        assertFalse(combined.combineFromFile(truncatedFile, true));
+        for (AggregateData.Type type : AggregateData.Type.values()) {
+            assertEquals(0, combined.numEntries(type));
+        }
+        assertEquals(0, combined.getDocuments().size());
+        AggregateData summary = DataManager.aggregateDirectoryStats(directory.toString(), "summary", false);
+        for (AggregateData.Type type : AggregateData.Type.values()) {
+            TestDataManager.assertSameCounts(data.selectHashMap(type), summary.selectHashMap(type));
+        }
+    }
+
+}
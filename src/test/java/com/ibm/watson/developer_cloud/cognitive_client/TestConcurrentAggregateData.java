@@ -0,0 +1,97 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ArunIyengar
+ *
+ */
+public class TestConcurrentAggregateData {
+
+    private static final int NUM_THREADS = 8;
+    private static final int UPDATES_PER_THREAD = 20000;
+    private static final int NUM_KEYS = 100;
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        final ConcurrentAggregateData data = new ConcurrentAggregateData("concurrent");
+        final AtomicBoolean done = new AtomicBoolean();
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < NUM_THREADS; t++) {
+            threads.add(new Thread() {
+                public void run() {
+                    for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                        // each update adds one to the count of a keyword and of the total
+                        AggregateData update = new AggregateData("update");
+                        update.addData("keyword" + (i % NUM_KEYS), 1, 0.5, 1.0, AggregateData.Type.KEYWORD);
+                        update.addData(null, 1, 0.5, 1.0, AggregateData.Type.KEYWORD);
+                        data.combineData(update, false);
+                    }
+                }
+            });
+        }
+
+        // snapshots taken during ingestion are consistent: the null key's count equals the sum of the others
+        Thread reader = new Thread() {
+            public void run() {
+                while (!done.get()) {
+                    AggregateData snapshot = data.snapshot();
+                    int sum = 0;
+                    int nullCount = 0;
+                    for (Map.Entry<String,AggregateData.Data> entry : snapshot.getKeywords().entrySet()) {
+                        if (entry.getKey() == null) {
+                            nullCount = entry.getValue().getCount();
+                        }
+                        else {
+                            sum += entry.getValue().getCount();
+                        }
+                    }
+                    if (sum != nullCount) {
+                        throw new AssertionError("inconsistent snapshot: " + sum + " != " + nullCount);
+                    }
+                }
+            }
+        };
+        final ArrayList<Throwable> failures = new ArrayList<Throwable>();
+        reader.setUncaughtExceptionHandler((thread, e) -> failures.add(e));
+        reader.start();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        done.set(true);
+        reader.join();
+        assertTrue(failures.toString(), failures.isEmpty());
+
+        AggregateData snapshot = data.snapshot(true);
+        assertEquals(NUM_KEYS + 1, snapshot.numEntries(AggregateData.Type.KEYWORD));
+        assertEquals(NUM_KEYS + 1, data.numEntries(AggregateData.Type.KEYWORD));
+        AggregateData.Data total = snapshot.getKeywords().get(null);
+        assertEquals(NUM_THREADS * UPDATES_PER_THREAD, total.getCount());
+        assertEquals(0.5 * NUM_THREADS * UPDATES_PER_THREAD, total.getRelevance(), 0.0);
+        assertEquals(1.0, total.getScore(), 0.0);
+        assertEquals(NUM_THREADS * UPDATES_PER_THREAD / NUM_KEYS, snapshot.getKeywords().get("keyword7").getCount());
+    }
+
+    @Test
+    public void testCombineData() {
+        AggregateData expected = TestCompactSerializer.createData(50);
+        ConcurrentAggregateData data = new ConcurrentAggregateData(expected.getDescription());
+        data.combineData(expected, true);
+        TestCompactSerializer.assertSameData(expected, data.snapshot());
+        TestCompactSerializer.assertSameData(expected, data.snapshot(true));
+    }
+
+}
@@ -0,0 +1,316 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.ibm.watson.developer_cloud.cognitive_client.AggregateData.Data;
+import com.ibm.watson.developer_cloud.cognitive_client.Search.SearchType;
+import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
+import com.ibm.watson.developer_cloud.cognitive_client.Util.NaturalLanguageService;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @author ArunIyengar
+ *
+ * These tests use a local client in place of a natural language service, so they do not require
+ * credentials or network access.
+ */
+public class TestDataManager {
+
+    private static final int NUM_FILES = 40;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Treats each word of the text as a keyword
+     */
+    static class WordClient implements NaturalLanguageClient {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public AggregateData analyzeData(String text, DataType type, String description) {
+            calls.incrementAndGet();
+            AggregateData data = new AggregateData(description);
+            for (String word : text.trim().split("\\s+")) {
+                data.addData(word, 1, 0.5, 0.25, AggregateData.Type.KEYWORD);
+            }
+            data.setAnalysisResults(text.trim());
+            return data;
+        }
+
+        @Override
+        public CompletableFuture<AggregateData> analyzeDataAsync(String text, DataType type, String description) {
+            return CompletableFuture.completedFuture(analyzeData(text, type, description));
+        }
+
+        @Override
+        public NaturalLanguageService serviceType() {
+            return NaturalLanguageService.NATURAL_LANGUAGE_UNDERSTANDING;
+        }
+    }
+
+    private File createInputDirectory() throws IOException {
+        File inputDir = folder.newFolder("input");
+        for (int i = 0; i < NUM_FILES; i++) {
+            Util.stringToFile("alpha beta word" + (i % 7) + " gamma" + i, new File(inputDir, "doc" + i).toString());
+        }
+        return inputDir;
+    }
+
+    static void assertSameCounts(HashMap<String,Data> expected, HashMap<String,Data> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (String key : expected.keySet()) {
+            Data data1 = expected.get(key);
+            Data data2 = actual.get(key);
+            assertEquals(key, data1.getCount(), data2.getCount());
+            assertEquals(key, data1.getRelevance(), data2.getRelevance(), 0.0);
+            assertEquals(key, data1.getScore(), data2.getScore(), 0.0);
+        }
+    }
+
+    @Test
+    public void testParallelAnalyzeDirectory() throws IOException {
+        File inputDir = createInputDirectory();
+        String outputDir = new File(folder.getRoot(), "output").toString();
+        WordClient client = new WordClient();
+        AggregateData sequential = DataManager.analyzeDirectory(inputDir.toString(), "sequential", true, false,
+                null, DataType.TEXT, client);
+        AggregateData parallel = DataManager.analyzeDirectory(inputDir.toString(), "parallel", true, true,
+                outputDir, DataType.TEXT, client, 8, 3);
+        assertEquals(2 * NUM_FILES, client.calls.get());
+        assertEquals(NUM_FILES, parallel.getKeywords().get("alpha").getCount());
+        assertSameCounts(sequential.getKeywords(), parallel.getKeywords());
+        assertEquals(NUM_FILES, parallel.getDocuments().size());
+        assertEquals(NUM_FILES, parallel.getRawData().size());
+        assertEquals(NUM_FILES, new File(outputDir).listFiles().length);
+        assertTrue(new File(outputDir, "doc0.ana").exists());
+    }
+
+    @Test
+    public void testResumableAnalyzeDirectory() throws IOException {
+        File inputDir = createInputDirectory();
+        File outputDir = new File(folder.getRoot(), "output");
+        WordClient client = new WordClient();
+        AggregateData expected = DataManager.analyzeDirectory(inputDir.toString(), "expected", true, false,
+                null, DataType.TEXT, client);
+
+        // simulate a run which stopped after analyzing half of the files while writing a manifest line
+        assertTrue(outputDir.mkdir());
+        try (AnalysisCheckpoint checkpoint = new AnalysisCheckpoint(outputDir.toString(), false)) {
+            for (int i = 0; i < NUM_FILES / 2; i++) {
+                File file = new File(inputDir, "doc" + i);
+                String entry = checkpoint.entryFor(file, true);
+                String text = Util.fileToString(file.toString());
+                AggregateData data = client.analyzeData(text, DataType.TEXT, "stored");
+                data.addDocument(text);
+                data.addRawData();
+                data.writeToFile(new File(outputDir, "doc" + i + ".ana").toString());
+                checkpoint.record(entry);
+            }
+        }
+        Files.write(new File(outputDir, AnalysisCheckpoint.MANIFEST_NAME).toPath(),
+                "12\t345".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        client.calls.set(0);
+        AggregateData partial = DataManager.analyzeDirectoryResumable(inputDir.toString(), "resumed", true,
+                outputDir.toString(), DataType.TEXT, client, 4, 2, false);
+        assertEquals(NUM_FILES / 2, client.calls.get());
+        assertSameCounts(expected.getKeywords(), partial.getKeywords());
+        assertEquals(NUM_FILES, partial.getDocuments().size());
+
+        // nothing has changed, so no files are analyzed again
+        client.calls.set(0);
+        AggregateData resumed = DataManager.analyzeDirectoryResumable(inputDir.toString(), "resumed", true,
+                outputDir.toString(), DataType.TEXT, client, 4, 2, false);
+        assertEquals(0, client.calls.get());
+        assertSameCounts(expected.getKeywords(), resumed.getKeywords());
+        assertEquals(NUM_FILES, resumed.getDocuments().size());
+        assertEquals(NUM_FILES, resumed.getRawData().size());
+
+        // only changed files are analyzed again
+        File changed = new File(inputDir, "doc3");
+        Util.stringToFile("delta", changed.toString());
+        assertTrue(changed.setLastModified(changed.lastModified() + 2000));
+        client.calls.set(0);
+        AggregateData updated = DataManager.analyzeDirectoryResumable(inputDir.toString(), "updated", false,
+                outputDir.toString(), DataType.TEXT, client, 4, 2, false);
+        assertEquals(1, client.calls.get());
+        assertEquals(1, updated.getKeywords().get("delta").getCount());
+        assertEquals(NUM_FILES - 1, updated.getKeywords().get("alpha").getCount());
+
+        // a missing result file is recreated
+        assertTrue(new File(outputDir, "doc5.ana").delete());
+        client.calls.set(0);
+        DataManager.analyzeDirectoryResumable(inputDir.toString(), "updated", false, outputDir.toString(),
+                DataType.TEXT, client, 4, 2, false);
+        assertEquals(1, client.calls.get());
+
+        // the manifest is rewritten with one line per file after each run
+        assertEquals(NUM_FILES, Files.readAllLines(new File(outputDir, AnalysisCheckpoint.MANIFEST_NAME).toPath(),
+                StandardCharsets.UTF_8).size());
+
+        // the manifest is not read as a data file
+        AggregateData stored = DataManager.aggregateDirectoryStats(outputDir.toString(), "stored", false);
+        assertSameCounts(updated.getKeywords(), stored.getKeywords());
+    }
+
+    @Test
+    public void testContentHashCheckpoint() throws IOException {
+        File inputDir = createInputDirectory();
+        String outputDir = new File(folder.getRoot(), "output").toString();
+        WordClient client = new WordClient();
+        DataManager.analyzeDirectoryResumable(inputDir.toString(), "hashed", false, outputDir, DataType.TEXT,
+                client, 2, 2, true);
+        assertEquals(NUM_FILES, client.calls.get());
+
+        // files whose modification time changed but whose contents did not are not analyzed again
+        for (File file : inputDir.listFiles()) {
+            assertTrue(file.setLastModified(file.lastModified() + 2000));
+        }
+        client.calls.set(0);
+        AggregateData data = DataManager.analyzeDirectoryResumable(inputDir.toString(), "hashed", false,
+                outputDir, DataType.TEXT, client, 2, 2, true);
+        assertEquals(0, client.calls.get());
+        assertEquals(NUM_FILES, data.getKeywords().get("alpha").getCount());
+
+        // results stored without raw data are not used when raw data is needed
+        DataManager.analyzeDirectoryResumable(inputDir.toString(), "hashed", true, outputDir, DataType.TEXT,
+                client, 2, 2, true);
+        assertEquals(NUM_FILES, client.calls.get());
+        try (AnalysisCheckpoint checkpoint = new AnalysisCheckpoint(outputDir, true)) {
+            assertEquals(NUM_FILES, checkpoint.size());
+            assertTrue(checkpoint.isCurrent(new File(inputDir, "doc0"), true));
+            assertFalse(checkpoint.isCurrent(new File(inputDir, "missing"), false));
+        }
+    }
+
+    @Test
+    public void testAggregateDirectoryStats() throws IOException {
+        File directory = folder.newFolder("data");
+        AggregateData expected = new AggregateData("expected");
+        for (int i = 0; i < 20; i++) {
+            AggregateData data = TestCompactSerializer.createData(10 + i);
+            String filename = new File(directory, "file" + i + ".ana").toString();
+            if (i == 0) {
+                Util.byteArrayToFile(Serializer.serializeToByteArray(data), filename);
+            }
+            else {
+                data.writeToFile(filename);
+            }
+            expected.combineData(AggregateData.readFromFile(filename), true);
+        }
+        assertTrue(new File(directory, "subdirectory").mkdir());
+        AggregateData summary = DataManager.aggregateDirectoryStats(directory.toString(), "summary", false);
+        assertEquals(0, summary.getDocuments().size());
+        AggregateData all = DataManager.aggregateDirectoryStats(directory.toString(), "all", true);
+        assertEquals(20, all.getDocuments().size());
+        assertEquals(40, all.getRawData().size());
+        AggregateData parallel = DataManager.aggregateDirectoryStats(directory.toString(), "parallel", true, 4);
+        assertEquals("parallel", parallel.getDescription());
+        assertEquals(all.getDocuments(), parallel.getDocuments());
+        assertEquals(all.getRawData(), parallel.getRawData());
+        for (AggregateData.Type type : AggregateData.Type.values()) {
+            assertSameCounts(expected.selectHashMap(type), summary.selectHashMap(type));
+            assertSameCounts(expected.selectHashMap(type), all.selectHashMap(type));
+            assertSameCounts(all.selectHashMap(type), parallel.selectHashMap(type));
+        }
+    }
+
+    @Test
+    public void testDefaultAnalyzeDataAsync() throws Exception {
+        // clients written before analyzeDataAsync was added only implement analyzeData
+        NaturalLanguageClient client = new NaturalLanguageClient() {
+            @Override
+            public AggregateData analyzeData(String text, DataType type, String description) {
+                return text.isEmpty() ? null : new WordClient().analyzeData(text, type, description);
+            }
+
+            @Override
+            public NaturalLanguageService serviceType() {
+                return NaturalLanguageService.NATURAL_LANGUAGE_UNDERSTANDING;
+            }
+        };
+        AggregateData data = client.analyzeDataAsync("alpha beta", DataType.TEXT, "async").get();
+        assertEquals(1, data.getKeywords().get("alpha").getCount());
+        try {
+            client.analyzeDataAsync("", DataType.TEXT, "async").get();
+            fail("failed analysis did not complete exceptionally");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testPipelinedAnalysisTimeout() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "alpha beta".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        final ArrayList<String> urls = new ArrayList<String>();
+        for (int i = 0; i < 4; i++) {
+            urls.add("http://127.0.0.1:" + server.getAddress().getPort() + "/page" + i);
+        }
+        urls.add(urls.get(0) + "#duplicate");
+        Search.setCache(new SearchCache(10, 60000, null, (query, numResults, searchType) -> urls));
+        WordClient client = new WordClient() {
+            @Override
+            public AggregateData analyzeData(String text, DataType type, String description) {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                return super.analyzeData(text, type, description);
+            }
+        };
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        DataManager.setMetricsRegistry(registry);
+        try {
+            // with one analysis thread, the last page waits about 900 ms to be analyzed, which is longer
+            // than the timeout, but each analysis takes less than the timeout
+            AggregateData data = DataManager.analyzeWebSearchResults("pages", 5, SearchType.GOOGLE_REGULAR,
+                    "pages", false, false, null, client, 4, 1, 600);
+            assertEquals(4, client.calls.get());
+            assertEquals(4, data.getKeywords().get("alpha").getCount());
+            assertEquals(5, registry.getCount("DataManager.urls"));
+            assertEquals(1, registry.getCount("DataManager.duplicates"));
+            assertEquals(4, registry.getCount("DataManager.results"));
+            assertEquals(0, registry.getCount("DataManager.fetchTimeouts"));
+            assertEquals(0, registry.getCount("DataManager.analysisTimeouts"));
+        } finally {
+            DataManager.setMetricsRegistry(MetricsRegistry.NONE);
+            Search.setCache(null);
+            server.stop(0);
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ArunIyengar
+ *
+ */
+public class TestMetrics {
+
+    private static final String TEXT = "IBM Watson analyzes text for banks. Banks use IBM Watson daily.";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHistogram() {
+        // every value falls within the bounds of its bucket
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 33, 1000, 1023, 1024, 123456789L, 1L << 40,
+            (1L << 40) - 1, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.lowerBound(index) <= value);
+            if (value < Long.MAX_VALUE) {
+                assertTrue(value < LatencyHistogram.lowerBound(index + 1));
+            }
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50.0));
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(10000), histogram.getMax());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(5000) + 500, histogram.getMean(), 1.0);
+        assertClose(TimeUnit.MICROSECONDS.toNanos(5000), histogram.getPercentile(50.0));
+        assertClose(TimeUnit.MICROSECONDS.toNanos(9900), histogram.getPercentile(99.0));
+        assertClose(TimeUnit.MICROSECONDS.toNanos(9990), histogram.getPercentile(99.9));
+        assertEquals(histogram.getMax(), histogram.getPercentile(100.0));
+        histogram.record(-5);
+        assertEquals(0, histogram.getPercentile(0.0));
+    }
+
+    private static void assertClose(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected * 0.04);
+    }
+
+    @Test
+    public void testRegistryAndMBean() throws JMException {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        registry.counter("calls").increment();
+        registry.counter("calls").add(2);
+        registry.gauge("queue", () -> 7);
+        registry.timer("latency").record(TimeUnit.MILLISECONDS.toNanos(4));
+        assertEquals(3, registry.getCount("calls"));
+        assertEquals(0, registry.getCount("missing"));
+        assertEquals(7, registry.getGauge("queue"));
+        assertEquals(1, registry.getTimer("latency").getCount());
+        assertNull(registry.getTimer("missing"));
+        assertTrue(registry.toString().contains("calls: 3"));
+
+        ObjectName name = registry.registerMBean("com.ibm.watson.developer_cloud.cognitive_client:type=TestMetrics");
+        assertNotNull(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(3L, server.getAttribute(name, "calls"));
+            assertEquals(7L, server.getAttribute(name, "queue"));
+            assertEquals(1L, server.getAttribute(name, "latency.count"));
+            assertEquals(4.0, (Double) server.getAttribute(name, "latency.p99"), 0.2);
+            // metrics created after the MBean was registered are published
+            registry.counter("later").increment();
+            assertEquals(1L, server.getAttribute(name, "later"));
+            assertEquals(3 + 6, server.getMBeanInfo(name).getAttributes().length);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void testInstrumentedClient() throws InterruptedException {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        StubNaturalLanguageClient stub = new StubNaturalLanguageClient();
+        InstrumentedClient client = new InstrumentedClient(stub, registry, "stub");
+        assertNotNull(client.analyzeData(TEXT, DataType.TEXT, "metrics"));
+        assertEquals(1, registry.getCount("stub.success"));
+        assertEquals(1, registry.getTimer("stub.latency").getCount());
+
+        stub.setErrorRate(1.0);
+        assertNull(client.analyzeData(TEXT, DataType.TEXT, "metrics"));
+        assertFails(client.analyzeDataAsync(TEXT, DataType.TEXT, "metrics"));
+        assertEquals(2, registry.getCount("stub.failure"));
+
+        // all but about one call in each second are throttled
+        stub.setErrorRate(0.0);
+        stub.setThrottling(100, 1);
+        List<CompletableFuture<AggregateData>> futures = new ArrayList<CompletableFuture<AggregateData>>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(client.analyzeDataAsync(TEXT, DataType.TEXT, "metrics"));
+        }
+        for (CompletableFuture<AggregateData> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                // throttled
+            }
+        }
+        assertEquals(1 + 5, registry.getCount("stub.success") + registry.getCount("stub.throttled"));
+        assertTrue(registry.getCount("stub.throttled") >= 3);
+        assertEquals(2, registry.getCount("stub.failure"));
+        assertEquals(8, registry.getTimer("stub.latency").getCount());
+
+        // clients calling a service report the bytes transferred
+        new InstrumentedClient(new NaturalLanguageUnderstandingClient("user", "password"), registry, "nlu");
+        assertTrue(registry.getGaugeNames().contains("nlu.bytesSent"));
+        assertEquals(0, registry.getGauge("nlu.bytesReceived"));
+    }
+
+    private static void assertFails(CompletableFuture<AggregateData> future) throws InterruptedException {
+        try {
+            future.get();
+            throw new AssertionError("expected the call to fail");
+        } catch (ExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDataManagerStages() throws IOException {
+        File inputDir = folder.newFolder("input");
+        int numFiles = 6;
+        for (int i = 0; i < numFiles; i++) {
+            Util.stringToFile("alpha beta gamma" + i, new File(inputDir, "doc" + i).toString());
+        }
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        DataManager.setMetricsRegistry(registry);
+        try {
+            DataManager.analyzeDirectory(inputDir.toString(), "stages", false, true,
+                    folder.newFolder("output").toString(), DataType.TEXT, new TestDataManager.WordClient(), 3, 2);
+        } finally {
+            DataManager.setMetricsRegistry(MetricsRegistry.NONE);
+        }
+        for (String stage : new String[] {"read", "analyze", "merge", "persist"}) {
+            assertEquals(numFiles, registry.getTimer("DataManager." + stage).getCount());
+        }
+    }
+
+    @Test
+    public void testDataManagerReused() throws IOException {
+        File inputDir = folder.newFolder("input");
+        int numFiles = 4;
+        for (int i = 0; i < numFiles; i++) {
+            Util.stringToFile("alpha beta gamma" + i, new File(inputDir, "doc" + i).toString());
+        }
+        String outputDir = folder.newFolder("output").toString();
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        DataManager.setMetricsRegistry(registry);
+        try {
+            for (int run = 0; run < 2; run++) {
+                DataManager.analyzeDirectoryResumable(inputDir.toString(), "reused", false, outputDir,
+                        DataType.TEXT, new TestDataManager.WordClient(), 2, 2, false);
+            }
+        } finally {
+            DataManager.setMetricsRegistry(MetricsRegistry.NONE);
+        }
+        assertEquals(numFiles, registry.getTimer("DataManager.analyze").getCount());
+        assertEquals(numFiles, registry.getCount("DataManager.reused"));
+    }
+
+}
@@ -3,14 +3,30 @@
  */
 package com.ibm.watson.developer_cloud.cognitive_client;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
+import org.junit.Test;
+
 import com.ibm.watson.developer_cloud.cognitive_client.NaturalLanguageClient;
 import com.ibm.watson.developer_cloud.cognitive_client.NaturalLanguageUnderstandingClient;
+import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
+import com.ibm.watson.developer_cloud.natural_language_understanding.v1.model.AnalysisResults;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author ArunIyengar
  * This class tests the NaturalLanguageUnderstanding client. In order to run it, invoke the main method.
+ * Tests of batch analysis which do not use the service are run by JUnit.
  */
 public class TestNaturalLanguageUnderstandingClient {
     
@@ -29,5 +45,113 @@ public class TestNaturalLanguageUnderstandingClient {
     public static void main(String[] args) {
         testNLUClient();
     }
+
+    private static final String BATCH_RESULTS = "{"
+            + "\"categories\": [{\"label\": \"/technology\", \"score\": 0.75}],"
+            + "\"concepts\": [{\"text\": \"Watson\", \"relevance\": 0.9, \"dbpedia_resource\": \"http://dbpedia.org/resource/Watson\"},"
+            + "  {\"text\": \"Computing\", \"relevance\": 0.5, \"dbpedia_resource\": \"http://dbpedia.org/resource/Computing\"}],"
+            + "\"entities\": [{\"type\": \"Company\", \"text\": \"IBM\", \"relevance\": 0.8, \"count\": 3,"
+            + "  \"sentiment\": {\"score\": 0.5}, \"disambiguation\": {\"name\": \"IBM\"}},"
+            + "  {\"type\": \"Person\", \"text\": \"Ginni\", \"relevance\": 0.4, \"count\": 1}],"
+            + "\"keywords\": [{\"text\": \"cloud services\", \"relevance\": 0.6, \"sentiment\": {\"score\": -0.25}}]"
+            + "}";
+
+    @Test
+    public void testBatchEnd() {
+        List<String> texts = Arrays.asList("aaaa", "bbbb", "cccc", "0123456789012345", "dd");
+        assertEquals(2, NaturalLanguageUnderstandingClient.batchEnd(texts, 0, 10, 10));
+        assertEquals(3, NaturalLanguageUnderstandingClient.batchEnd(texts, 0, 16, 10));
+        assertEquals(2, NaturalLanguageUnderstandingClient.batchEnd(texts, 0, 16, 2));
+        assertEquals(1, NaturalLanguageUnderstandingClient.batchEnd(texts, 0, 16, 1));
+        assertEquals(4, NaturalLanguageUnderstandingClient.batchEnd(texts, 3, 10, 10));
+        assertEquals(5, NaturalLanguageUnderstandingClient.batchEnd(texts, 4, 10, 10));
+    }
+
+    @Test
+    public void testMaxBatchTexts() {
+        assertEquals(25, NaturalLanguageUnderstandingClient.maxBatchTexts(Integer.MAX_VALUE));
+        assertEquals(50, NaturalLanguageUnderstandingClient.maxBatchTexts(5));
+        assertEquals(250, NaturalLanguageUnderstandingClient.maxBatchTexts(1));
+    }
+
+    @Test
+    public void testCountWords() {
+        assertEquals(2, NaturalLanguageUnderstandingClient.countWords("ibm and ibm, not ibmers", "ibm"));
+        assertEquals(0, NaturalLanguageUnderstandingClient.countWords("ibmers and xibm", "ibm"));
+        assertEquals(1, NaturalLanguageUnderstandingClient.countWords("new cloud services.", "cloud services"));
+        assertEquals(0, NaturalLanguageUnderstandingClient.countWords("anything", ""));
+    }
+
+    @Test
+    public void testSplitBatchResults() {
+        AnalysisResults results = GsonSingleton.getGson().fromJson(BATCH_RESULTS, AnalysisResults.class);
+        List<String> batch = Arrays.asList("IBM announced new cloud services today. ibm and IBM.",
+                "Watson was mentioned by Ginni.", "Nothing to see here, say IBMers.");
+        ArrayList<AggregateData> dataList = NaturalLanguageUnderstandingClient.splitBatchResults(results, batch,
+                "batch", 10);
+        assertEquals(3, dataList.size());
+        for (AggregateData data : dataList) {
+            assertEquals("batch", data.getDescription());
+            // categories describe the batch as a whole, and "Computing" does not appear in any text
+            assertTrue(data.getTaxonomies().isEmpty());
+            assertFalse(data.getConcepts().containsKey("http://dbpedia.org/resource/Computing"));
+        }
+
+        AggregateData first = dataList.get(0);
+        assertEquals(3, first.getDisambiguatedEntities().get("IBM").getCount());
+        assertEquals(0.5, first.getDisambiguatedEntities().get("IBM").getScore(), 0.0);
+        assertEquals(-0.25, first.getKeywords().get("cloud services").getScore(), 0.0);
+        assertTrue(first.getEntitiesAmbiguous().isEmpty());
+        assertFalse(first.getConcepts().containsKey("http://dbpedia.org/resource/Watson"));
+
+        AggregateData second = dataList.get(1);
+        assertEquals(1, second.getEntitiesAmbiguous().get("Ginni").getCount());
+        assertEquals(0.9, second.getConcepts().get("http://dbpedia.org/resource/Watson").getRelevance(), 0.0);
+        assertTrue(second.getKeywords().isEmpty());
+
+        AggregateData third = dataList.get(2);
+        assertTrue(third.getDisambiguatedEntities().isEmpty());
+        assertTrue(third.getKeywords().isEmpty());
+        assertNull(third.getConcepts().get("http://dbpedia.org/resource/Watson"));
+
+        // each text receives at most maxResponses results of each kind
+        dataList = NaturalLanguageUnderstandingClient.splitBatchResults(results,
+                Arrays.asList("IBM, Ginni, Watson, and cloud services."), "batch", 1);
+        assertEquals(1, dataList.get(0).getDisambiguatedEntities().size());
+        assertTrue(dataList.get(0).getEntitiesAmbiguous().isEmpty());
+        assertEquals(1, dataList.get(0).getConcepts().size());
+    }
+
+    @Test
+    public void testFeatureSelection() {
+        FeatureSelection keywords = FeatureSelection.of(10, false, FeatureSelection.Feature.KEYWORDS);
+        assertTrue(keywords.contains(FeatureSelection.Feature.KEYWORDS));
+        assertFalse(keywords.contains(FeatureSelection.Feature.ENTITIES));
+        assertNotNull(keywords.getServiceFeatures().keywords());
+        assertNull(keywords.getServiceFeatures().entities());
+        assertNull(keywords.getServiceFeatures().categories());
+        assertSame(keywords, keywords.withMaxResponses(10));
+        assertEquals(FeatureSelection.of(20, false, FeatureSelection.Feature.KEYWORDS), keywords.withMaxResponses(20));
+        assertFalse(keywords.equals(FeatureSelection.of(10, true, FeatureSelection.Feature.KEYWORDS)));
+
+        NaturalLanguageUnderstandingClient client = new NaturalLanguageUnderstandingClient("user", "password", 5);
+        assertEquals(FeatureSelection.all(5), client.getFeatureSelection());
+        FeatureSelection defaultSelection = client.getFeatureSelection();
+        CachingClient cachingClient = new CachingClient(client, 10);
+        String allKey = cachingClient.cacheKey("text", DataType.TEXT);
+        client.setFeatureSelection(keywords);
+        assertFalse(allKey.equals(cachingClient.cacheKey("text", DataType.TEXT)));
+        client.setMaxResponses(5);
+        assertEquals(FeatureSelection.of(5, false, FeatureSelection.Feature.KEYWORDS), client.getFeatureSelection());
+        client.setFeatureSelection(defaultSelection);
+        assertEquals(allKey, cachingClient.cacheKey("text", DataType.TEXT));
+
+        // results for features which were not requested are absent
+        AnalysisResults results = GsonSingleton.getGson().fromJson(
+                "{\"keywords\": [{\"text\": \"cloud\", \"relevance\": 0.6}]}", AnalysisResults.class);
+        AggregateData data = NaturalLanguageUnderstandingClient.createAggregateData(results, "keywords only");
+        assertEquals(0.6, data.getKeywords().get("cloud").getRelevance(), 0.0);
+        assertTrue(data.getConcepts().isEmpty());
+    }
     
 }
@@ -0,0 +1,157 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
+import com.ibm.watson.developer_cloud.cognitive_client.Util.NaturalLanguageService;
+import com.ibm.watson.developer_cloud.service.exception.ServiceResponseException;
+import com.ibm.watson.developer_cloud.service.exception.TooManyRequestsException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ArunIyengar
+ *
+ */
+public class TestRateLimitedClient {
+
+    private static final int NUM_TEXTS = 20;
+    private static final int MAX_CONCURRENCY = 4;
+
+    /**
+     * Rejects the first call for each text with status 429 and records the number of calls in progress.
+     * Texts starting with "bad" are rejected with status 400.
+     */
+    static class ThrottlingClient implements NaturalLanguageClient {
+        final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+        final ConcurrentHashMap<String,Boolean> seen = new ConcurrentHashMap<String,Boolean>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public AggregateData analyzeData(String text, DataType type, String description) {
+            return null;
+        }
+
+        @Override
+        public CompletableFuture<AggregateData> analyzeDataAsync(final String text, DataType type,
+                final String description) {
+            calls.incrementAndGet();
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            final CompletableFuture<AggregateData> future = new CompletableFuture<AggregateData>();
+            executor.schedule(() -> {
+                inFlight.decrementAndGet();
+                if (text.startsWith("bad")) {
+                    future.completeExceptionally(new ServiceResponseException(400, "bad request", null));
+                }
+                else if (seen.putIfAbsent(text, Boolean.TRUE) == null) {
+                    future.completeExceptionally(new TooManyRequestsException("slow down", null));
+                }
+                else {
+                    AggregateData data = new AggregateData(description);
+                    data.addData(text, 1, 1.0, 0.0, AggregateData.Type.KEYWORD);
+                    future.complete(data);
+                }
+            }, 5, TimeUnit.MILLISECONDS);
+            return future;
+        }
+
+        @Override
+        public NaturalLanguageService serviceType() {
+            return NaturalLanguageService.NATURAL_LANGUAGE_UNDERSTANDING;
+        }
+    }
+
+    @Test
+    public void testTokenBucket() {
+        long second = TimeUnit.SECONDS.toNanos(1);
+        RateLimitedClient.TokenBucket bucket = new RateLimitedClient.TokenBucket(10.0, 2, 0);
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(second / 10, bucket.reserve(0), 1.0);
+        assertEquals(2 * second / 10, bucket.reserve(0), 1.0);
+
+        // the bucket never holds more than the burst size
+        bucket.reserve(10 * second);
+        bucket.reserve(10 * second);
+        assertEquals(second / 10, bucket.reserve(10 * second), 1.0);
+    }
+
+    @Test
+    public void testConcurrencyLimiter() {
+        RateLimitedClient.ConcurrencyLimiter limiter = new RateLimitedClient.ConcurrencyLimiter(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.acquire().isDone());
+        }
+        CompletableFuture<Void> waiting = limiter.acquire();
+        assertFalse(waiting.isDone());
+
+        // a congested call halves the limit, so the waiting call still cannot start
+        limiter.release(true, 0);
+        assertEquals(2, limiter.getLimit());
+        assertFalse(waiting.isDone());
+        limiter.release(true, 1);  // too soon after the previous decrease
+        assertEquals(2, limiter.getLimit());
+        limiter.release(false, 2);
+        assertTrue(waiting.isDone());
+        assertEquals(2, limiter.getInFlight());
+
+        // successful calls increase the limit additively, up to the maximum
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            limiter.release(false, 3);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testRetries() throws InterruptedException, ExecutionException {
+        ThrottlingClient throttlingClient = new ThrottlingClient();
+        RateLimitedClient client = new RateLimitedClient(throttlingClient, 1000.0, 10, MAX_CONCURRENCY, 3, 0);
+        List<CompletableFuture<AggregateData>> futures = new ArrayList<CompletableFuture<AggregateData>>();
+        for (int i = 0; i < NUM_TEXTS; i++) {
+            futures.add(client.analyzeDataAsync("text" + i, DataType.TEXT, "description"));
+        }
+        for (int i = 0; i < NUM_TEXTS; i++) {
+            AggregateData data = futures.get(i).get();
+            assertNotNull(data.getKeywords().get("text" + i));
+        }
+        assertEquals(2 * NUM_TEXTS, throttlingClient.calls.get());
+        assertEquals(NUM_TEXTS, client.getRetries());
+        assertEquals(NUM_TEXTS, client.getThrottled());
+        assertTrue(throttlingClient.maxInFlight.get() <= MAX_CONCURRENCY);
+        assertTrue(client.getConcurrencyLimit() >= 1);
+
+        // other errors are not retried
+        assertNull(client.analyzeData("bad text", DataType.TEXT, "description"));
+        try {
+            client.analyzeDataAsync("bad text", DataType.TEXT, "description").get();
+            fail("expected an exception");
+        } catch (ExecutionException e) {
+            assertEquals(400, ((ServiceResponseException) e.getCause()).getStatusCode());
+        }
+        assertEquals(NUM_TEXTS, client.getRetries());
+        throttlingClient.executor.shutdown();
+    }
+
+}
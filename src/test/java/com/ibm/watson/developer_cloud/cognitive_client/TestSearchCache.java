@@ -0,0 +1,153 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.watson.developer_cloud.cognitive_client.Search.SearchType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ArunIyengar
+ *
+ */
+public class TestSearchCache {
+
+    private static final long TTL = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger searches = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong(1000000);
+
+    // Returns one URL per result, or no URLs for the query "fail"
+    private ArrayList<String> search(String query, int numResults, SearchType searchType) {
+        searches.incrementAndGet();
+        ArrayList<String> urls = new ArrayList<String>();
+        if (!query.equals("fail")) {
+            for (int i = 0; i < numResults; i++) {
+                urls.add("http://example.com/" + searchType + "/" + query + "/" + i);
+            }
+        }
+        return urls;
+    }
+
+    @Test
+    public void testExpiryAndEviction() {
+        SearchCache cache = new SearchCache(2, TTL, null, this::search, now::get);
+        ArrayList<String> urls = cache.search("ibm", 3, SearchType.GOOGLE_REGULAR);
+        assertEquals(3, urls.size());
+        urls.clear();  // callers get their own copy
+        assertEquals(3, cache.search("ibm", 3, SearchType.GOOGLE_REGULAR).size());
+        assertEquals(1, searches.get());
+        assertEquals(1, cache.getMemoryHits());
+
+        // the number of results and the type of search are part of the key
+        cache.search("ibm", 4, SearchType.GOOGLE_REGULAR);
+        cache.search("ibm", 3, SearchType.GOOGLE_NEWS);
+        assertEquals(3, searches.get());
+        assertEquals(2, cache.size());
+
+        // "ibm", 3, GOOGLE_REGULAR was least recently used and has been evicted
+        cache.search("ibm", 3, SearchType.GOOGLE_REGULAR);
+        assertEquals(4, searches.get());
+
+        now.addAndGet(TTL);
+        cache.search("ibm", 3, SearchType.GOOGLE_REGULAR);
+        assertEquals(5, searches.get());
+        assertEquals(5, cache.getMisses());
+
+        // failed searches are not cached
+        cache.search("fail", 3, SearchType.GOOGLE_REGULAR);
+        cache.search("fail", 3, SearchType.GOOGLE_REGULAR);
+        assertEquals(7, searches.get());
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        String directory = folder.newFolder("searches").toString();
+        SearchCache cache = new SearchCache(10, TTL, directory, this::search, now::get);
+        List<String> urls = cache.search("caf\u00e9 & cr\u00e8me", 2, SearchType.GOOGLE_NEWS);
+
+        SearchCache restarted = new SearchCache(10, TTL, directory, this::search, now::get);
+        assertEquals(urls, restarted.search("caf\u00e9 & cr\u00e8me", 2, SearchType.GOOGLE_NEWS));
+        assertEquals(1, restarted.getDiskHits());
+        assertEquals(1, searches.get());
+
+        now.addAndGet(TTL);
+        restarted = new SearchCache(10, TTL, directory, this::search, now::get);
+        assertEquals(urls, restarted.search("caf\u00e9 & cr\u00e8me", 2, SearchType.GOOGLE_NEWS));
+        assertEquals(0, restarted.getDiskHits());
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    public void testConcurrentSearches() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final SearchCache cache = new SearchCache(10, TTL, null, (query, numResults, searchType) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return search(query, numResults, searchType);
+        }, now::get);
+        int numThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<ArrayList<String>>> results = new ArrayList<Future<ArrayList<String>>>();
+            results.add(executor.submit(() -> cache.search("ibm", 2, SearchType.GOOGLE_REGULAR)));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < numThreads; i++) {
+                results.add(executor.submit(() -> cache.search("ibm", 2, SearchType.GOOGLE_REGULAR)));
+            }
+            // wait until the other threads are waiting for the first search
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((cache.getCoalesced() < numThreads - 1) && (System.currentTimeMillis() < deadline)) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<ArrayList<String>> result : results) {
+                assertEquals(Arrays.asList("http://example.com/GOOGLE_REGULAR/ibm/0",
+                        "http://example.com/GOOGLE_REGULAR/ibm/1"), result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, searches.get());
+        assertEquals(numThreads - 1, cache.getCoalesced());
+    }
+
+    @Test
+    public void testSearchUsesCache() {
+        Search.setCache(new SearchCache(10, TTL, null, this::search));
+        try {
+            assertEquals(5, Search.search("ibm", 5, SearchType.GOOGLE_REGULAR, false).size());
+            assertEquals(5, Search.search("ibm", 5, SearchType.GOOGLE_REGULAR, false).size());
+        } finally {
+            Search.setCache(null);
+        }
+        assertEquals(1, searches.get());
+    }
+
+}
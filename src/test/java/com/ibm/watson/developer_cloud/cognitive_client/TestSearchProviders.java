@@ -0,0 +1,257 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.cognitive_client.Search.SearchType;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ArunIyengar
+ *
+ * These tests parse saved search results pages and use local providers, so they do not require network
+ * access.
+ */
+public class TestSearchProviders {
+
+    private static final String GOOGLE_PAGE = "<html><body>"
+            + "<h3 class=\"r\"><a href=\"/url?q=https://www.ibm.com/watson/&amp;sa=U&amp;ved=1\">Watson</a></h3>"
+            + "<h3 class=\"r\"><a href=\"/url?q=https://en.wikipedia.org/wiki/IBM%3Fx%3D1&amp;sa=U\">IBM</a></h3>"
+            + "<h3 class=\"r\"><a href=\"/search?q=IBM&amp;tbm=isch\">Images</a></h3>"
+            + "</body></html>";
+    private static final String BING_PAGE = "<html><body><ol>"
+            + "<li class=\"b_algo\"><h2><a href=\"https://www.ibm.com/\">IBM</a></h2></li>"
+            + "<li class=\"b_ad\"><h2><a href=\"https://ads.example.com/\">Ad</a></h2></li>"
+            + "</ol></body></html>";
+    private static final String YAHOO_PAGE = "<html><body>"
+            + "<h3 class=\"title\"><a href=\"https://r.search.yahoo.com/_ylt=A/RU=https%3a%2f%2fwww.ibm.com%2fcloud"
+            + "/RK=2/RS=x\">IBM Cloud</a></h3></body></html>";
+
+    @Test
+    public void testParseResults() {
+        String base = "https://www.google.com/search?q=IBM";
+        assertEquals(Arrays.asList("https://www.ibm.com/watson/", "https://en.wikipedia.org/wiki/IBM?x=1"),
+                HtmlSearchProvider.forType(SearchType.GOOGLE_REGULAR).parseResults(GOOGLE_PAGE, base, false));
+        assertEquals(Arrays.asList("https://www.ibm.com/"),
+                HtmlSearchProvider.forType(SearchType.BING_REGULAR).parseResults(BING_PAGE, base, false));
+        assertEquals(Arrays.asList("https://www.ibm.com/cloud"),
+                HtmlSearchProvider.forType(SearchType.YAHOO).parseResults(YAHOO_PAGE, base, false));
+        assertEquals("https://search.yahoo.com/search?p=IBM+Watson&n=10",
+                HtmlSearchProvider.forType(SearchType.YAHOO).searchUrl("IBM Watson", 10));
+        assertEquals("https://www.bing.com/news/search?q=IBM&count=5",
+                HtmlSearchProvider.forType(SearchType.BING_NEWS).searchUrl("IBM", 5));
+    }
+
+    @Test
+    public void testCanonicalize() {
+        assertEquals("https://ibm.com/", UrlCanonicalizer.canonicalize(" HTTPS://WWW.IBM.com:443 "));
+        assertEquals("http://ibm.com:8080/Watson?q=1", UrlCanonicalizer.canonicalize("http://IBM.com:8080/Watson?q=1#top"));
+        assertEquals("not a url", UrlCanonicalizer.canonicalize("not a url"));
+
+        // tracking parameters are removed and the remaining parameters sorted
+        assertEquals("https://example.com/a?id=7&page=2", UrlCanonicalizer.canonicalize(
+                "https://example.com/a?utm_source=news&page=2&gclid=x&&id=7&UTM_Medium=email"));
+        assertEquals("https://example.com/a", UrlCanonicalizer.canonicalize("https://example.com/a/?fbclid=1"));
+        assertTrue(UrlCanonicalizer.isTrackingParameter("utm_campaign"));
+
+        // paths are normalized
+        assertEquals("http://example.com/b/c%2F~d", UrlCanonicalizer.canonicalize("http://example.com/a/../b/./c%2f%7Ed/"));
+        assertEquals("http://example.com/%C3%A9t%C3%A9", UrlCanonicalizer.canonicalize("http://example.com.:80/%c3%a9t%c3%a9"));
+        assertEquals("http://www.com/", UrlCanonicalizer.canonicalize("http://www.com"));
+    }
+
+    // Provider returning fixed results after a delay, or failing if there are none
+    private static SearchProvider provider(final String name, final long delayMillis, final String... results) {
+        return new SearchProvider() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public ArrayList<String> search(String query, int numResults) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return new ArrayList<String>();
+                }
+                if (results.length == 0) {
+                    throw new IllegalStateException(name + " failed");
+                }
+                return new ArrayList<String>(Arrays.asList(results));
+            }
+        };
+    }
+
+    @Test
+    public void testSearchAll() {
+        List<SearchProvider> providers = Arrays.asList(
+                provider("slow", 5000, "https://slow.example.com/"),
+                provider("second", 200, "https://WWW.IBM.COM/#about", "https://b.example.com/"),
+                provider("first", 0, "https://www.ibm.com/", "https://a.example.com/"),
+                provider("failing", 0));
+        final ArrayList<String> arrived = new ArrayList<String>();
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        Search.setMetricsRegistry(registry);
+        long start = System.currentTimeMillis();
+        ArrayList<String> urls;
+        try {
+            urls = Search.searchAll("IBM", 10, providers, 1000, url -> arrived.add(url));
+        } finally {
+            Search.setMetricsRegistry(MetricsRegistry.NONE);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        assertEquals(Arrays.asList("https://www.ibm.com/", "https://a.example.com/", "https://b.example.com/"), urls);
+        assertEquals(urls, arrived);
+        assertTrue("took " + elapsed + " ms", elapsed < 3000);
+        assertEquals(3, registry.getCount("Search.urls"));
+        assertEquals(1, registry.getCount("Search.timeouts"));
+    }
+
+    // Provider returning pageSize results per page for numPages pages, with later pages arriving first
+    private static class PagedProvider implements SearchProvider {
+        private final int numPages;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final AtomicInteger requests = new AtomicInteger();
+
+        PagedProvider(int pages) {
+            numPages = pages;
+        }
+
+        @Override
+        public String getName() {
+            return "paged";
+        }
+
+        @Override
+        public ArrayList<String> search(String query, int numResults) {
+            return searchPage(query, numResults, 0);
+        }
+
+        @Override
+        public ArrayList<String> searchPage(String query, int pageSize, int page) {
+            requests.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep((page % 3 == 0) ? 150 : 50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            ArrayList<String> urls = new ArrayList<String>();
+            if (page < numPages) {
+                for (int i = 0; i < pageSize; i++) {
+                    urls.add("https://example.com/" + (page * pageSize + i));
+                }
+                // search engines repeat results from earlier pages
+                if (page > 0) {
+                    urls.add("https://example.com/0");
+                }
+            }
+            return urls;
+        }
+    }
+
+    @Test
+    public void testSearchPages() {
+        PagedProvider provider = new PagedProvider(100);
+        final ArrayList<String> arrived = new ArrayList<String>();
+        ArrayList<String> urls = Search.searchPages(provider, "IBM", 25, 3, 4, url -> arrived.add(url));
+        assertEquals(25, urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            assertEquals("https://example.com/" + i, urls.get(i));
+        }
+        assertEquals(urls, arrived);
+        assertEquals(9, provider.requests.get());
+        assertEquals(4, provider.maxInFlight.get());
+
+        // fetching stops at the first page without results
+        provider = new PagedProvider(2);
+        assertEquals(6, Search.searchPages(provider, "IBM", 100, 3, 2, null).size());
+        assertTrue(provider.requests.get() <= 5);
+    }
+
+    @Test
+    public void testSearchPagesIterator() {
+        PagedProvider provider = new PagedProvider(4);
+        ArrayList<String> urls = new ArrayList<String>();
+        long start = System.currentTimeMillis();
+        long firstArrived = 0;
+        try (SearchResults results = Search.searchPagesIterator(provider, "IBM", 20, 5, 1)) {
+            while (results.hasNext()) {
+                urls.add(results.next());
+                if (urls.size() == 1) {
+                    firstArrived = System.currentTimeMillis() - start;
+                }
+            }
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        assertEquals(20, urls.size());
+        // the first page is available long before the last one
+        assertTrue(firstArrived + " ms, " + elapsed + " ms", firstArrived < elapsed / 2);
+
+        SearchResults closed = Search.searchPagesIterator(new PagedProvider(1000), "IBM", 1000, 5, 1);
+        closed.close();
+        while (closed.hasNext()) {
+            closed.next();
+        }
+    }
+
+    @Test
+    public void testHtmlSearchProvider() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/search", exchange -> {
+            byte[] body = (exchange.getRequestURI().getQuery().equals("q=IBM+Watson&count=3") ? BING_PAGE : "")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/pages", exchange -> {
+            String first = exchange.getRequestURI().getQuery().replaceAll(".*first=(\\d+).*|.*", "$1");
+            int start = first.isEmpty() ? 1 : Integer.parseInt(first);
+            byte[] body = ("<a href=\"https://example.com/" + start + "\">a</a><a href=\"https://example.com/"
+                    + (start + 1) + "\">b</a>").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            SearchProvider local = new HtmlSearchProvider("local", "http://127.0.0.1:" + server.getAddress().getPort()
+                    + "/search?q=", "count", HtmlSearchProvider.BING_SELECTOR);
+            assertEquals(Arrays.asList("https://www.ibm.com/"), local.search("IBM Watson", 3));
+
+            // results beyond the first page are requested with the start parameter
+            HtmlSearchProvider paged = new HtmlSearchProvider("paged", "http://127.0.0.1:" + server.getAddress().getPort()
+                    + "/pages?q=", "count", "a", "first", 1, 2);
+            assertEquals("http://127.0.0.1:" + server.getAddress().getPort() + "/pages?q=IBM&count=2&first=5",
+                    paged.pageUrl("IBM", 2, 2));
+            assertEquals(Arrays.asList("https://example.com/1", "https://example.com/2", "https://example.com/3",
+                    "https://example.com/4", "https://example.com/5"), paged.search("IBM", 5));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.watson.developer_cloud.cognitive_client.Search.SearchType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ArunIyengar
+ *
+ */
+public class TestSeenUrlSet {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAddAndContains() {
+        SeenUrlSet seen = new SeenUrlSet(4);
+        assertTrue(seen.add("https://www.ibm.com/watson?utm_source=news"));
+        assertFalse(seen.add("HTTPS://ibm.com/watson/#top"));
+        assertTrue(seen.contains("https://ibm.com/watson?gclid=123"));
+        assertFalse(seen.contains("https://ibm.com/cloud"));
+        assertEquals(1, seen.size());
+
+        // the set grows beyond the expected number of URLs
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(seen.add("https://example.com/" + i));
+        }
+        assertEquals(10001, seen.size());
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(seen.contains("https://example.com/" + i + "?utm_medium=email"));
+        }
+        int falsePositives = 0;
+        for (int i = 10000; i < 20000; i++) {
+            if (seen.contains("https://example.com/" + i)) {
+                falsePositives++;
+            }
+        }
+        assertEquals(0, falsePositives);
+        assertNotEquals(SeenUrlSet.fingerprint("https://example.com/1"), SeenUrlSet.fingerprint("https://example.com/2"));
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        File file = new File(folder.getRoot(), "seen.txt");
+        try (SeenUrlSet seen = new SeenUrlSet(file.toString(), 10)) {
+            seen.add("https://www.ibm.com/watson");
+            seen.add("https://example.com/a?b=1&a=2");
+            seen.add("https://ibm.com/watson/");
+        }
+        assertEquals(Arrays.asList("https://ibm.com/watson", "https://example.com/a?a=2&b=1"),
+                Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+
+        // a URL being written when the process stopped is not in the set
+        Files.write(file.toPath(), "https://example.com/torn".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        try (SeenUrlSet seen = new SeenUrlSet(file.toString(), 1)) {
+            assertEquals(2, seen.size());
+            assertTrue(seen.contains("https://example.com/a?a=2&b=1&utm_source=x"));
+            assertFalse(seen.contains("https://example.com/torn"));
+            assertTrue(seen.add("https://example.com/c"));
+        }
+        try (SeenUrlSet seen = new SeenUrlSet(file.toString(), 1)) {
+            assertEquals(3, seen.size());
+            assertTrue(seen.contains("https://example.com/c"));
+        }
+    }
+
+    @Test
+    public void testAnalyzeWebSearchResults() {
+        final ArrayList<String> results = new ArrayList<String>(Arrays.asList("https://example.com/one",
+                "https://www.example.com/one/?utm_source=search", "https://example.com/two"));
+        Search.setCache(new SearchCache(10, 1000, null, (query, numResults, searchType) -> results));
+        try {
+            TestDataManager.WordClient client = new TestDataManager.WordClient();
+            SeenUrlSet seen = new SeenUrlSet(10);
+            DataManager.analyzeWebSearchResults("first", 3, SearchType.GOOGLE_REGULAR, "first", false, false,
+                    null, client, seen);
+            assertEquals(2, client.calls.get());
+            assertEquals(2, seen.size());
+
+            // pages analyzed by the first search are skipped by the second
+            results.add("http://example.com/three");
+            DataManager.analyzeWebSearchResults("second", 4, SearchType.GOOGLE_REGULAR, "second", false, false,
+                    null, client, seen);
+            assertEquals(3, client.calls.get());
+            assertEquals(3, seen.size());
+        } finally {
+            Search.setCache(null);
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.watson.developer_cloud.cognitive_client.Util.DataType;
+import com.ibm.watson.developer_cloud.service.exception.InternalServerErrorException;
+import com.ibm.watson.developer_cloud.service.exception.TooManyRequestsException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ArunIyengar
+ *
+ */
+public class TestStubNaturalLanguageClient {
+
+    private static final String TEXT = "The Watson service analyzes text. Analysts at IBM use Watson daily, "
+            + "and IBM sells Watson to banks. Text analysis helps banks.";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAnalysis() {
+        StubNaturalLanguageClient client = new StubNaturalLanguageClient();
+        AggregateData data = client.analyzeData(TEXT, DataType.TEXT, "stub");
+        assertEquals("stub", data.getDescription());
+        assertEquals(1.0, data.getKeywords().get("watson").getRelevance(), 0.0);
+        assertTrue(data.getKeywords().containsKey("banks"));
+        assertTrue(!data.getKeywords().containsKey("the"));
+        assertEquals(3, data.getDisambiguatedEntities().get("Watson").getCount());
+        assertEquals(2, data.getDisambiguatedEntities().get("IBM").getCount());
+        // words starting a sentence are not entities
+        assertTrue(!data.getEntitiesAmbiguous().containsKey("Analysts"));
+        assertTrue(data.getConcepts().containsKey(StubNaturalLanguageClient.CONCEPT_PREFIX + "Watson"));
+        assertEquals(1, data.getTaxonomies().size());
+
+        // results are deterministic, and HTML is converted to text
+        AggregateData html = new StubNaturalLanguageClient(50, 7).analyzeData("<html><body><p>" + TEXT
+                + "</p></body></html>", DataType.HTML, "stub");
+        for (AggregateData.Type type : AggregateData.Type.values()) {
+            TestDataManager.assertSameCounts(data.selectHashMap(type), html.selectHashMap(type));
+        }
+        AggregateData limited = new StubNaturalLanguageClient(2, 0).analyzeData(TEXT, DataType.TEXT, "stub");
+        assertEquals(2, limited.numEntries(AggregateData.Type.KEYWORD));
+    }
+
+    @Test
+    public void testCacheKeys() {
+        // results from the stub are not cached under the keys used for a real service
+        StubNaturalLanguageClient stub = new StubNaturalLanguageClient();
+        assertEquals(Util.NaturalLanguageService.STUB, stub.serviceType());
+        assertNotEquals(new CachingClient(new TestDataManager.WordClient(), 10).cacheKey(TEXT, DataType.TEXT),
+                new CachingClient(new RateLimitedClient(stub, 10.0, 1), 10).cacheKey(TEXT, DataType.TEXT));
+    }
+
+    @Test
+    public void testFailures() throws InterruptedException {
+        StubNaturalLanguageClient client = new StubNaturalLanguageClient();
+        client.setErrorRate(1.0);
+        assertNull(client.analyzeData(TEXT, DataType.TEXT, "stub"));
+        try {
+            client.analyzeDataAsync(TEXT, DataType.TEXT, "stub").get();
+            fail("expected an exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InternalServerErrorException);
+        }
+        assertEquals(2, client.getFailures());
+
+        client.setErrorRate(0.25);
+        int numFailed = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (client.analyzeData(TEXT, DataType.TEXT, "stub") == null) {
+                numFailed++;
+            }
+        }
+        assertTrue(numFailed > 200 && numFailed < 300);
+    }
+
+    @Test
+    public void testLatencyAndThrottling() throws InterruptedException {
+        StubNaturalLanguageClient client = new StubNaturalLanguageClient();
+        client.setLatency(50, 0.0);
+        client.setThrottling(4, 1000);
+        long start = System.nanoTime();
+        List<CompletableFuture<AggregateData>> futures = new ArrayList<CompletableFuture<AggregateData>>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(client.analyzeDataAsync(TEXT + i, DataType.TEXT, "stub"));
+        }
+        // the calls after the first 4 are rejected immediately
+        for (int i = 4; i < 10; i++) {
+            try {
+                futures.get(i).get();
+                fail("expected an exception");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TooManyRequestsException);
+            }
+        }
+        assertTrue(!futures.get(0).isDone());
+        for (int i = 0; i < 4; i++) {
+            try {
+                assertTrue(futures.get(i).get().getKeywords().containsKey("watson"));
+            } catch (ExecutionException e) {
+                fail(e.toString());
+            }
+        }
+        assertTrue(System.nanoTime() - start >= 50000000L);
+        assertEquals(6, client.getThrottled());
+        assertEquals(10, client.getCalls());
+    }
+
+    @Test
+    public void testLoadTest() throws IOException {
+        // the directory pipeline, rate limiting, and caching work together without a network
+        File inputDir = folder.newFolder("input");
+        for (int i = 0; i < 30; i++) {
+            Util.stringToFile(TEXT + " Document " + (i % 10) + " mentions Paris.",
+                    new File(inputDir, "doc" + i).toString());
+        }
+        StubNaturalLanguageClient stub = new StubNaturalLanguageClient();
+        stub.setLatency(5, 0.5);
+        stub.setErrorRate(0.1);
+        stub.setThrottling(4, 1000);
+        CachingClient client = new CachingClient(new RateLimitedClient(stub, 1000.0, 20, 8, 10, 0), 100);
+        AggregateData data = DataManager.analyzeDirectory(inputDir.toString(), "load test", false, false, null,
+                DataType.TEXT, client, 8, 8);
+        assertEquals(3 * 30, data.getDisambiguatedEntities().get("Watson").getCount());
+        assertEquals(30, data.getEntitiesAmbiguous().get("Paris").getCount());
+        assertEquals(30, client.getMemoryHits() + client.getMisses());
+        assertTrue(client.getMisses() >= 10);
+    }
+
+}
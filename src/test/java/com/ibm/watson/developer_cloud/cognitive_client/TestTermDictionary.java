@@ -0,0 +1,131 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ArunIyengar
+ *
+ */
+public class TestTermDictionary {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDictionary() throws IOException {
+        TermDictionary dictionary = new TermDictionary();
+        assertEquals(0, dictionary.getId(null));
+        int id = dictionary.getId("IBM");
+        assertEquals(1, id);
+        assertEquals(id, dictionary.getId(new String("IBM")));
+        assertEquals(-1, dictionary.findId("Watson"));
+        assertEquals("IBM", dictionary.getTerm(id));
+        assertSame(dictionary.getTerm(id), dictionary.intern(new String("IBM")));
+        assertEquals(1, dictionary.size());
+
+        for (int i = 0; i < 5000; i++) {
+            dictionary.getId("keyword" + i);
+        }
+        String filename = new File(folder.getRoot(), "terms.dic").toString();
+        dictionary.writeToFile(filename);
+        TermDictionary restored = TermDictionary.readFromFile(filename);
+        assertEquals(dictionary.size(), restored.size());
+        assertEquals(dictionary.getId("keyword4321"), restored.getId("keyword4321"));
+    }
+
+    @Test
+    public void testSharedDictionary() throws IOException {
+        TermDictionary dictionary = new TermDictionary();
+        AggregateData expected = TestCompactSerializer.createData(200);
+        AggregateData data = new AggregateData(expected.getDescription(), dictionary);
+        data.combineData(expected, true);
+        TestCompactSerializer.assertSameData(expected, data);
+        assertSame(dictionary, data.getTermDictionary());
+        assertNull(expected.getTermDictionary());
+
+        // merging objects sharing a dictionary
+        AggregateData other = new AggregateData("other", dictionary);
+        other.combineData(TestCompactSerializer.createData(300), false);
+        AggregateData expectedSum = expected.copy();
+        expectedSum.combineData(TestCompactSerializer.createData(300), false);
+        data.combineData(other, false);
+        TestCompactSerializer.assertSameData(expectedSum, data);
+
+        // files storing term IDs
+        File directory = folder.newFolder("data");
+        String idFile = new File(directory, "ids.ana").toString();
+        String stringFile = new File(directory, "strings.ana").toString();
+        String dictionaryFile = new File(directory, "terms.dic").toString();
+        data.writeToFile(idFile, dictionary);
+        data.writeToFile(stringFile);
+        dictionary.writeToFile(dictionaryFile);
+        assertTrue(Util.fileToByteArray(idFile).length < Util.fileToByteArray(stringFile).length);
+        assertNull(AggregateData.readFromFile(idFile));
+        TestCompactSerializer.assertSameData(data, AggregateData.readFromFile(idFile, dictionary));
+
+        TermDictionary restored = TermDictionary.readFromFile(dictionaryFile);
+        AggregateData restoredData = AggregateData.readFromFile(idFile, restored);
+        TestCompactSerializer.assertSameData(data, restoredData);
+        AggregateData fromStrings = AggregateData.readFromFile(stringFile, restored);
+        TestCompactSerializer.assertSameData(data, fromStrings);
+        assertSame(restored.intern("keyword7"), fromStrings.getKeywords().keySet().stream()
+                .filter("keyword7"::equals).findFirst().get());
+
+        AggregateData combined = new AggregateData("combined", restored);
+        assertTrue(combined.combineFromFile(idFile, false));
+        assertTrue(combined.combineFromFile(stringFile, false));
+        AggregateData expectedCombined = data.copy();
+        expectedCombined.combineData(data, false);
+        for (AggregateData.Type type : AggregateData.Type.values()) {
+            TestDataManager.assertSameCounts(expectedCombined.selectHashMap(type), combined.selectHashMap(type));
+        }
+    }
+
+    @Test
+    public void testDictionaryMismatch() throws IOException {
+        TermDictionary dictionary = new TermDictionary();
+        AggregateData data = TestCompactSerializer.createData(50);
+        String idFile = new File(folder.getRoot(), "ids.ana").toString();
+        data.writeToFile(idFile, dictionary);
+
+        // a dictionary which has grown since the data was written can still read it
+        TermDictionary grown = TermDictionary.readFromFile(writeDictionary(dictionary, "grown.dic"));
+        grown.getId("added later");
+        TestCompactSerializer.assertSameData(data, AggregateData.readFromFile(idFile, grown));
+
+        // a dictionary assigning different term IDs, or missing terms, cannot
+        TermDictionary regenerated = new TermDictionary();
+        regenerated.getId("first");
+        for (int id = 1; id <= dictionary.size(); id++) {
+            regenerated.getId(dictionary.getTerm(id));
+        }
+        assertNull(AggregateData.readFromFile(idFile, regenerated));
+        TermDictionary partial = new TermDictionary();
+        partial.getId(dictionary.getTerm(1));
+        assertNull(AggregateData.readFromFile(idFile, partial));
+        AggregateData combined = new AggregateData("combined", regenerated);
+        assertFalse(combined.combineFromFile(idFile, false));
+        assertEquals(0, combined.numEntries(AggregateData.Type.KEYWORD));
+    }
+
+    private String writeDictionary(TermDictionary dictionary, String name) {
+        String filename = new File(folder.getRoot(), name).toString();
+        dictionary.writeToFile(filename);
+        return filename;
+    }
+
+}
@@ -3,10 +3,20 @@
  */
 package com.ibm.watson.developer_cloud.cognitive_client;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.ibm.watson.developer_cloud.cognitive_client.Util;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 
@@ -16,6 +26,9 @@ import static org.junit.Assert.assertTrue;
  */
 public class TestUtilities {
     
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void test2() {
         String url = "https://www.ibm.com";
@@ -24,4 +37,58 @@ public class TestUtilities {
         assertTrue(webPage.length() > 0);
     }
 
+    @Test
+    public void testSha256() throws IOException {
+        String abc = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+        assertEquals(abc, Util.sha256("abc".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(abc, Util.sha256(new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8))));
+
+        // a stream longer than the read buffer hashes the same as the whole array
+        byte[] data = new byte[200000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        assertEquals(Util.sha256(data), Util.sha256(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    public void testFileToString() throws IOException {
+        String text = "first line\r\nsecond line \u00e9\u4e2d\ud83d\ude00\nlast line without separator";
+        File file = folder.newFile("text");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        assertEquals(text, Util.fileToString(file.toString(), StandardCharsets.UTF_8));
+        assertEquals("", Util.fileToString(new File(folder.getRoot(), "missing").toString()));
+        assertTrue(Util.fileToString(folder.newFile("empty").toString()).isEmpty());
+    }
+
+    @Test
+    public void testFileToChunks() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("word").append(i).append((i % 10 == 9) ? "\n" : " ");
+            if (i % 100 == 0) {
+                sb.append("\u00e9\ud83d\ude00");
+            }
+        }
+        sb.append("0123456789012345678901234567890123456789012345678901234567890123456789");
+        String text = sb.toString();
+        File file = folder.newFile("large");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        final ArrayList<String> chunks = new ArrayList<String>();
+        int numChunks = Util.fileToChunks(file.toString(), StandardCharsets.UTF_8, 64, chunk -> chunks.add(chunk));
+        assertEquals(chunks.size(), numChunks);
+        assertEquals(text, String.join("", chunks));
+        for (int i = 0; i < chunks.size(); i++) {
+            String chunk = chunks.get(i);
+            assertTrue(chunk.length() <= 64);
+            assertTrue(!Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)));
+            if (i < chunks.size() - 3) {
+                // words are only split in the long word at the end
+                assertTrue(chunk, Character.isWhitespace(chunk.charAt(chunk.length() - 1)));
+            }
+        }
+        assertEquals(-1, Util.fileToChunks(new File(folder.getRoot(), "missing").toString(),
+                StandardCharsets.UTF_8, 64, chunk -> chunks.add(chunk)));
+    }
+
 }
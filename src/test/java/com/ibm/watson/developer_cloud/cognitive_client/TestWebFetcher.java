@@ -0,0 +1,156 @@
+/**
+ *
+ */
+package com.ibm.watson.developer_cloud.cognitive_client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ArunIyengar
+ *
+ * These tests fetch pages from a local HTTP server, so they do not require network access.
+ */
+public class TestWebFetcher {
+
+    private static final int SLOW_MILLIS = 200;
+    private static final String TEXT = "Caf\u00e9 cr\u00e8me";
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/latin1", exchange -> {
+            respond(exchange, 200, "text/html; charset=ISO-8859-1", TEXT.getBytes(StandardCharsets.ISO_8859_1));
+        });
+        server.createContext("/gzip", exchange -> {
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if ((acceptEncoding == null) || !acceptEncoding.contains("gzip")) {
+                respond(exchange, 400, "text/plain", new byte[0]);
+                return;
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(TEXT.getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            respond(exchange, 200, "text/plain", compressed.toByteArray());
+        });
+        server.createContext("/slow", exchange -> {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(SLOW_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            respond(exchange, 200, "text/plain", exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8));
+        });
+        server.createContext("/port", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            respond(exchange, 200, "text/plain", "ok".getBytes(StandardCharsets.UTF_8));
+        });
+        server.createContext("/missing", exchange -> respond(exchange, 404, "text/plain", new byte[0]));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, (body.length == 0) ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    public void testFetch() {
+        try (WebFetcher fetcher = new WebFetcher(8, 2, 5000)) {
+            assertEquals(TEXT, fetcher.fetch(baseUrl + "/latin1"));
+            long received = fetcher.getBytesReceived();
+            assertEquals(TEXT, fetcher.fetch(baseUrl + "/gzip"));
+            // compressed bytes are counted
+            assertTrue(fetcher.getBytesReceived() > received);
+            assertEquals("", fetcher.fetch(baseUrl + "/missing"));
+            assertEquals("", fetcher.fetch("not a url"));
+            assertEquals(TEXT, Util.urlToString(baseUrl + "/latin1", 5000));
+
+            // connections are reused
+            for (int i = 0; i < 5; i++) {
+                assertEquals("ok", fetcher.fetch(baseUrl + "/port"));
+            }
+            assertEquals(1, clientPorts.size());
+        }
+    }
+
+    @Test
+    public void testTimeout() throws InterruptedException {
+        try (WebFetcher fetcher = new WebFetcher(8, 2, 5000)) {
+            try {
+                fetcher.fetchAsync(baseUrl + "/slow/page", SLOW_MILLIS / 4).get();
+                fail("expected a timeout");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertEquals("/slow/page", fetcher.fetch(baseUrl + "/slow/page"));
+        }
+    }
+
+    @Test
+    public void testFetchAll() {
+        List<String> urls = new ArrayList<String>();
+        for (int i = 0; i < 8; i++) {
+            urls.add(baseUrl + "/slow/" + i);
+        }
+        urls.add(baseUrl + "/missing");
+        try (WebFetcher fetcher = new WebFetcher(8, 4, 5000)) {
+            long start = System.currentTimeMillis();
+            ArrayList<String> pages = fetcher.fetchAll(urls);
+            long elapsed = System.currentTimeMillis() - start;
+            for (int i = 0; i < 8; i++) {
+                assertEquals("/slow/" + i, pages.get(i));
+            }
+            assertEquals("", pages.get(8));
+            // at most 4 pages are fetched from the host at once, so 8 pages take about two round trips
+            assertEquals(4, maxInFlight.get());
+            assertTrue("took " + elapsed + " ms", elapsed < 8 * SLOW_MILLIS);
+        }
+    }
+
+}